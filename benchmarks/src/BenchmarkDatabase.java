@@ -0,0 +1,48 @@
+package com.bookstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+
+// Seeded databases are cached under benchmarks/data, one file per size and seed, and each
+// benchmark trial works on a private copy so write benchmarks never skew later runs.
+public class BenchmarkDatabase {
+    public static final String[] CATEGORIES = DataGenerator.CATEGORIES;
+    public static final long SEED = 42;
+
+    private BenchmarkDatabase() {
+    }
+
+    public static DataGenerator generator(int books) {
+        return DataGenerator.scaled(books, SEED);
+    }
+
+    public static String login(int index) {
+        return DataGenerator.login(index);
+    }
+
+    public static Path copyOf(int books) throws IOException, SQLException {
+        Path seeded = seeded(books);
+        Path copy = Files.createTempFile("bookstore-bench-", ".db");
+        copy.toFile().deleteOnExit();
+        Files.copy(seeded, copy, StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    public static synchronized Path seeded(int books) throws IOException, SQLException {
+        File dir = new File("benchmarks/data");
+        dir.mkdirs();
+        Path path = new File(dir, "bench-" + books + "-" + SEED + ".db").toPath();
+        if (Files.exists(path)) {
+            return path;
+        }
+        Path tmp = Files.createTempFile(dir.toPath(), "seeding-", ".db");
+        Files.delete(tmp);
+        generator(books).generate(tmp.toString());
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        return path;
+    }
+}
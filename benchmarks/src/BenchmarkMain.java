@@ -0,0 +1,11 @@
+package com.bookstore;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+// Accepts the usual JMH command line, e.g. "CatalogBenchmark -p books=100000 -p filterType=Trending".
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        new Runner(new CommandLineOptions(args)).run();
+    }
+}
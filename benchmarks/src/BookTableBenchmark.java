@@ -0,0 +1,99 @@
+package com.bookstore;
+
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Scrolling a 50k-row category table: each scroll op renders one viewport of VISIBLE_ROWS
+// rows, calling every column's cell value factory and reading the value the way TableCell
+// does. "book" repeats the factories the tables used to have, which wrapped, concatenated
+// and looked up ratings per cell; "row" reads BookRow's preformatted values. buildRows is
+// the one-off cost BookRow moves to each load. Run with -prof gc for bytes per op.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookTableBenchmark {
+    private static final int VISIBLE_ROWS = 30;
+
+    @Param({"50000"})
+    public int rows;
+
+    @Param({"book", "row"})
+    public String mode;
+
+    private CatalogSnapshot snapshot;
+    private List<Book> books;
+    private List<BookRow> bookRows;
+    private List<Function<Book, ObservableValue<String>>> bookColumns;
+    private List<Function<BookRow, ObservableValue<String>>> rowColumns;
+    private int top;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(BenchmarkDatabase.SEED);
+        Category category = new Category(BenchmarkDatabase.CATEGORIES[0]);
+        List<CatalogSnapshot.Entry> entries = new ArrayList<>(rows);
+        books = new ArrayList<>(rows);
+        for (int id = 1; id <= rows; id++) {
+            Book book = new Book(id, "Book " + id, 5 + random.nextInt(9500) / 100.0, "", category, null, random.nextInt(20));
+            int ratingCount = random.nextInt(50);
+            entries.add(new CatalogSnapshot.Entry(book, random.nextInt(500), random.nextInt(40),
+                    (long) ratingCount * (1 + random.nextInt(5)), ratingCount, 0));
+            books.add(book);
+        }
+        snapshot = CatalogSnapshot.build(List.of(category.getName()), entries);
+        bookRows = buildRows();
+
+        DecimalFormat ratingFormat = new DecimalFormat("0.0");
+        bookColumns = List.of(
+                book -> new SimpleStringProperty(book.getName()),
+                book -> new SimpleStringProperty("$" + book.getPrice()),
+                book -> {
+                    double avgRating = snapshot.getEntry(book.getId()).getAverageRating();
+                    int voteCount = snapshot.getEntry(book.getId()).getRatingCount();
+                    return new SimpleStringProperty(ratingFormat.format(avgRating) + " (" + voteCount + " votes)");
+                },
+                book -> new SimpleStringProperty(book.getStock() > 0 ? String.valueOf(book.getStock()) : "Sold Out"));
+        rowColumns = List.of(BookRow::nameProperty, BookRow::priceProperty, BookRow::ratingProperty, BookRow::stockProperty);
+    }
+
+    @Benchmark
+    public void scroll(Blackhole blackhole) {
+        top = (top + VISIBLE_ROWS) % (rows - VISIBLE_ROWS);
+        if (mode.equals("book")) {
+            render(books, bookColumns, blackhole);
+        } else {
+            render(bookRows, rowColumns, blackhole);
+        }
+    }
+
+    private <T> void render(List<T> items, List<Function<T, ObservableValue<String>>> columns, Blackhole blackhole) {
+        for (int i = top; i < top + VISIBLE_ROWS; i++) {
+            T item = items.get(i);
+            for (Function<T, ObservableValue<String>> column : columns) {
+                blackhole.consume(column.apply(item).getValue());
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<BookRow> buildRows() {
+        List<BookRow> built = new ArrayList<>(books.size());
+        for (Book book : books) {
+            built.add(new BookRow(book, snapshot.getEntry(book.getId())));
+        }
+        return built;
+    }
+}
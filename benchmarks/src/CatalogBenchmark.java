@@ -0,0 +1,45 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogBenchmark {
+    @Param({"1000", "10000"})
+    public int books;
+
+    @Param({"Default", "Price (Ascending)", "Price (Descending)", "Popularity (Descending)",
+            "Rating (Descending)", "Reviews (Descending)", "Trending"})
+    public String filterType;
+
+    private DatabaseManager db;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path path = BenchmarkDatabase.copyOf(books);
+        db = new DatabaseManager();
+        db.connect(path.toString());
+        db.createTables();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Book> getFilteredBooks() throws SQLException {
+        String category = BenchmarkDatabase.CATEGORIES[next++ % BenchmarkDatabase.CATEGORIES.length];
+        return db.getFilteredBooks(category, filterType);
+    }
+}
@@ -0,0 +1,77 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Same category + sort answered by SQL and by the columnar engine, plus a multi-criteria
+// query (two categories, price band, minimum rating, in stock) that only the columnar
+// engine can express today.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarBenchmark {
+    @Param({"1000", "10000"})
+    public int books;
+
+    @Param({"Default", "Price (Ascending)", "Popularity (Descending)", "Rating (Descending)", "Trending"})
+    public String filterType;
+
+    private DatabaseManager db;
+    private ColumnarCatalog columns;
+    private final ColumnarCatalog.Query query = new ColumnarCatalog.Query();
+    private int[] allRows;
+    private final int[] page = new int[50];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path path = BenchmarkDatabase.copyOf(books);
+        db = new DatabaseManager();
+        db.connect(path.toString());
+        db.createTables();
+        columns = db.loadCatalogSnapshot().getColumns();
+        allRows = new int[columns.size()];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Book> sqlCategorySort() throws SQLException {
+        String category = BenchmarkDatabase.CATEGORIES[next++ % BenchmarkDatabase.CATEGORIES.length];
+        return db.getFilteredBooks(category, filterType);
+    }
+
+    @Benchmark
+    public void columnarCategorySort(Blackhole blackhole) {
+        String category = BenchmarkDatabase.CATEGORIES[next++ % BenchmarkDatabase.CATEGORIES.length];
+        query.reset().category(columns.categoryOrdinal(category)).sort(ColumnarCatalog.sortFor(filterType));
+        int count = Math.min(allRows.length, columns.select(query, 0, allRows));
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(columns.bookAt(allRows[i]));
+        }
+    }
+
+    @Benchmark
+    public int columnarMultiFilterPage() {
+        int first = next++ % BenchmarkDatabase.CATEGORIES.length;
+        query.reset()
+                .category(columns.categoryOrdinal(BenchmarkDatabase.CATEGORIES[first]))
+                .category(columns.categoryOrdinal(BenchmarkDatabase.CATEGORIES[(first + 3) % BenchmarkDatabase.CATEGORIES.length]))
+                .priceCents(20_000, 23_000)
+                .minRating(3f)
+                .inStockOnly(true)
+                .sort(ColumnarCatalog.sortFor(filterType));
+        return columns.select(query, 0, page);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataAccessBenchmark {
+    @Param({"1000", "10000"})
+    public int books;
+
+    private DatabaseManager db;
+    private SplittableRandom random;
+    private int users;
+    private int reviews;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path path = BenchmarkDatabase.copyOf(books);
+        db = new DatabaseManager();
+        db.connect(path.toString());
+        db.createTables();
+        random = new SplittableRandom(BenchmarkDatabase.SEED);
+        DataGenerator generator = BenchmarkDatabase.generator(books);
+        users = generator.getUsers();
+        reviews = generator.getReviews();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public List<Review> getReviews() {
+        return db.getReviews(1 + random.nextInt(books));
+    }
+
+    @Benchmark
+    public List<Message> getMessages() throws SQLException {
+        return db.getMessages(BenchmarkDatabase.login(random.nextInt(users)));
+    }
+
+    @Benchmark
+    public User findUser() throws SQLException {
+        return db.findUser(BenchmarkDatabase.login(random.nextInt(users)));
+    }
+
+    @Benchmark
+    public double getBookAverageRating() throws SQLException {
+        return db.getBookAverageRating(1 + random.nextInt(books));
+    }
+
+    @Benchmark
+    public void saveReaction() throws SQLException {
+        db.saveReaction(BenchmarkDatabase.login(random.nextInt(users)), 1 + random.nextInt(reviews),
+                random.nextBoolean() ? "Like" : "Dislike");
+    }
+
+    @Benchmark
+    public void savePurchaseAndDecreaseStock() throws SQLException {
+        int bookId = 1 + random.nextInt(books);
+        db.decreaseStock(bookId);
+        db.savePurchase(BenchmarkDatabase.login(random.nextInt(users)), bookId);
+    }
+}
@@ -0,0 +1,76 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Ten recipient completions for a one-to-four character prefix out of 100k logins. "trie" is
+// LoginTrie; "scan" filters the full login list the way the old recipient ComboBox had to.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginTrieBenchmark {
+    private static final int LIMIT = 10;
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    @Param({"100000"})
+    public int users;
+
+    @Param({"trie", "scan"})
+    public String mode;
+
+    private LoginTrie trie;
+    private List<String> logins;
+    private String[] prefixes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(BenchmarkDatabase.SEED);
+        trie = new LoginTrie();
+        logins = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            // Half generated logins sharing "user", half name-like ones spread over the alphabet.
+            String login = i % 2 == 0 ? BenchmarkDatabase.login(i) : randomWord(random, 4 + random.nextInt(8)) + i;
+            trie.put(login, "User " + i);
+            logins.add(login);
+        }
+        logins.sort(String.CASE_INSENSITIVE_ORDER);
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++) {
+            String login = logins.get(random.nextInt(users));
+            prefixes[i] = login.substring(0, Math.min(login.length(), 1 + random.nextInt(4)));
+        }
+    }
+
+    @Benchmark
+    public int complete() {
+        String prefix = prefixes[next++ & (prefixes.length - 1)];
+        if (mode.equals("trie")) {
+            return trie.complete(prefix, LIMIT).size();
+        }
+        String key = prefix.toLowerCase(Locale.ROOT);
+        int found = 0;
+        for (String login : logins) {
+            if (login.toLowerCase(Locale.ROOT).startsWith(key) && ++found == LIMIT) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    private static String randomWord(SplittableRandom random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return word.toString();
+    }
+}
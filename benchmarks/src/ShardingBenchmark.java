@@ -0,0 +1,78 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Purchase throughput with a fixed number of writer threads spread over 1..8 tenant shards.
+// Thread i always writes to tenant i % shards, as the API does for a client of that tenant,
+// so with one shard all threads queue on one SQLite write lock and with eight none do.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ShardingBenchmark {
+    private static final int BOOKS = 1000;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    private Path dir;
+    private TenantShards tenants;
+    private BookStore[] stores;
+    private int users;
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Writer {
+        BookStore store;
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setUp(ShardingBenchmark benchmark) {
+            int index = benchmark.nextThread.getAndIncrement();
+            store = benchmark.stores[index % benchmark.shards];
+            random = new SplittableRandom(BenchmarkDatabase.SEED + index);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        dir = Files.createTempDirectory("bookstore-shards-");
+        tenants = new TenantShards(dir);
+        stores = new BookStore[shards];
+        for (int i = 0; i < shards; i++) {
+            String tenantId = "tenant" + i;
+            Path dbPath = tenants.dbPathFor(tenantId);
+            Files.createDirectories(dbPath.getParent());
+            Files.copy(BenchmarkDatabase.seeded(BOOKS), dbPath);
+            stores[i] = tenants.forTenant(tenantId);
+            stores[i].awaitStartup();
+        }
+        users = BenchmarkDatabase.generator(BOOKS).getUsers();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tenants.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void purchaseBook(Writer writer) throws SQLException {
+        writer.store.purchaseBook(BenchmarkDatabase.login(writer.random.nextInt(users)), 1 + writer.random.nextInt(BOOKS));
+    }
+}
@@ -0,0 +1,248 @@
+package com.bookstore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Behaviour every StorageEngine has to share, run against the SQLite and in-memory engines
+// so benchmark results from one carry over to the other. Each engine starts without books
+// or users; run with no arguments, a failed check ends the run with an AssertionError
+// naming the engine.
+public class StorageContract {
+    private final String engineName;
+    private final StorageEngine engine;
+    private List<String> categoryNames;
+
+    private StorageContract(String engineName, StorageEngine engine) {
+        this.engineName = engineName;
+        this.engine = engine;
+    }
+
+    public static void main(String[] args) throws Exception {
+        run("in-memory", InMemoryStorage::new);
+        run("sqlite", () -> {
+            try {
+                Path path = Files.createTempFile("bookstore-contract-", ".db");
+                Files.delete(path);
+                path.toFile().deleteOnExit();
+                DatabaseManager db = new DatabaseManager();
+                db.connect(path.toString());
+                db.createTables();
+                return db;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Log.flush();
+    }
+
+    public static void run(String engineName, Supplier<StorageEngine> factory) throws SQLException {
+        long start = System.nanoTime();
+        StorageEngine engine = factory.get();
+        try {
+            StorageContract contract = new StorageContract(engineName, engine);
+            contract.categories();
+            contract.books();
+            contract.users();
+            contract.reviewsAndReactions();
+            contract.ratings();
+            contract.messages();
+            contract.purchases();
+        } finally {
+            engine.close();
+        }
+        System.out.printf("%s: storage contract passed in %d ms%n", engineName, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // SQLite seeds a default list, so this works relative to whatever is there and leaves
+    // Fiction and Science registered for books().
+    private void categories() throws SQLException {
+        List<String> names = new ArrayList<>(map(engine.getCategories(), Category::getName));
+        for (String name : List.of("Fiction", "Science", "Poetry")) {
+            if (!names.contains(name)) {
+                engine.saveCategory(name);
+                names.add(name);
+            }
+        }
+        engine.saveCategory("Epic");
+        names.add("Epic");
+        expectConstraint(() -> engine.saveCategory("Fiction"), "duplicate category");
+        check(map(engine.getCategories(), Category::getName).equals(names), "categories in insertion order");
+        check(engine.deleteCategory("Epic") && !engine.deleteCategory("Epic"), "deleteCategory removes it once");
+        names.remove("Epic");
+        categoryNames = names;
+    }
+
+    // Book ids 1-3: "Alpha" and "Gamma" in Fiction, "Beta" in Science.
+    private void books() throws SQLException {
+        engine.saveBook(new Book(0, "Alpha", 20.0, "first", new Category("Fiction"), null, 5));
+        engine.saveBook(new Book(0, "Beta", 10.0, "second", new Category("Science"), null, 1));
+        engine.saveBook(new Book(0, "Gamma", 15.0, "third", new Category("Fiction"), "covers/g.jpg", 2));
+        check(ids(engine.getFilteredBooks("Fiction", "Default")).equals(List.of(1, 3)), "Default order is by id");
+        check(ids(engine.getFilteredBooks("Fiction", "Price (Ascending)")).equals(List.of(3, 1)), "price ascending");
+        check(ids(engine.getFilteredBooks("Fiction", "Price (Descending)")).equals(List.of(1, 3)), "price descending");
+        check(engine.getFilteredBooks("Romance", "Default").isEmpty(), "empty category");
+        check(ids(engine.getBooksByIds(new int[]{3, 99, 1, 3})).equals(List.of(3, 1, 3)), "getBooksByIds keeps id order");
+
+        engine.updateBook(3, "Gamma II", 25.0, "revised", "covers/g2.jpg", 7);
+        Book updated = engine.getBooksByIds(new int[]{3}).get(0);
+        check(updated.getName().equals("Gamma II") && updated.getPrice() == 25.0 && updated.getStock() == 7
+                && updated.getCategory().getName().equals("Fiction") && "covers/g2.jpg".equals(updated.getCoverPath()),
+                "updateBook changes everything but the category");
+        check(engine.decreaseStock(3) && engine.getBooksByIds(new int[]{3}).get(0).getStock() == 6, "decreaseStock");
+        check(!engine.decreaseStock(99), "decreaseStock of a missing book");
+
+        engine.saveBook(new Book(0, "Delta", 1.0, null, new Category("Science"), null, 0));
+        check(!engine.decreaseStock(4) && engine.getBooksByIds(new int[]{4}).get(0).getStock() == 0,
+                "decreaseStock leaves a sold-out book alone");
+        engine.deleteBook(4);
+        engine.saveBook(new Book(0, "Epsilon", 2.0, null, new Category("Science"), null, 0));
+        check(engine.getBooksByIds(new int[]{4}).isEmpty(), "deleteBook");
+        check(ids(engine.getFilteredBooks("Science", "Default")).equals(List.of(2, 5)), "deleted ids are not reused");
+        check(!engine.deleteCategory("Fiction"), "a category in use is kept");
+
+        CatalogSnapshot snapshot = engine.loadCatalogSnapshot();
+        check(snapshot.getRegisteredCategories().equals(categoryNames) && snapshot.getBookCount() == 4
+                && snapshot.getEntry(3).getBook().getName().equals("Gamma II"), "loadCatalogSnapshot");
+    }
+
+    private void users() throws SQLException {
+        engine.registerUser("ann", "Ann", "Lee", "ann@example.com", "1990-01-01", "secret", "avatars/ann.png");
+        engine.registerUser("bob", "Bob", "Ray", "bob@example.com", "1991-02-02", "hunter2", null);
+        engine.registerAdmin("root", "Root", "Admin", "root@example.com", "1980-01-01", "admin123", null);
+        expectConstraint(() -> engine.registerUser("ann", "Other", "Ann", "x@example.com", "2000-01-01", "x", null),
+                "duplicate login");
+
+        User ann = engine.findUser("ann");
+        check(ann != null && ann.authenticate("secret") && !ann.authenticate("wrong"), "password is hashed and checkable");
+        check(ann.getRole().equals("Client") && !(ann instanceof Admin) && "avatars/ann.png".equals(ann.getAvatarPath()),
+                "client fields");
+        check(engine.findUser("root") instanceof Admin, "registerAdmin makes an Admin");
+        check(engine.findUser("nobody") == null, "unknown user");
+
+        engine.updateUserRole("bob", "Admin");
+        check(engine.findUser("bob") instanceof Admin, "updateUserRole promotes");
+        engine.updateUserRole("bob", "Client");
+        check(engine.findUser("bob").getRole().equals("Client"), "updateUserRole demotes");
+        check(map(engine.getAllUsers(), User::getLogin).equals(List.of("ann", "bob", "root")), "getAllUsers in insertion order");
+
+        engine.registerUser("tmp", "T", "M", "t@example.com", "2000-01-01", "x", null);
+        engine.removeUser("tmp");
+        check(engine.findUser("tmp") == null, "removeUser");
+    }
+
+    private void reviewsAndReactions() throws SQLException {
+        engine.saveReview(2, "ann", "Great", null);
+        engine.saveReview(2, "bob", "Agreed", 1);
+        engine.saveReview(1, "bob", "Fine", null);
+        List<Review> reviews = engine.getReviews(2);
+        check(map(reviews, Review::getId).equals(List.of(1, 2)), "reviews in id order");
+        check(reviews.get(0).getParentId() == null && Objects.equals(reviews.get(1).getParentId(), 1), "reply keeps parentId");
+        check(engine.getReviews(3).isEmpty(), "book without reviews");
+        check(engine.getFilteredBooks("Science", "Reviews (Descending)").get(0).getId() == 2, "review counter drives sorting");
+
+        engine.saveReaction("bob", 1, "Like");
+        engine.saveReaction("root", 1, "Like");
+        engine.saveReaction("ann", 1, "Dislike");
+        Review first = engine.getReviews(2).get(0);
+        check(first.getLikes() == 2 && first.getDislikes() == 1, "like and dislike totals");
+        check("Like".equals(engine.getUserReaction("bob", 1)), "getUserReaction");
+        check(engine.getUserReaction("bob", 2) == null, "no reaction");
+        engine.saveReaction("bob", 1, "Dislike");
+        check("Like".equals(engine.getUserReaction("bob", 1)), "first reaction wins");
+        check(engine.getReviews(2).get(0).getDislikes() == 2, "every reaction is counted");
+        Review found = engine.findReview(1);
+        check(found != null && found.getText().equals("Great") && found.getDislikes() == 2, "findReview");
+        check(Objects.equals(engine.findReview(2).getParentId(), 1), "findReview keeps parentId");
+        check(engine.findReview(99) == null, "findReview of a missing review");
+    }
+
+    private void ratings() throws SQLException {
+        engine.saveBookRating("ann", 3, 5);
+        engine.saveBookRating("bob", 3, 2);
+        engine.saveBookRating("ann", 1, 4);
+        check(engine.getBookAverageRating(3) == 3.5 && engine.getBookRatingCount(3) == 2, "average and count");
+        check(engine.getBookAverageRating(2) == 0.0 && engine.getBookRatingCount(2) == 0, "unrated book");
+        check(Objects.equals(engine.getUserBookRating("bob", 3), 2) && engine.getUserBookRating("bob", 1) == null,
+                "getUserBookRating");
+        expectConstraint(() -> engine.saveBookRating("ann", 3, 1), "second rating of the same book");
+        expectConstraint(() -> engine.saveBookRating("root", 3, 6), "rating above 5");
+        expectConstraint(() -> engine.saveBookRating("root", 3, 0), "rating below 1");
+        check(engine.getBookRatingCount(3) == 2, "rejected ratings are not stored");
+        check(ids(engine.getFilteredBooks("Fiction", "Rating (Descending)")).equals(List.of(1, 3)), "rating counters drive sorting");
+    }
+
+    private void messages() throws SQLException {
+        engine.saveMessage("ann", "bob", "hi bob");
+        engine.saveMessage("bob", "ann", "hi ann");
+        engine.saveMessage("root", "ann", "welcome");
+        engine.saveMessage("ann", "ann", "note to self");
+        List<Message> ann = engine.getMessages("ann");
+        check(map(ann, Message::getText).equals(List.of("hi bob", "hi ann", "welcome", "note to self")),
+                "sent and received, oldest first, self-messages once");
+        check(ann.get(0).getSenderLogin().equals("ann") && ann.get(0).getReceiverLogin().equals("bob")
+                && ann.get(0).getTimestamp() != null, "message fields");
+        check(engine.getMessages("bob").size() == 2 && engine.getMessages("nobody").isEmpty(), "per-user messages");
+        check(map(engine.getMessages("ann", true), Message::getId).equals(map(ann, Message::getId)),
+                "history without an archive is the hot list");
+        check(engine.getArchivedMessageCount("ann") == 0, "nothing archived");
+    }
+
+    private void purchases() throws SQLException {
+        purchase("ann", 1);
+        purchase("ann", 3);
+        purchase("bob", 3);
+        purchase("bob", 2);
+        check(engine.getPurchaseCount("Fiction") == 3 && engine.getPurchaseCount("Science") == 1
+                && engine.getPurchaseCount("Romance") == 0, "purchase counters per category");
+        check(ids(engine.getFilteredBooks("Fiction", "Popularity (Descending)")).equals(List.of(3, 1)),
+                "purchase counters drive sorting");
+        check(engine.loadCatalogSnapshot().getPurchaseCount("Fiction") == 3, "purchase counters reach the snapshot");
+        int[] live = engine.getCoPurchaseIndex().topK(1, 5);
+        check(Arrays.equals(live, new int[]{3}), "co-purchases are indexed as they are recorded: " + Arrays.toString(live));
+        long recorded = engine.getCoPurchaseIndex().getPurchaseCount();
+        engine.loadCoPurchaseIndex();
+        check(engine.getCoPurchaseIndex().getPurchaseCount() == recorded
+                && Arrays.equals(engine.getCoPurchaseIndex().topK(1, 5), live), "reloaded index matches the live one");
+    }
+
+    // What BookStore does: save, then feed the index once the save has gone through.
+    private void purchase(String userLogin, int bookId) throws SQLException {
+        engine.savePurchase(userLogin, bookId);
+        engine.getCoPurchaseIndex().record(userLogin, bookId);
+    }
+
+    private void expectConstraint(SqlAction action, String what) {
+        try {
+            action.run();
+        } catch (SQLException e) {
+            check((e.getErrorCode() & 0xff) == 19, what + " fails with SQLITE_CONSTRAINT, got " + e.getErrorCode());
+            return;
+        }
+        throw new AssertionError(engineName + ": " + what + " should fail");
+    }
+
+    private void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(engineName + ": " + what);
+        }
+    }
+
+    private static List<Integer> ids(List<Book> books) {
+        return map(books, Book::getId);
+    }
+
+    private static <T, R> List<R> map(List<T> items, Function<T, R> f) {
+        return items.stream().map(f).toList();
+    }
+
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+}
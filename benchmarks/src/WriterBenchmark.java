@@ -0,0 +1,95 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Purchases per second from 1, 8 and 64 concurrent submitters. "direct" is the old path: the
+// shared connection behind a lock, every statement committed on its own. "grouped" submits
+// each purchase to DatabaseWriter, which commits whatever queued up together.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+    private static final int BOOKS = 1000;
+
+    @Param({"direct", "grouped"})
+    public String mode;
+
+    private DatabaseManager db;
+    private DatabaseWriter writer;
+    private int users;
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Submitter {
+        SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setUp(WriterBenchmark benchmark) {
+            random = new SplittableRandom(BenchmarkDatabase.SEED + benchmark.nextThread.getAndIncrement());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path path = BenchmarkDatabase.copyOf(BOOKS);
+        db = new DatabaseManager();
+        db.connect(path.toString());
+        db.createTables();
+        writer = new DatabaseWriter(db.openWriter());
+        users = BenchmarkDatabase.generator(BOOKS).getUsers();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (writer.getCommitCount() > 0) {
+            System.out.printf("%n%d purchases in %d commits, %.1f per commit%n", writer.getWriteCount(),
+                    writer.getCommitCount(), (double) writer.getWriteCount() / writer.getCommitCount());
+        }
+        writer.close();
+        db.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void submitters1(Submitter submitter) throws SQLException {
+        purchase(submitter.random);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void submitters8(Submitter submitter) throws SQLException {
+        purchase(submitter.random);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void submitters64(Submitter submitter) throws SQLException {
+        purchase(submitter.random);
+    }
+
+    private void purchase(SplittableRandom random) throws SQLException {
+        String login = BenchmarkDatabase.login(random.nextInt(users));
+        int bookId = 1 + random.nextInt(BOOKS);
+        if (mode.equals("direct")) {
+            synchronized (db) {
+                db.decreaseStock(bookId);
+                db.savePurchase(login, bookId);
+            }
+        } else {
+            writer.execute(w -> {
+                w.decreaseStock(bookId);
+                w.savePurchase(login, bookId);
+                return null;
+            });
+        }
+    }
+}
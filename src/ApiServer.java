@@ -0,0 +1,558 @@
+package com.bookstore;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Headless JSON API over BookStore. Every request runs on its own virtual thread, so a
+// single process can hold thousands of open client connections against one database.
+//
+//   POST /api/login                     {"login","password"} -> {"token","login","role"}
+//   GET  /api/categories
+//   GET  /api/books?category=&filter=
+//   GET  /api/books/{id}/reviews
+//   GET  /api/books/{id}/recommendations?limit=
+//   POST /api/books/{id}/purchase       (auth)
+//   POST /api/books/{id}/rating         (auth) {"rating"}
+//   POST /api/books/{id}/reviews        (auth) {"text","parentId"}
+//   POST /api/reviews/{id}/reaction     (auth) {"reaction"}
+//   GET  /api/messages?history=true     (auth) history=true includes archived messages
+//   POST /api/messages                  (auth) {"to","text"}
+//   GET  /api/report/categories        (admin) category stats, summed over all tenants
+//   GET  /api/report/sales?category=&from=&to=&hourly=   (admin)
+//   GET  /api/health
+//
+// Authenticated calls pass "Authorization: Bearer <token>" with the token from /api/login;
+// tokens last twelve hours.
+// When serving TenantShards, every call except health names its storefront in an
+// "X-Tenant" header; tokens are only valid for the tenant they were issued by.
+public class ApiServer {
+    private static final LatencyHistogram REQUEST_LATENCY = Metrics.histogram("http.request");
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    // Tokens expire after SESSION_TTL_MILLIS; past MAX_SESSIONS live ones, the oldest is dropped.
+    private static final long SESSION_TTL_MILLIS = 12 * 60 * 60 * 1000L;
+    private static final int MAX_SESSIONS = 100_000;
+
+    private final BookStore store;
+    private final TenantShards shards;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public ApiServer(BookStore store, int port) throws IOException {
+        this(store, null, port);
+    }
+
+    public ApiServer(TenantShards shards, int port) throws IOException {
+        this(null, shards, port);
+    }
+
+    private ApiServer(BookStore store, TenantShards shards, int port) throws IOException {
+        this.store = store;
+        this.shards = shards;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        Log.info("API server listening on port {}", getPort());
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.close();
+        Log.info("API server stopped");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        int status;
+        String body;
+        try {
+            body = route(exchange);
+            status = 200;
+        } catch (ApiException e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (SQLException e) {
+            // SQLITE_CONSTRAINT is 19; the driver reports extended codes such as 2067 (UNIQUE)
+            status = (e.getErrorCode() & 0xff) == 19 ? 409 : 500;
+            body = error(e.getMessage());
+            if (status == 500) {
+                Log.warn("API {} failed: {}", exchange.getRequestURI(), e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            status = 500;
+            body = error("Internal error");
+            Log.error("API {} failed", exchange.getRequestURI(), e);
+        }
+        if (status >= 500) {
+            REQUEST_LATENCY.recordError();
+        }
+        try {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+            REQUEST_LATENCY.recordSince(start);
+        }
+    }
+
+    private String route(HttpExchange exchange) throws IOException, SQLException {
+        String method = exchange.getRequestMethod();
+        String[] parts = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        boolean get = method.equals("GET");
+        boolean post = method.equals("POST");
+        if (parts[0].equals("health") && get) {
+            return "{\"status\":\"ok\"}";
+        }
+        BookStore store = storeFor(exchange);
+        store.markActivity();
+
+        switch (parts[0]) {
+            case "login" -> {
+                if (post) {
+                    return login(store, readBody(exchange));
+                }
+            }
+            case "categories" -> {
+                if (get && parts.length == 1) {
+                    StringBuilder out = new StringBuilder("[");
+                    for (Category category : store.readCategories()) {
+                        if (out.length() > 1) {
+                            out.append(',');
+                        }
+                        Json.string(out.append("{\"name\":"), category.getName()).append('}');
+                    }
+                    return out.append(']').toString();
+                }
+            }
+            case "books" -> {
+                if (get && parts.length == 1) {
+                    String category = require(query, "category");
+                    return books(store.getFilteredBooks(category, query.getOrDefault("filter", "Default")));
+                }
+                if (parts.length == 3) {
+                    int bookId = parseId(parts[1]);
+                    switch (parts[2]) {
+                        case "reviews" -> {
+                            if (get) {
+                                return reviews(store.getReviews(bookId));
+                            }
+                            if (post) {
+                                Map<String, String> body = readBody(exchange);
+                                String parent = body.get("parentId");
+                                store.addReview(bookId, authenticate(exchange, store), require(body, "text"),
+                                        parent == null ? null : parseId(parent));
+                                return "{\"status\":\"ok\"}";
+                            }
+                        }
+                        case "recommendations" -> {
+                            if (get) {
+                                int limit = Integer.parseInt(query.getOrDefault("limit", "5"));
+                                return books(store.getRecommendations(bookId, Math.min(limit, 50)));
+                            }
+                        }
+                        case "purchase" -> {
+                            if (post) {
+                                String login = authenticate(exchange, store);
+                                if (store.findBook(bookId) == null) {
+                                    throw new ApiException(404, "Unknown book " + bookId);
+                                }
+                                // The write itself re-checks the stock, so this also covers a
+                                // last copy taken since the lookup.
+                                if (!store.purchaseBook(login, bookId)) {
+                                    throw new ApiException(409, "Book " + bookId + " is sold out");
+                                }
+                                return "{\"status\":\"ok\"}";
+                            }
+                        }
+                        case "rating" -> {
+                            if (post) {
+                                String login = authenticate(exchange, store);
+                                int rating = Integer.parseInt(require(readBody(exchange), "rating"));
+                                if (rating < 1 || rating > 5) {
+                                    throw new IllegalArgumentException("Rating must be between 1 and 5");
+                                }
+                                store.rateBook(login, bookId, rating);
+                                return "{\"status\":\"ok\"}";
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            }
+            case "reviews" -> {
+                if (post && parts.length == 3 && parts[2].equals("reaction")) {
+                    String login = authenticate(exchange, store);
+                    String reaction = require(readBody(exchange), "reaction");
+                    // Stored the way the UI stores them, which is what the like/dislike counts match.
+                    if (reaction.equalsIgnoreCase("like")) {
+                        reaction = "Like";
+                    } else if (reaction.equalsIgnoreCase("dislike")) {
+                        reaction = "Dislike";
+                    } else {
+                        throw new IllegalArgumentException("Reaction must be 'like' or 'dislike'");
+                    }
+                    int reviewId = parseId(parts[1]);
+                    if (store.findReview(reviewId) == null) {
+                        throw new ApiException(404, "Unknown review " + reviewId);
+                    }
+                    if (!store.reactToReview(login, reviewId, reaction)) {
+                        throw new ApiException(409, "Already reacted to review " + reviewId);
+                    }
+                    return "{\"status\":\"ok\"}";
+                }
+            }
+            case "messages" -> {
+                if (get) {
+                    return messages(store.getMessages(authenticate(exchange, store), "true".equals(query.get("history"))));
+                }
+                if (post) {
+                    String login = authenticate(exchange, store);
+                    Map<String, String> body = readBody(exchange);
+                    store.sendMessage(login, require(body, "to"), require(body, "text"));
+                    return "{\"status\":\"ok\"}";
+                }
+            }
+            case "report" -> {
+                if (get && parts.length == 2) {
+                    requireAdmin(exchange, store);
+                    switch (parts[1]) {
+                        case "categories" -> {
+                            return categoryStats(shards != null ? shards.getCategoryStats() : store.getCategoryStats());
+                        }
+                        case "sales" -> {
+                            String category = query.get("category");
+                            String from = require(query, "from");
+                            String to = require(query, "to");
+                            boolean hourly = "true".equals(query.get("hourly"));
+                            return sales(shards != null ? shards.getCategorySales(category, from, to, hourly)
+                                    : store.getCategorySales(category, from, to, hourly));
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            }
+            default -> {
+            }
+        }
+        throw new ApiException(404, "No route for " + method + " " + exchange.getRequestURI().getPath());
+    }
+
+    private BookStore storeFor(HttpExchange exchange) {
+        if (shards == null) {
+            return store;
+        }
+        String tenantId = exchange.getRequestHeaders().getFirst("X-Tenant");
+        if (tenantId == null || tenantId.isEmpty()) {
+            throw new IllegalArgumentException("Missing 'X-Tenant' header");
+        }
+        BookStore tenant = shards.forTenant(tenantId);
+        if (tenant == null) {
+            throw new ApiException(404, "Unknown tenant '" + tenantId + "'");
+        }
+        return tenant;
+    }
+
+    private String login(BookStore store, Map<String, String> body) {
+        String login = require(body, "login");
+        User user = store.findUser(login);
+        if (user == null || !user.authenticate(require(body, "password"))) {
+            throw new ApiException(401, "Invalid login or password");
+        }
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String token = HexFormat.of().formatHex(bytes);
+        long now = System.currentTimeMillis();
+        if (sessions.size() >= MAX_SESSIONS) {
+            evictSessions(now);
+        }
+        sessions.put(token, new Session(store, user.getLogin(), user.getRole(), now + SESSION_TTL_MILLIS));
+        StringBuilder out = new StringBuilder("{\"token\":");
+        Json.string(out, token).append(",\"login\":");
+        Json.string(out, user.getLogin()).append(",\"role\":");
+        return Json.string(out, user.getRole()).append('}').toString();
+    }
+
+    // Drops expired sessions, then the oldest ones while the map is still full.
+    private synchronized void evictSessions(long now) {
+        sessions.values().removeIf(session -> session.expiresAt <= now);
+        while (sessions.size() >= MAX_SESSIONS) {
+            String oldest = null;
+            long oldestExpiry = Long.MAX_VALUE;
+            for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+                if (entry.getValue().expiresAt < oldestExpiry) {
+                    oldest = entry.getKey();
+                    oldestExpiry = entry.getValue().expiresAt;
+                }
+            }
+            sessions.remove(oldest);
+        }
+    }
+
+    private String authenticate(HttpExchange exchange, BookStore store) {
+        return session(exchange, store).login;
+    }
+
+    private void requireAdmin(HttpExchange exchange, BookStore store) {
+        if (!session(exchange, store).role.equals("Admin")) {
+            throw new ApiException(403, "Admin role required");
+        }
+    }
+
+    private Session session(HttpExchange exchange, BookStore store) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        String token = header != null && header.startsWith("Bearer ") ? header.substring("Bearer ".length()).trim() : null;
+        Session session = token != null ? sessions.get(token) : null;
+        if (session != null && session.expiresAt <= System.currentTimeMillis()) {
+            sessions.remove(token);
+            session = null;
+        }
+        if (session == null || session.store != store) {
+            throw new ApiException(401, "Missing or invalid token");
+        }
+        return session;
+    }
+
+    private static String books(List<Book> books) {
+        StringBuilder out = new StringBuilder(64 + books.size() * 160).append('[');
+        for (Book book : books) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            out.append("{\"id\":").append(book.getId()).append(",\"name\":");
+            Json.string(out, book.getName()).append(",\"price\":").append(book.getPrice());
+            out.append(",\"description\":");
+            Json.string(out, book.getDescription()).append(",\"category\":");
+            Json.string(out, book.getCategory() == null ? null : book.getCategory().getName());
+            out.append(",\"stock\":").append(book.getStock()).append('}');
+        }
+        return out.append(']').toString();
+    }
+
+    private static String reviews(List<Review> reviews) {
+        StringBuilder out = new StringBuilder();
+        appendReviews(out, reviews);
+        return out.toString();
+    }
+
+    private static void appendReviews(StringBuilder out, List<Review> reviews) {
+        out.append('[');
+        for (int i = 0; i < reviews.size(); i++) {
+            Review review = reviews.get(i);
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"id\":").append(review.getId()).append(",\"user\":");
+            Json.string(out, review.getUserLogin()).append(",\"text\":");
+            Json.string(out, review.getText()).append(",\"parentId\":").append(review.getParentId());
+            out.append(",\"likes\":").append(review.getLikes()).append(",\"dislikes\":").append(review.getDislikes());
+            out.append(",\"replies\":");
+            appendReviews(out, review.getReplies());
+            out.append('}');
+        }
+        out.append(']');
+    }
+
+    private static String messages(List<Message> messages) {
+        StringBuilder out = new StringBuilder("[");
+        for (Message message : messages) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            out.append("{\"id\":").append(message.getId()).append(",\"from\":");
+            Json.string(out, message.getSenderLogin()).append(",\"to\":");
+            Json.string(out, message.getReceiverLogin()).append(",\"text\":");
+            Json.string(out, message.getText()).append(",\"timestamp\":");
+            Json.string(out, message.getTimestamp()).append('}');
+        }
+        return out.append(']').toString();
+    }
+
+    private static String categoryStats(List<CategoryStats> stats) {
+        StringBuilder out = new StringBuilder("[");
+        for (CategoryStats stat : stats) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            Json.string(out.append("{\"category\":"), stat.getCategoryName());
+            out.append(",\"purchases\":").append(stat.getPurchaseCount());
+            out.append(",\"reviews\":").append(stat.getReviewCount());
+            out.append(",\"averageRating\":").append(stat.getAverageRating());
+            out.append(",\"ratings\":").append(stat.getRatingCount()).append('}');
+        }
+        return out.append(']').toString();
+    }
+
+    private static String sales(List<SalesBucket> buckets) {
+        StringBuilder out = new StringBuilder("[");
+        for (SalesBucket bucket : buckets) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            Json.string(out.append("{\"bucket\":"), bucket.getBucket());
+            out.append(",\"purchases\":").append(bucket.getPurchaseCount());
+            out.append(",\"revenue\":").append(bucket.getRevenue()).append('}');
+        }
+        return out.append(']').toString();
+    }
+
+    private static String error(String message) {
+        return Json.string(new StringBuilder("{\"error\":"), message).append('}').toString();
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body too large");
+            }
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String require(Map<String, String> values, String key) {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing '" + key + "'");
+        }
+        return value;
+    }
+
+    // Ids are assigned from 1 up, and 0 is the co-purchase index's empty key, so anything
+    // else is rejected before it reaches a write.
+    private static int parseId(String value) {
+        int id;
+        try {
+            id = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid id '" + value + "'");
+        }
+        if (id <= 0) {
+            throw new IllegalArgumentException("Invalid id '" + value + "'");
+        }
+        return id;
+    }
+
+    private static final class Session {
+        private final BookStore store;
+        private final String login;
+        private final String role;
+        private final long expiresAt;
+
+        Session(BookStore store, String login, String role, long expiresAt) {
+            this.store = store;
+            this.login = login;
+            this.role = role;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dbPath = "bookstore.db";
+        String tenantsDir = null;
+        List<String> newTenants = new ArrayList<>();
+        int port = 8080;
+        for (String arg : args) {
+            if (arg.startsWith("--db=")) {
+                dbPath = arg.substring("--db=".length());
+            } else if (arg.startsWith("--tenants=")) {
+                tenantsDir = arg.substring("--tenants=".length());
+            } else if (arg.startsWith("--tenant=")) {
+                newTenants.add(arg.substring("--tenant=".length()));
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            }
+        }
+        ApiServer server;
+        Runnable closeStores;
+        if (tenantsDir != null) {
+            TenantShards shards = new TenantShards(Path.of(tenantsDir));
+            for (String tenantId : newTenants) {
+                shards.createTenant(tenantId);
+            }
+            shards.openAll();
+            Log.info("Serving tenants {}", shards.getTenantIds());
+            server = new ApiServer(shards, port);
+            closeStores = shards::close;
+        } else {
+            BookStore store = new BookStore(dbPath);
+            store.awaitStartup();
+            server = new ApiServer(store, port);
+            closeStores = () -> {
+                try {
+                    store.close();
+                } catch (SQLException e) {
+                    Log.warn("Error closing database: {}", e.getMessage());
+                }
+            };
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            closeStores.run();
+            Log.flush();
+        }, "api-shutdown"));
+        server.start();
+    }
+}
@@ -0,0 +1,103 @@
+package com.bookstore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Catalog search criteria. Every criterion is optional. BookStore matches the ones that are
+// set against the catalog snapshot's columns; DatabaseManager.findBooks turns them into a
+// parameterized WHERE clause over the books table.
+public class BookFilter {
+    public static final List<String> SORTS = List.of(
+            "Default", "Price (Ascending)", "Price (Descending)", "Popularity (Descending)",
+            "Rating (Descending)", "Reviews (Descending)", "Trending"
+    );
+
+    private final List<String> categories = new ArrayList<>();
+    private Double minPrice;
+    private Double maxPrice;
+    private Double minRating;
+    private boolean inStockOnly;
+    private String sort = "Default";
+    private int offset;
+    private int limit = 50;
+
+    public BookFilter category(String categoryName) {
+        categories.add(categoryName);
+        return this;
+    }
+
+    public BookFilter minPrice(Double price) {
+        minPrice = price;
+        return this;
+    }
+
+    public BookFilter maxPrice(Double price) {
+        maxPrice = price;
+        return this;
+    }
+
+    public BookFilter minRating(Double rating) {
+        minRating = rating;
+        return this;
+    }
+
+    public BookFilter inStockOnly(boolean value) {
+        inStockOnly = value;
+        return this;
+    }
+
+    public BookFilter sort(String value) {
+        sort = value == null ? "Default" : value;
+        return this;
+    }
+
+    // A limit of 0 or less returns every match.
+    public BookFilter page(int offset, int limit) {
+        this.offset = Math.max(0, offset);
+        this.limit = limit;
+        return this;
+    }
+
+    public BookFilter withPage(int offset, int limit) {
+        BookFilter copy = new BookFilter();
+        copy.categories.addAll(categories);
+        copy.minPrice = minPrice;
+        copy.maxPrice = maxPrice;
+        copy.minRating = minRating;
+        copy.inStockOnly = inStockOnly;
+        copy.sort = sort;
+        return copy.page(offset, limit);
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Double getMinRating() {
+        return minRating;
+    }
+
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
\ No newline at end of file
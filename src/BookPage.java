@@ -0,0 +1,21 @@
+package com.bookstore;
+
+import java.util.List;
+
+public class BookPage {
+    private final List<Book> books;
+    private final int totalCount;
+
+    public BookPage(List<Book> books, int totalCount) {
+        this.books = books;
+        this.totalCount = totalCount;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+}
\ No newline at end of file
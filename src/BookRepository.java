@@ -0,0 +1,25 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+import java.util.List;
+
+public interface BookRepository {
+    void saveBook(Book book) throws SQLException;
+
+    void updateBook(int id, String name, double price, String description, String coverPath, int stock) throws SQLException;
+
+    void deleteBook(int id) throws SQLException;
+
+    // Books in the order of ids; ids with no book are skipped.
+    List<Book> getBooksByIds(int[] ids) throws SQLException;
+
+    // Every book of the category, in the order the catalog shows for filterType.
+    List<Book> getFilteredBooks(String categoryName, String filterType) throws SQLException;
+
+    // Takes one copy off the stock; false, with nothing changed, if the book is missing or
+    // sold out.
+    boolean decreaseStock(int bookId) throws SQLException;
+
+    // Every book with its counters, plus the category names in order.
+    CatalogSnapshot loadCatalogSnapshot() throws SQLException;
+}
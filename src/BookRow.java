@@ -0,0 +1,88 @@
+package com.bookstore;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+
+// One line of a book table with every cell already formatted. Rows are built once per load,
+// so a cell value factory only returns a field: scrolling through a large table re-renders
+// cells without formatting, concatenating or wrapping anything.
+public final class BookRow {
+    private final Book book;
+    private final boolean soldOut;
+    private final Text name;
+    private final Text price;
+    private final Text rating;
+    private final Text stock;
+
+    // entry supplies the rating; without one (the cart, or a book deleted meanwhile) it reads "N/A".
+    public BookRow(Book book, CatalogSnapshot.Entry entry) {
+        this.book = book;
+        this.soldOut = book.getStock() <= 0;
+        this.name = new Text(book.getName());
+        this.price = new Text("$" + book.getPrice());
+        this.rating = new Text(entry == null ? "N/A" : formatRating(entry.getAverageRating(), entry.getRatingCount()));
+        this.stock = new Text(soldOut ? "Sold Out" : String.valueOf(book.getStock()));
+    }
+
+    // "4.3 (12 votes)"; concatenated rather than run through a Formatter, which costs about
+    // a kilobyte of garbage per row on a large table.
+    private static String formatRating(double average, int count) {
+        long tenths = Math.round(average * 10);
+        return tenths / 10 + "." + tenths % 10 + " (" + count + " votes)";
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public boolean isSoldOut() {
+        return soldOut;
+    }
+
+    public ObservableValue<String> nameProperty() {
+        return name;
+    }
+
+    public ObservableValue<String> priceProperty() {
+        return price;
+    }
+
+    public ObservableValue<String> ratingProperty() {
+        return rating;
+    }
+
+    public ObservableValue<String> stockProperty() {
+        return stock;
+    }
+
+    // A value that never changes, so there is nothing to notify and listeners are not kept.
+    private static final class Text implements ObservableValue<String> {
+        private final String value;
+
+        Text(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public void addListener(ChangeListener<? super String> listener) {
+        }
+
+        @Override
+        public void removeListener(ChangeListener<? super String> listener) {
+        }
+
+        @Override
+        public void addListener(InvalidationListener listener) {
+        }
+
+        @Override
+        public void removeListener(InvalidationListener listener) {
+        }
+    }
+}
@@ -1,127 +1,1104 @@
 package com.bookstore;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public class BookStore {
-    private DatabaseManager db;
+    private static final double TRENDING_HALF_LIFE_HOURS = 72;
+    private static final double TRENDING_RATING_WEIGHT = 0.5;
+    private static final long TRENDING_REFRESH_SECONDS = 60;
+    private static final long MAINTENANCE_INTERVAL_SECONDS = 60;
+    // With the journal on, purchases are appended to PurchaseJournal and folded into SQLite
+    // every JOURNAL_APPLY_MILLIS in transactions of up to JOURNAL_BATCH_RECORDS purchases.
+    private static final boolean PURCHASE_JOURNAL = Boolean.getBoolean("bookstore.purchaseJournal");
+    private static final long JOURNAL_APPLY_MILLIS = 50;
+    private static final int JOURNAL_BATCH_RECORDS = 10_000;
+    // Other processes' writes are picked up this often; past MAX_REFRESHED_BOOKS changed books
+    // one full reload is cheaper than patching them in.
+    private static final long CHANGE_POLL_MILLIS = 1000;
+    private static final int MAX_REFRESHED_BOOKS = 1000;
+    private static final LatencyHistogram FIND_USER_LATENCY = Metrics.histogram("store.findUser");
+    private static final LatencyHistogram REGISTER_USER_LATENCY = Metrics.histogram("store.registerUser");
+    private static final LatencyHistogram GET_ALL_USERS_LATENCY = Metrics.histogram("store.getAllUsers");
+    private static final LatencyHistogram REMOVE_USER_LATENCY = Metrics.histogram("store.removeUser");
+    private static final LatencyHistogram COMPLETE_LOGINS_LATENCY = Metrics.histogram("store.completeLogins");
+    private static final LatencyHistogram UPDATE_USER_ROLE_LATENCY = Metrics.histogram("store.updateUserRole");
+    private static final LatencyHistogram READ_CATEGORIES_LATENCY = Metrics.histogram("store.readCategories");
+    private static final LatencyHistogram ADD_CATEGORY_LATENCY = Metrics.histogram("store.addCategory");
+    private static final LatencyHistogram REMOVE_CATEGORY_LATENCY = Metrics.histogram("store.removeCategory");
+    private static final LatencyHistogram ADD_REVIEW_LATENCY = Metrics.histogram("store.addReview");
+    private static final LatencyHistogram GET_REVIEWS_LATENCY = Metrics.histogram("store.getReviews");
+    private static final LatencyHistogram FIND_REVIEW_LATENCY = Metrics.histogram("store.findReview");
+    private static final LatencyHistogram SEND_MESSAGE_LATENCY = Metrics.histogram("store.sendMessage");
+    private static final LatencyHistogram GET_MESSAGES_LATENCY = Metrics.histogram("store.getMessages");
+    private static final LatencyHistogram GET_ARCHIVED_MESSAGE_COUNT_LATENCY = Metrics.histogram("store.getArchivedMessageCount");
+    private static final LatencyHistogram PURCHASE_BOOK_LATENCY = Metrics.histogram("store.purchaseBook");
+    private static final LatencyHistogram RATE_BOOK_LATENCY = Metrics.histogram("store.rateBook");
+    private static final LatencyHistogram GET_USER_BOOK_RATING_LATENCY = Metrics.histogram("store.getUserBookRating");
+    private static final LatencyHistogram REACT_TO_REVIEW_LATENCY = Metrics.histogram("store.reactToReview");
+    private static final LatencyHistogram GET_FILTERED_BOOKS_LATENCY = Metrics.histogram("store.getFilteredBooks");
+    private static final LatencyHistogram GET_PURCHASE_COUNT_LATENCY = Metrics.histogram("store.getPurchaseCount");
+    private static final LatencyHistogram GET_REVIEW_COUNT_LATENCY = Metrics.histogram("store.getReviewCount");
+    private static final LatencyHistogram GET_AVERAGE_RATING_LATENCY = Metrics.histogram("store.getAverageRating");
+    private static final LatencyHistogram GET_CATEGORY_STATS_LATENCY = Metrics.histogram("store.getCategoryStats");
+    private static final LatencyHistogram GET_CATEGORY_SALES_LATENCY = Metrics.histogram("store.getCategorySales");
+    private static final LatencyHistogram GET_BOOK_SALES_LATENCY = Metrics.histogram("store.getBookSales");
+    private static final LatencyHistogram REBUILD_SALES_ROLLUPS_LATENCY = Metrics.histogram("store.rebuildSalesRollups");
+    private static final LatencyHistogram GET_RECOMMENDATIONS_LATENCY = Metrics.histogram("store.getRecommendations");
+    private static final LatencyHistogram ADD_BOOK_LATENCY = Metrics.histogram("store.addBook");
+    private static final LatencyHistogram UPDATE_BOOK_LATENCY = Metrics.histogram("store.updateBook");
+    private static final LatencyHistogram DELETE_BOOK_LATENCY = Metrics.histogram("store.deleteBook");
+    private static final LatencyHistogram GET_BOOK_AVERAGE_RATING_LATENCY = Metrics.histogram("store.getBookAverageRating");
+    private static final LatencyHistogram GET_BOOK_RATING_COUNT_LATENCY = Metrics.histogram("store.getBookRatingCount");
+    private static final LatencyHistogram GET_CATALOG_ENTRIES_LATENCY = Metrics.histogram("store.getCatalogEntries");
+    private static final LatencyHistogram FIND_BOOKS_LATENCY = Metrics.histogram("store.findBooks");
+    private static final LatencyHistogram GET_FACETS_LATENCY = Metrics.histogram("store.getFacets");
+    private static final LatencyHistogram GET_STORAGE_STATS_LATENCY = Metrics.histogram("store.getStorageStats");
+
+    private final String dbPath;
+    // SQLite-specific work (schema, rollups, trending, change polling, maintenance) goes to
+    // db; everything else only needs the StorageEngine contract. db and writer are null for
+    // a store opened over another engine. Every write after startup goes through writer, on
+    // a connection of its own: user writes share commits when they arrive together, batch
+    // jobs (trending, journal, rollup rebuild, maintenance) run alone.
+    private final DatabaseManager db;
+    private final StorageEngine storage;
+    private DatabaseWriter writer;
+    private final ChangeTracker changeTracker = new ChangeTracker();
+    private volatile Consumer<ChangeSet> changeListener;
+    // Created with the writer; null only if the database could not be opened.
+    private DatabaseMaintenance maintenance;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService startupExecutor;
+    private final ScheduledExecutorService journalApplier;
+    private PurchaseJournal journal;
+    private final Object journalApplyLock = new Object();
+    private CompletableFuture<Void> startup = CompletableFuture.completedFuture(null);
+    // Reads use whatever snapshot is published and fall back to SQL while it is null (first
+    // load, or after an admin edit until the rebuild lands). Catalog writes hold
+    // catalogWriteLock so a rebuild can tell whether a write slipped in while it was loading.
+    // Until the first live load lands, the published snapshot may be the one restored from
+    // the catalog file; catalogListener is told once it has been replaced.
+    private final AtomicReference<CatalogSnapshot> catalog = new AtomicReference<>();
+    private final Object catalogWriteLock = new Object();
+    // Serializes write() on an engine without a writer.
+    private final Object directWriteLock = new Object();
+    private long catalogVersion;
+    // Purchases, ratings and reviews wait for their commit outside catalogWriteLock so they
+    // can share one. pendingPatches counts those between beginPatch and endPatch, whose rows
+    // a snapshot loaded now may or may not include; reloads only publish when it is zero.
+    // drainingPatches holds new ones back so a reload under steady writes still gets a turn.
+    private int pendingPatches;
+    private boolean drainingPatches;
+    private boolean catalogRestored;
+    private volatile Runnable catalogListener;
+    // Rows of the categories table, read once and replaced whenever an admin adds or removes one.
+    private final AtomicReference<List<Category>> categories = new AtomicReference<>();
+    // Replaced only on the writer thread, and registerUser/removeUser update it after their
+    // commit, so a reload never drops a user registered after it or revives one removed after it.
+    private volatile LoginTrie logins = new LoginTrie();
 
     public BookStore() {
+        this("bookstore.db");
+    }
+
+    public BookStore(String dbPath) {
+        this.dbPath = dbPath;
         db = new DatabaseManager();
+        storage = db;
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("bookstore-scheduler"));
+        startupExecutor = Executors.newFixedThreadPool(2, daemonThreads("bookstore-startup"));
+        journalApplier = Executors.newSingleThreadScheduledExecutor(daemonThreads("bookstore-journal"));
+        long startupStart = System.nanoTime();
+        try {
+            db.connect(dbPath);
+            boolean migrated = db.createTables();
+            if (migrated && db.salesRollupsNeedBackfill()) {
+                Log.info("Backfilling sales rollups from purchase history...");
+                db.rebuildSalesRollups();
+            }
+            Log.info("Schema {} in {} ms", migrated ? "created or migrated" : "fingerprint matched",
+                    (System.nanoTime() - startupStart) / 1_000_000);
+            writer = new DatabaseWriter(db.openWriter());
+            maintenance = new DatabaseMaintenance(writer);
+            writer.executeAlone(w -> {
+                changeTracker.start(w);
+                return null;
+            });
+            openJournal();
+            restoreCatalog();
+            startBackgroundLoads(startupStart);
+            scheduler.scheduleWithFixedDelay(this::refreshTrending, 0, TRENDING_REFRESH_SECONDS, TimeUnit.SECONDS);
+            scheduler.scheduleWithFixedDelay(this::pollChanges, CHANGE_POLL_MILLIS, CHANGE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            scheduler.scheduleWithFixedDelay(maintenance::runIfIdle, MAINTENANCE_INTERVAL_SECONDS,
+                    MAINTENANCE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            if (journal != null) {
+                journalApplier.scheduleWithFixedDelay(this::applyJournal, JOURNAL_APPLY_MILLIS, JOURNAL_APPLY_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            }
+        } catch (SQLException e) {
+            Log.error("Error initializing database: {}", e.getMessage(), e);
+            startupExecutor.shutdown();
+        }
+    }
+
+    // A store over any other engine, e.g. InMemoryStorage for tests and demos. It skips
+    // everything that needs SQLite: the writer connection, purchase journal, catalog file,
+    // trending refresh, change polling, sales rollups and maintenance. Writes go straight to
+    // the engine and the catalog is loaded from the snapshots it builds.
+    public BookStore(StorageEngine storage) {
+        this.dbPath = null;
+        this.db = null;
+        this.storage = storage;
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("bookstore-scheduler"));
+        startupExecutor = Executors.newFixedThreadPool(2, daemonThreads("bookstore-startup"));
+        journalApplier = Executors.newSingleThreadScheduledExecutor(daemonThreads("bookstore-journal"));
+        startBackgroundLoads(System.nanoTime());
+        scheduler.execute(this::reloadCatalog);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Nothing the first screen draws needs these, so they overlap with each other, with the
+    // live catalog load on the scheduler, and with the window coming up.
+    private void startBackgroundLoads(long startupStart) {
+        startup = CompletableFuture.allOf(
+                CompletableFuture.runAsync(this::loadCoPurchaseIndex, startupExecutor),
+                CompletableFuture.runAsync(this::loadLogins, startupExecutor),
+                CompletableFuture.runAsync(this::ensureAdmin, startupExecutor));
+        startup.whenComplete((ignored, e) -> {
+            startupExecutor.shutdown();
+            Log.info("Startup finished in {} ms", (System.nanoTime() - startupStart) / 1_000_000);
+        });
+    }
+
+    // Replays whatever a previous run journaled but did not apply, whether or not the journal
+    // is still switched on; a journal left empty with the option off is removed.
+    private void openJournal() throws SQLException {
+        Path path = PurchaseJournal.pathFor(dbPath);
+        if (!PURCHASE_JOURNAL && !Files.exists(path)) {
+            return;
+        }
         try {
-            db.connect();
-            db.createTables();
-            User admin = findUser("admin");
-            if (admin == null) {
-                System.out.println("Creating admin user...");
+            journal = PurchaseJournal.open(path, db.getAppliedJournalSequence());
+            int pending = journal.getPendingCount();
+            if (pending > 0) {
+                long start = System.nanoTime();
+                applyJournal();
+                Log.info("Purchase journal: replayed {} purchases in {} ms", pending, (System.nanoTime() - start) / 1_000_000);
+            }
+            if (!PURCHASE_JOURNAL && journal.getPendingCount() == 0) {
+                journal.close();
+                journal = null;
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            Log.warn("Error opening purchase journal: {}", e.getMessage());
+            journal = null;
+        }
+    }
+
+    private void applyJournal() {
+        PurchaseJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        synchronized (journalApplyLock) {
+            try {
+                List<PurchaseJournal.Record> batch;
+                while (!(batch = current.pending(JOURNAL_BATCH_RECORDS)).isEmpty()) {
+                    current.force();
+                    List<PurchaseJournal.Record> records = batch;
+                    writer.executeAlone(w -> {
+                        w.applyJournaledPurchases(records);
+                        return null;
+                    });
+                    current.markApplied(batch.get(batch.size() - 1).getSequence());
+                }
+            } catch (SQLException e) {
+                Log.warn("Error applying purchase journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void restoreCatalog() {
+        long start = System.nanoTime();
+        try {
+            CatalogSnapshot restored = CatalogFile.read(CatalogFile.pathFor(dbPath), db.getSchemaFingerprint());
+            if (restored != null) {
+                catalogRestored = true;
+                catalog.set(restored);
+                Log.info("Catalog file: {} books mapped in {} ms", restored.getBookCount(), (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (IOException e) {
+            Log.warn("Error reading catalog file: {}", e.getMessage());
+        }
+    }
+
+    private void saveCatalog() {
+        CatalogSnapshot snapshot = catalog.get();
+        if (snapshot == null || db == null || db.getSchemaFingerprint() == 0) {
+            return;
+        }
+        try {
+            CatalogFile.write(CatalogFile.pathFor(dbPath), snapshot, db.getSchemaFingerprint());
+        } catch (IOException e) {
+            Log.warn("Error writing catalog file: {}", e.getMessage());
+        }
+    }
+
+    private void loadCoPurchaseIndex() {
+        long indexStart = System.nanoTime();
+        try {
+            storage.loadCoPurchaseIndex();
+            CoPurchaseIndex index = storage.getCoPurchaseIndex();
+            Log.info("Co-purchase index: {} purchases in {} ms, ~{} KB",
+                    index.getPurchaseCount(), (System.nanoTime() - indexStart) / 1_000_000, index.memoryBytes() / 1024);
+        } catch (SQLException e) {
+            Log.error("Error loading co-purchase index: {}", e.getMessage(), e);
+        }
+    }
+
+    private void loadLogins() {
+        long start = System.nanoTime();
+        try {
+            if (writer != null) {
+                writer.executeAlone(w -> {
+                    logins = w.loadLoginTrie();
+                    return null;
+                });
+            } else {
+                // Added to rather than replaced, so a user registered meanwhile is kept.
+                for (User user : storage.getAllUsers()) {
+                    logins.put(user.getLogin(), user.getName());
+                }
+            }
+            Log.info("Login index: {} users in {} ms", logins.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (SQLException e) {
+            Log.error("Error loading login index: {}", e.getMessage(), e);
+        }
+    }
+
+    private void ensureAdmin() {
+        User admin = findUser("admin");
+        if (admin == null) {
+            Log.info("Creating admin user...");
+            try {
+                write(w -> {
+                    w.registerAdmin("admin", "Admin", "User", "admin@example.com", "1980-01-01", "admin123", "avatars/ava.jpg");
+                    return null;
+                });
+                logins.put("admin", "Admin User");
+                admin = findUser("admin");
+                if (admin != null) {
+                    Log.info("Admin created successfully: login=admin, password=admin123, role={}", admin.getRole());
+                } else {
+                    Log.error("Admin not found after creation!");
+                }
+            } catch (SQLException e) {
+                Log.error("Error creating admin: {}", e.getMessage(), e);
+            }
+        } else {
+            Log.info("Admin already exists: {}, role: {}", admin.getName(), admin.getRole());
+        }
+    }
+
+    // Blocks until the background startup steps (co-purchase index, admin account) are done.
+    public void awaitStartup() {
+        startup.join();
+    }
+
+    public void close() throws SQLException {
+        startupExecutor.shutdownNow();
+        scheduler.shutdownNow();
+        // Not interrupted: a batch already handed to the writer is left to finish.
+        journalApplier.shutdown();
+        try {
+            startupExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            journalApplier.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (journal != null) {
+            applyJournal();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Log.warn("Error closing purchase journal: {}", e.getMessage());
+            }
+        }
+        saveCatalog();
+        if (writer != null) {
+            writer.close();
+        }
+        storage.close();
+    }
+
+    private void refreshTrending() {
+        try {
+            writer.executeAlone(w -> {
+                w.updateTrendingScores(TRENDING_HALF_LIFE_HOURS, TRENDING_RATING_WEIGHT);
+                return null;
+            });
+        } catch (SQLException e) {
+            Log.warn("Error updating trending scores: {}", e.getMessage());
+        }
+        reloadCatalog();
+    }
+
+    private void reloadCatalog() {
+        updateCatalog(() -> {
+            CatalogSnapshot fresh = storage.loadCatalogSnapshot();
+            return current -> fresh;
+        }, true);
+    }
+
+    // Re-reads the entries of books another process changed. A book that was added, deleted
+    // or moved to another category cannot be patched in and falls back to a full reload.
+    private void refreshBooks(Set<Integer> bookIds) {
+        int[] ids = bookIds.stream().mapToInt(Integer::intValue).toArray();
+        updateCatalog(() -> {
+            List<CatalogSnapshot.Entry> entries = db.loadCatalogEntries(ids);
+            return current -> entries.size() == ids.length ? current.withEntries(entries) : null;
+        }, false);
+    }
+
+    // Reads from SQL and applies the result to the published snapshot. A read that overlapped
+    // a write is retried, since it may already hold rows that write is about to patch in; the
+    // last try holds new writes back until the ones in flight have landed. A full update
+    // replaces the snapshot; a partial one patches it, or reloads when it returns null.
+    private void updateCatalog(CatalogRead read, boolean full) {
+        // The snapshot already counts journaled purchases, so SQL has to as well before it is
+        // read back.
+        applyJournal();
+        try {
+            for (int attempt = 0; attempt < 3; attempt++) {
+                long version;
+                synchronized (catalogWriteLock) {
+                    version = catalogVersion;
+                }
+                UnaryOperator<CatalogSnapshot> update = read.read();
+                synchronized (catalogWriteLock) {
+                    if (catalogVersion == version && pendingPatches == 0) {
+                        applyCatalogUpdate(update, full);
+                        return;
+                    }
+                }
+            }
+            synchronized (catalogWriteLock) {
+                drainingPatches = true;
                 try {
-                    db.registerAdmin("admin", "Admin", "User", "admin@example.com", "1980-01-01", "admin123", "avatars/ava.jpg");
-                    admin = findUser("admin");
-                    if (admin != null) {
-                        System.out.println("Admin created successfully: login=admin, password=admin123, role=" + admin.getRole());
-                    } else {
-                        System.out.println("Error: Admin not found after creation!");
+                    while (pendingPatches > 0) {
+                        catalogWriteLock.wait();
                     }
-                } catch (SQLException e) {
-                    System.err.println("Error creating admin: " + e.getMessage());
-                    e.printStackTrace();
+                    // Purchases may have been journaled while this thread waited.
+                    applyJournal();
+                    applyCatalogUpdate(read.read(), full);
+                } finally {
+                    drainingPatches = false;
+                    catalogWriteLock.notifyAll();
+                }
+            }
+        } catch (SQLException e) {
+            Log.warn("Error loading catalog snapshot: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Called with catalogWriteLock held.
+    private void applyCatalogUpdate(UnaryOperator<CatalogSnapshot> update, boolean full) {
+        if (full) {
+            publishCatalog(update.apply(null));
+            return;
+        }
+        CatalogSnapshot current = catalog.get();
+        if (current == null) {
+            // Invalidated; the reload on its way reads these rows as well.
+            return;
+        }
+        CatalogSnapshot next = update.apply(current);
+        if (next != null) {
+            catalog.set(next);
+        } else {
+            invalidateCatalog();
+        }
+    }
+
+    private interface CatalogRead {
+        UnaryOperator<CatalogSnapshot> read() throws SQLException;
+    }
+
+    // Runs on the scheduler thread, so it never overlaps a catalog reload.
+    private void pollChanges() {
+        ChangeSet changes;
+        try {
+            changes = writer.executeAlone(changeTracker::poll);
+        } catch (SQLException e) {
+            Log.warn("Error polling for changes: {}", e.getMessage());
+            return;
+        }
+        if (changes == null) {
+            return;
+        }
+        if (changes.isFull() || changes.isCategoriesChanged() || changes.getBookIds().size() > MAX_REFRESHED_BOOKS) {
+            synchronized (catalogWriteLock) {
+                categories.set(null);
+                invalidateCatalog();
+            }
+        } else if (!changes.getBookIds().isEmpty()) {
+            refreshBooks(changes.getBookIds());
+        }
+        if (changes.isFull()) {
+            loadLogins();
+        } else {
+            for (String login : changes.getUserLogins()) {
+                User user = findUser(login);
+                if (user != null) {
+                    logins.put(login, user.getName());
+                } else {
+                    logins.remove(login);
+                }
+            }
+        }
+        Consumer<ChangeSet> listener = changeListener;
+        if (listener != null) {
+            listener.accept(changes);
+        }
+    }
+
+    // Brackets a write that patches the snapshot once committed; endPatch gets null for a
+    // write that failed. Both bump catalogVersion, so a reload that overlapped either end
+    // loads again.
+    private void beginPatch() throws SQLException {
+        synchronized (catalogWriteLock) {
+            while (drainingPatches) {
+                try {
+                    catalogWriteLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while the catalog reloads", e);
                 }
-            } else {
-                System.out.println("Admin already exists: " + admin.getName() + ", role: " + admin.getRole());
             }
+            catalogVersion++;
+            pendingPatches++;
+        }
+    }
+
+    private void endPatch(UnaryOperator<CatalogSnapshot> patch) {
+        synchronized (catalogWriteLock) {
+            catalogVersion++;
+            pendingPatches--;
+            if (patch != null) {
+                catalog.updateAndGet(snapshot -> snapshot == null ? null : patch.apply(snapshot));
+            }
+            if (pendingPatches == 0) {
+                catalogWriteLock.notifyAll();
+            }
+        }
+    }
+
+    private void publishCatalog(CatalogSnapshot fresh) {
+        catalog.set(fresh);
+        if (catalogRestored) {
+            catalogRestored = false;
+            Runnable listener = catalogListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+    }
+
+    private void invalidateCatalog() {
+        catalogVersion++;
+        catalog.set(null);
+        if (!scheduler.isShutdown()) {
+            scheduler.execute(this::reloadCatalog);
+        }
+    }
+
+    public CatalogSnapshot getCatalogSnapshot() {
+        return catalog.get();
+    }
+
+    // From the published snapshot, or storage while none is; null if the book does not exist.
+    public Book findBook(int bookId) {
+        CatalogSnapshot snapshot = catalog.get();
+        CatalogSnapshot.Entry entry = snapshot != null ? snapshot.getEntry(bookId) : null;
+        if (entry != null) {
+            return entry.getBook();
+        }
+        try {
+            List<Book> found = storage.getBooksByIds(new int[]{bookId});
+            return found.isEmpty() ? null : found.get(0);
         } catch (SQLException e) {
-            System.err.println("Error initializing database: " + e.getMessage());
-            e.printStackTrace();
+            Log.warn("Error finding book: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // The published snapshot. Without SQLite to fall back on, the engine's own snapshot
+    // stands in while none is published.
+    private CatalogSnapshot readableCatalog() throws SQLException {
+        CatalogSnapshot snapshot = catalog.get();
+        return snapshot != null || db != null ? snapshot : storage.loadCatalogSnapshot();
+    }
+
+    // User writes share the writer's commits; an engine without one takes them directly.
+    // Either way a task runs alone among writes, so it can check before it writes.
+    private <T> T write(StorageTask<T> task) throws SQLException {
+        if (writer != null) {
+            return writer.execute(task::run);
+        }
+        synchronized (directWriteLock) {
+            return task.run(storage);
         }
     }
 
-    public DatabaseManager getDb() {
-        return db;
+    private interface StorageTask<T> {
+        T run(StorageEngine storage) throws SQLException;
+    }
+
+    public boolean isCatalogRestored() {
+        synchronized (catalogWriteLock) {
+            return catalogRestored;
+        }
+    }
+
+    // Runs on the scheduler thread when the live catalog replaces the restored one.
+    public void setCatalogListener(Runnable listener) {
+        catalogListener = listener;
+    }
+
+    // Runs on the scheduler thread after another process changed what the ChangeSet lists,
+    // once the catalog snapshot has been patched or dropped for a reload.
+    public void setChangeListener(Consumer<ChangeSet> listener) {
+        changeListener = listener;
+    }
+
+    // Called on every user action so background maintenance stays out of the way.
+    public void markActivity() {
+        if (maintenance != null) {
+            maintenance.markActivity();
+        }
+    }
+
+    // Runs on the scheduler thread, like the idle runs, so two runs never overlap.
+    public String runMaintenance() {
+        if (maintenance == null) {
+            return "Database not open";
+        }
+        try {
+            return scheduler.submit(() -> maintenance.run(true)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Interrupted";
+        } catch (ExecutionException | RejectedExecutionException e) {
+            Log.warn("Error running maintenance: {}", e.getMessage());
+            return "Failed: " + e.getMessage();
+        }
+    }
+
+    public String getMaintenanceReport() {
+        return maintenance != null ? maintenance.getLastReport() : "Database not open";
+    }
+
+    // Null when the stats cannot be read, or the engine is not SQLite.
+    public StorageStats getStorageStats() {
+        if (db == null) {
+            return null;
+        }
+        try {
+            return GET_STORAGE_STATS_LATENCY.time(() -> db.getStorageStats());
+        } catch (SQLException e) {
+            Log.warn("Error reading storage stats: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Next to the database file, or under the working directory without one.
+    public File getMediaDir(String kind) {
+        return db != null ? db.getMediaDir(kind) : new File(kind);
     }
 
     public User findUser(String login) {
         try {
-            return db.findUser(login);
+            return FIND_USER_LATENCY.time(() -> storage.findUser(login));
         } catch (SQLException e) {
-            System.err.println("Error finding user: " + e.getMessage());
+            Log.warn("Error finding user: {}", e.getMessage());
             return null;
         }
     }
 
     public void registerUser(String login, String firstName, String lastName, String email, String birthDate, String password, String avatarPath) throws SQLException {
-        db.registerUser(login, firstName, lastName, email, birthDate, password, avatarPath);
+        REGISTER_USER_LATENCY.time(() -> {
+            write(w -> {
+                w.registerUser(login, firstName, lastName, email, birthDate, password, avatarPath);
+                return null;
+            });
+            logins.put(login, firstName + " " + lastName);
+        });
     }
 
     public List<User> getAllUsers() {
         try {
-            return db.getAllUsers();
+            return GET_ALL_USERS_LATENCY.time(() -> storage.getAllUsers());
         } catch (SQLException e) {
-            System.err.println("Error retrieving users: " + e.getMessage());
+            Log.warn("Error retrieving users: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
 
     public void removeUser(String login) throws SQLException {
-        db.removeUser(login);
+        REMOVE_USER_LATENCY.time(() -> {
+            write(w -> {
+                w.removeUser(login);
+                return null;
+            });
+            logins.remove(login);
+        });
+    }
+
+    // Up to limit logins starting with prefix, ignoring case, with their display names.
+    public List<LoginTrie.Entry> completeLogins(String prefix, int limit) {
+        return COMPLETE_LOGINS_LATENCY.time(() -> logins.complete(prefix, limit));
+    }
+
+    public void updateUserRole(String login, String role) throws SQLException {
+        UPDATE_USER_ROLE_LATENCY.time(() -> {
+            write(w -> {
+                w.updateUserRole(login, role);
+                return null;
+            });
+        });
     }
 
     public List<Category> readCategories() {
-        List<Category> categories = new ArrayList<>();
-        String[] categoryNames = {"Fiction", "Non-Fiction", "Science", "Fantasy", "Mystery", "Romance", "History"};
         try {
-            for (String name : categoryNames) {
-                if (!db.categoryExists(name)) {
-                    db.saveCategory(name);
+            return READ_CATEGORIES_LATENCY.time(() -> {
+                List<Category> cached = categories.get();
+                if (cached == null) {
+                    synchronized (catalogWriteLock) {
+                        cached = categories.get();
+                        if (cached == null) {
+                            cached = Collections.unmodifiableList(storage.getCategories());
+                            categories.set(cached);
+                            Log.debug("Loaded categories: {}", cached.size());
+                        }
+                    }
                 }
-                categories.add(new Category(name));
-            }
+                return cached;
+            });
         } catch (SQLException e) {
-            System.err.println("Error handling categories: " + e.getMessage());
-            for (String name : categoryNames) {
-                if (!categories.stream().anyMatch(c -> c.getName().equals(name))) {
-                    categories.add(new Category(name));
+            Log.warn("Error loading categories: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    public void addCategory(String name) throws SQLException {
+        ADD_CATEGORY_LATENCY.time(() -> {
+            synchronized (catalogWriteLock) {
+                write(w -> {
+                    w.saveCategory(name);
+                    return null;
+                });
+                categories.set(null);
+                invalidateCatalog();
+            }
+        });
+    }
+
+    // Returns false when books still belong to the category; those have to be moved or deleted first.
+    public boolean removeCategory(String name) throws SQLException {
+        return REMOVE_CATEGORY_LATENCY.time(() -> {
+            synchronized (catalogWriteLock) {
+                if (!write(w -> w.deleteCategory(name))) {
+                    return false;
                 }
+                categories.set(null);
+                invalidateCatalog();
+                return true;
             }
-        }
-        System.out.println("Loaded categories: " + categories.size());
-        return categories;
+        });
     }
 
     public void addReview(int bookId, String userLogin, String text, Integer parentId) throws SQLException {
-        db.saveReview(bookId, userLogin, text, parentId);
+        ADD_REVIEW_LATENCY.time(() -> {
+            beginPatch();
+            UnaryOperator<CatalogSnapshot> patch = null;
+            try {
+                write(w -> {
+                    w.saveReview(bookId, userLogin, text, parentId);
+                    return null;
+                });
+                patch = snapshot -> snapshot.withReview(bookId);
+            } finally {
+                endPatch(patch);
+            }
+        });
     }
 
     public List<Review> getReviews(int bookId) {
-        return db.getReviews(bookId);
+        return GET_REVIEWS_LATENCY.time(() -> storage.getReviews(bookId));
+    }
+
+    public Review findReview(int reviewId) {
+        try {
+            return FIND_REVIEW_LATENCY.time(() -> storage.findReview(reviewId));
+        } catch (SQLException e) {
+            Log.warn("Error finding review: {}", e.getMessage());
+            return null;
+        }
     }
 
     public void sendMessage(String senderLogin, String receiverLogin, String text) throws SQLException {
-        db.saveMessage(senderLogin, receiverLogin, text);
+        SEND_MESSAGE_LATENCY.time(() -> {
+            write(w -> {
+                w.saveMessage(senderLogin, receiverLogin, text);
+                return null;
+            });
+        });
     }
 
     public List<Message> getMessages(String userLogin) {
+        return getMessages(userLogin, false);
+    }
+
+    // includeArchived also reads the messages moved to the archive file by maintenance.
+    public List<Message> getMessages(String userLogin, boolean includeArchived) {
         try {
-            return db.getMessages(userLogin);
+            return GET_MESSAGES_LATENCY.time(() -> storage.getMessages(userLogin, includeArchived));
         } catch (SQLException e) {
-            System.err.println("Error retrieving messages: " + e.getMessage());
+            Log.warn("Error retrieving messages: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
 
+    public int getArchivedMessageCount(String userLogin) {
+        try {
+            return GET_ARCHIVED_MESSAGE_COUNT_LATENCY.time(() -> storage.getArchivedMessageCount(userLogin));
+        } catch (SQLException e) {
+            Log.warn("Error counting archived messages: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    // Returns false, with nothing written, when the book does not exist or is sold out. The
+    // stock check and the decrement are one conditional write, so two buyers of the last
+    // copy cannot both get it. The journal only takes purchases of books the published
+    // snapshot has in stock; it is patched under the same lock, so it counts those copies
+    // down in step. Anything else is applied first, so SQL sees every journaled copy taken.
+    public boolean purchaseBook(String userLogin, int bookId) throws SQLException {
+        return PURCHASE_BOOK_LATENCY.time(() -> {
+            PurchaseJournal current = journal;
+            if (current != null) {
+                synchronized (catalogWriteLock) {
+                    CatalogSnapshot snapshot = catalog.get();
+                    CatalogSnapshot.Entry entry = snapshot != null ? snapshot.getEntry(bookId) : null;
+                    if (entry != null && entry.getBook().getStock() <= 0) {
+                        return false;
+                    }
+                    if (entry != null && current.append(userLogin, bookId)) {
+                        catalogVersion++;
+                        catalog.set(snapshot.withPurchase(bookId));
+                        indexPurchase(userLogin, bookId);
+                        return true;
+                    }
+                }
+                applyJournal();
+            }
+            beginPatch();
+            UnaryOperator<CatalogSnapshot> patch = null;
+            boolean bought;
+            try {
+                bought = write(w -> {
+                    if (!w.decreaseStock(bookId)) {
+                        return false;
+                    }
+                    w.savePurchase(userLogin, bookId);
+                    return true;
+                });
+                if (bought) {
+                    patch = snapshot -> snapshot.withPurchase(bookId);
+                }
+            } finally {
+                endPatch(patch);
+            }
+            if (bought) {
+                indexPurchase(userLogin, bookId);
+            }
+            return bought;
+        });
+    }
+
+    // The purchase is already committed, so a failure here is logged rather than reported as
+    // a failed purchase; the next index rebuild reads the purchase back from storage.
+    private void indexPurchase(String userLogin, int bookId) {
+        try {
+            storage.getCoPurchaseIndex().record(userLogin, bookId);
+        } catch (RuntimeException e) {
+            Log.warn("Error indexing purchase of book {}: {}", bookId, e.getMessage());
+        }
+    }
+
+    public void rateBook(String userLogin, int bookId, int rating) throws SQLException {
+        RATE_BOOK_LATENCY.time(() -> {
+            beginPatch();
+            UnaryOperator<CatalogSnapshot> patch = null;
+            try {
+                write(w -> {
+                    w.saveBookRating(userLogin, bookId, rating);
+                    return null;
+                });
+                patch = snapshot -> snapshot.withRating(bookId, rating);
+            } finally {
+                endPatch(patch);
+            }
+        });
+    }
+
+    public Integer getUserBookRating(String userLogin, int bookId) throws SQLException {
+        return GET_USER_BOOK_RATING_LATENCY.time(() -> storage.getUserBookRating(userLogin, bookId));
+    }
+
+    // Only the user's first reaction to a review counts; a later one returns false with
+    // nothing written. The check is part of the same write, so repeating the request
+    // concurrently cannot slip a second reaction in either.
+    public boolean reactToReview(String userLogin, int reviewId, String reaction) throws SQLException {
+        return REACT_TO_REVIEW_LATENCY.time(() -> write(w -> {
+            if (w.getUserReaction(userLogin, reviewId) != null) {
+                return false;
+            }
+            w.saveReaction(userLogin, reviewId, reaction);
+            return true;
+        }));
+    }
+
     public List<Book> getFilteredBooks(String categoryName, String filterType) throws SQLException {
-        return db.getFilteredBooks(categoryName, filterType);
+        return GET_FILTERED_BOOKS_LATENCY.time(() -> {
+            CatalogSnapshot snapshot = catalog.get();
+            return snapshot != null ? snapshot.getBooks(categoryName, filterType) : storage.getFilteredBooks(categoryName, filterType);
+        });
+    }
+
+    // Paged from the published snapshot's columns, the same source getFacets counts from, so
+    // the page total and the facet counts agree; before the first snapshot loads both go to SQL.
+    public BookPage findBooks(BookFilter filter) throws SQLException {
+        return FIND_BOOKS_LATENCY.time(() -> {
+            CatalogSnapshot snapshot = readableCatalog();
+            return snapshot != null ? findInColumns(snapshot.getColumns(), filter) : db.findBooks(filter);
+        });
+    }
+
+    // Pages through the snapshot's columns the way DatabaseManager.findBooks pages through
+    // SQL; a limit of 0 or less returns every match.
+    private static BookPage findInColumns(ColumnarCatalog columns, BookFilter filter) {
+        boolean paged = filter.getLimit() > 0;
+        int offset = paged ? filter.getOffset() : 0;
+        int[] rows = new int[paged ? filter.getLimit() : columns.size()];
+        int total = columns.select(columns.query(filter), offset, rows);
+        int count = Math.min(rows.length, Math.max(0, total - offset));
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(columns.bookAt(rows[i]));
+        }
+        return new BookPage(books, total);
+    }
+
+    // Counted in memory from the published snapshot, which purchases, ratings and book
+    // edits keep current; before the first snapshot loads it is one grouped SQL scan, like
+    // findBooks falls back to SQL.
+    public CatalogFacets getFacets(BookFilter filter) throws SQLException {
+        return GET_FACETS_LATENCY.time(() -> {
+            CatalogSnapshot snapshot = readableCatalog();
+            if (snapshot == null) {
+                return db.getFacets(filter);
+            }
+            ColumnarCatalog columns = snapshot.getColumns();
+            return columns.facets(columns.query(filter));
+        });
     }
 
     public int getPurchaseCount(String categoryName) throws SQLException {
-        return db.getPurchaseCount(categoryName);
+        return GET_PURCHASE_COUNT_LATENCY.time(() -> {
+            CatalogSnapshot snapshot = catalog.get();
+            return snapshot != null ? snapshot.getPurchaseCount(categoryName) : storage.getPurchaseCount(categoryName);
+        });
     }
 
     public int getReviewCount(String categoryName) throws SQLException {
-        return db.getReviewCount(categoryName);
+        return GET_REVIEW_COUNT_LATENCY.time(() -> {
+            CatalogSnapshot snapshot = readableCatalog();
+            return snapshot != null ? snapshot.getReviewCount(categoryName) : db.getReviewCount(categoryName);
+        });
     }
 
     public double getAverageRating(String categoryName) throws SQLException {
-        return db.getAverageRating(categoryName);
+        return GET_AVERAGE_RATING_LATENCY.time(() -> {
+            CatalogSnapshot snapshot = readableCatalog();
+            return snapshot != null ? snapshot.getAverageRating(categoryName) : db.getAverageRating(categoryName);
+        });
+    }
+
+    public List<CategoryStats> getCategoryStats() {
+        try {
+            return GET_CATEGORY_STATS_LATENCY.time(() -> {
+                CatalogSnapshot snapshot = readableCatalog();
+                return snapshot != null ? snapshot.getCategoryStats() : db.getCategoryStats();
+            });
+        } catch (SQLException e) {
+            Log.warn("Error retrieving category stats: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    public List<SalesBucket> getCategorySales(String categoryName, String fromDate, String toDate, boolean hourly) {
+        try {
+            return GET_CATEGORY_SALES_LATENCY.time(() -> db != null ? db.getCategorySales(categoryName, fromDate, toDate, hourly) : new ArrayList<>());
+        } catch (SQLException e) {
+            Log.warn("Error retrieving sales report: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    public List<SalesBucket> getBookSales(int bookId, String fromDate, String toDate, boolean hourly) {
+        try {
+            return GET_BOOK_SALES_LATENCY.time(() -> db != null ? db.getBookSales(bookId, fromDate, toDate, hourly) : new ArrayList<>());
+        } catch (SQLException e) {
+            Log.warn("Error retrieving sales report: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // Runs on the writer's connection, between groups, like the trending refresh: it manages
+    // its own transaction, which must not interleave with anything else on the main connection.
+    // Without SQLite there are no rollups to rebuild.
+    public void rebuildSalesRollups() throws SQLException {
+        if (writer == null) {
+            return;
+        }
+        REBUILD_SALES_ROLLUPS_LATENCY.time(() -> {
+            writer.executeAlone(w -> {
+                w.rebuildSalesRollups();
+                return null;
+            });
+        });
+    }
+
+    public List<Book> getRecommendations(int bookId, int limit) {
+        try {
+            return GET_RECOMMENDATIONS_LATENCY.time(() -> storage.getBooksByIds(storage.getCoPurchaseIndex().topK(bookId, limit)));
+        } catch (SQLException e) {
+            Log.warn("Error retrieving recommendations: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    public void addBook(Book book) throws SQLException {
+        ADD_BOOK_LATENCY.time(() -> {
+            synchronized (catalogWriteLock) {
+                write(w -> {
+                    w.saveBook(book);
+                    return null;
+                });
+                invalidateCatalog();
+            }
+        });
+    }
+
+    public void updateBook(int id, String name, double price, String description, String coverPath, int stock) throws SQLException {
+        UPDATE_BOOK_LATENCY.time(() -> {
+            synchronized (catalogWriteLock) {
+                write(w -> {
+                    w.updateBook(id, name, price, description, coverPath, stock);
+                    return null;
+                });
+                invalidateCatalog();
+            }
+        });
+    }
+
+    public void deleteBook(int id) throws SQLException {
+        DELETE_BOOK_LATENCY.time(() -> {
+            synchronized (catalogWriteLock) {
+                write(w -> {
+                    w.deleteBook(id);
+                    return null;
+                });
+                invalidateCatalog();
+            }
+        });
+    }
+
+    public double getBookAverageRating(int bookId) throws SQLException {
+        return GET_BOOK_AVERAGE_RATING_LATENCY.time(() -> {
+            CatalogSnapshot snapshot = catalog.get();
+            CatalogSnapshot.Entry entry = snapshot != null ? snapshot.getEntry(bookId) : null;
+            return entry != null ? entry.getAverageRating() : storage.getBookAverageRating(bookId);
+        });
+    }
+
+    public int getBookRatingCount(int bookId) throws SQLException {
+        return GET_BOOK_RATING_COUNT_LATENCY.time(() -> {
+            CatalogSnapshot snapshot = catalog.get();
+            CatalogSnapshot.Entry entry = snapshot != null ? snapshot.getEntry(bookId) : null;
+            return entry != null ? entry.getRatingCount() : storage.getBookRatingCount(bookId);
+        });
+    }
+
+    // The counters behind each of books, in the same order: from the snapshot where it has the
+    // book, otherwise from one batched read. Null for a book that no longer exists.
+    public List<CatalogSnapshot.Entry> getCatalogEntries(List<Book> books) throws SQLException {
+        return GET_CATALOG_ENTRIES_LATENCY.time(() -> {
+            CatalogSnapshot snapshot = readableCatalog();
+            List<CatalogSnapshot.Entry> entries = new ArrayList<>(books.size());
+            int[] missing = new int[books.size()];
+            int missingCount = 0;
+            for (Book book : books) {
+                CatalogSnapshot.Entry entry = snapshot != null ? snapshot.getEntry(book.getId()) : null;
+                if (entry == null) {
+                    missing[missingCount++] = book.getId();
+                }
+                entries.add(entry);
+            }
+            if (missingCount > 0 && db != null) {
+                IntObjectMap<CatalogSnapshot.Entry> loaded = new IntObjectMap<>(missingCount);
+                for (CatalogSnapshot.Entry entry : db.loadCatalogEntries(Arrays.copyOf(missing, missingCount))) {
+                    loaded.put(entry.getBook().getId(), entry);
+                }
+                for (int i = 0; i < entries.size(); i++) {
+                    if (entries.get(i) == null) {
+                        entries.set(i, loaded.get(books.get(i).getId()));
+                    }
+                }
+            }
+            return entries;
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.bookstore;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Facet counts for a catalog search: books per category, price bucket, rating band and
+// stock state. Filled in a single pass by add(), which takes one row or one group of
+// identical rows together with which of the search criteria it satisfies.
+public class CatalogFacets {
+    public static final double[] PRICE_EDGES = {10, 25, 50, 100, 200, 300};
+    public static final String[] RATING_BANDS = {"Unrated", "1-2", "2-3", "3-4", "4-5"};
+
+    private final Map<String, Integer> categoryCounts = new LinkedHashMap<>();
+    private final int[] priceCounts = new int[PRICE_EDGES.length + 1];
+    private final int[] ratingCounts = new int[RATING_BANDS.length];
+    private int inStockCount;
+    private int soldOutCount;
+    private int totalCount;
+
+    public CatalogFacets(List<String> categoryNames) {
+        for (String name : categoryNames) {
+            categoryCounts.put(name, 0);
+        }
+    }
+
+    public static int priceBucket(double price) {
+        int bucket = 0;
+        while (bucket < PRICE_EDGES.length && price >= PRICE_EDGES[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    // Averages are 0 for unrated books and at least 1 otherwise.
+    public static int ratingBand(double averageRating) {
+        return averageRating <= 0 ? 0 : Math.min(4, (int) averageRating);
+    }
+
+    public void add(String categoryName, int priceBucket, int ratingBand, boolean inStock,
+                    boolean categoryMatch, boolean priceMatch, boolean ratingMatch, boolean stockMatch, int count) {
+        if (priceMatch && ratingMatch && stockMatch) {
+            categoryCounts.merge(categoryName, count, Integer::sum);
+        }
+        if (categoryMatch && ratingMatch && stockMatch) {
+            priceCounts[priceBucket] += count;
+        }
+        if (categoryMatch && priceMatch && stockMatch) {
+            ratingCounts[ratingBand] += count;
+        }
+        if (categoryMatch && priceMatch && ratingMatch) {
+            if (inStock) {
+                inStockCount += count;
+            } else {
+                soldOutCount += count;
+            }
+            if (stockMatch) {
+                totalCount += count;
+            }
+        }
+    }
+
+    public Map<String, Integer> getCategoryCounts() {
+        return categoryCounts;
+    }
+
+    public Map<String, Integer> getPriceBuckets() {
+        Map<String, Integer> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < priceCounts.length; i++) {
+            String label = i == 0 ? "Under $" + (int) PRICE_EDGES[0]
+                    : i == PRICE_EDGES.length ? "$" + (int) PRICE_EDGES[i - 1] + "+"
+                    : "$" + (int) PRICE_EDGES[i - 1] + "-" + (int) PRICE_EDGES[i];
+            buckets.put(label, priceCounts[i]);
+        }
+        return buckets;
+    }
+
+    public Map<String, Integer> getRatingBands() {
+        Map<String, Integer> bands = new LinkedHashMap<>();
+        for (int i = 0; i < ratingCounts.length; i++) {
+            bands.put(RATING_BANDS[i], ratingCounts[i]);
+        }
+        return bands;
+    }
+
+    public int getInStockCount() {
+        return inStockCount;
+    }
+
+    public int getSoldOutCount() {
+        return soldOutCount;
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package com.bookstore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary copy of a CatalogSnapshot, written at shutdown and memory-mapped on the
+// next launch so the first screen can be drawn before the catalog is loaded from SQLite.
+// The file carries the schema fingerprint it was written under and is ignored once that
+// changes; its contents may be stale and are replaced by the live load in the background.
+//
+// Layout (big-endian): magic, version, schema fingerprint, saved-at millis, category names,
+// then per book: id, name, price, description, category, cover path, stock, purchase count,
+// review count, rating total, rating count, trending score. Strings are a length (-1 for
+// null) followed by UTF-8 bytes.
+public final class CatalogFile {
+    private static final int MAGIC = 0x424B4353;
+    private static final int VERSION = 1;
+
+    private CatalogFile() {
+    }
+
+    public static Path pathFor(String dbPath) {
+        return Path.of(dbPath + ".catalog");
+    }
+
+    public static void write(Path path, CatalogSnapshot snapshot, int schemaFingerprint) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(schemaFingerprint);
+            out.writeLong(System.currentTimeMillis());
+            List<String> categories = snapshot.getRegisteredCategories();
+            out.writeInt(categories.size());
+            for (String category : categories) {
+                writeString(out, category);
+            }
+            List<CatalogSnapshot.Entry> entries = snapshot.getEntries();
+            out.writeInt(entries.size());
+            for (CatalogSnapshot.Entry entry : entries) {
+                Book book = entry.getBook();
+                out.writeInt(book.getId());
+                writeString(out, book.getName());
+                out.writeDouble(book.getPrice());
+                writeString(out, book.getDescription());
+                writeString(out, book.getCategory().getName());
+                writeString(out, book.getCoverPath());
+                out.writeInt(book.getStock());
+                out.writeInt(entry.getPurchaseCount());
+                out.writeInt(entry.getReviewCount());
+                out.writeLong(entry.getRatingTotal());
+                out.writeInt(entry.getRatingCount());
+                out.writeDouble(entry.getTrendingScore());
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns null when there is no usable file: missing, from another format version or
+    // schema, or truncated.
+    public static CatalogSnapshot read(Path path, int schemaFingerprint) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != schemaFingerprint) {
+                return null;
+            }
+            buffer.getLong();
+            int categoryCount = buffer.getInt();
+            List<String> categoryNames = new ArrayList<>(categoryCount);
+            for (int i = 0; i < categoryCount; i++) {
+                categoryNames.add(readString(buffer));
+            }
+            int entryCount = buffer.getInt();
+            Map<String, Category> categories = new HashMap<>();
+            List<CatalogSnapshot.Entry> entries = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                int id = buffer.getInt();
+                String name = readString(buffer);
+                double price = buffer.getDouble();
+                String description = readString(buffer);
+                Category category = categories.computeIfAbsent(readString(buffer), Category::new);
+                String coverPath = readString(buffer);
+                int stock = buffer.getInt();
+                entries.add(new CatalogSnapshot.Entry(new Book(id, name, price, description, category, coverPath, stock),
+                        buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getInt(), buffer.getDouble()));
+            }
+            return buffer.hasRemaining() ? null : CatalogSnapshot.build(categoryNames, entries);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,360 @@
+package com.bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// Immutable view of the catalog: every category's books pre-sorted for each filter type,
+// plus the per-book counters the sorts and statistics are derived from. Writes never
+// touch a published snapshot; withPurchase/withReview/withRating return a new snapshot
+// that shares every category except the one that changed.
+public final class CatalogSnapshot {
+    // Past this many rows changed since the columns were last built, patching them costs
+    // about as much as building them again.
+    private static final int MAX_COLUMN_PATCHES = 4096;
+
+    private final List<String> registeredCategories;
+    private final List<String> categoryNames;
+    private final Map<String, CategoryView> categories;
+    private final IntIntMap categoryOrdinals;
+    private final long loadedAt;
+    private volatile ColumnarCatalog columns;
+    // On a patched snapshot whose columns are not built yet: the last built columns and the
+    // entries changed since, applied on first use. Dropped once the columns are built.
+    private volatile ColumnPatch columnPatch;
+
+    private CatalogSnapshot(List<String> registeredCategories, List<String> categoryNames,
+                            Map<String, CategoryView> categories, IntIntMap categoryOrdinals, long loadedAt,
+                            ColumnPatch columnPatch) {
+        this.registeredCategories = registeredCategories;
+        this.categoryNames = categoryNames;
+        this.categories = categories;
+        this.categoryOrdinals = categoryOrdinals;
+        this.loadedAt = loadedAt;
+        this.columnPatch = columnPatch;
+    }
+
+    // categoryNames are the rows of the categories table; books whose category has no row
+    // are still served, but only registered categories appear in getCategoryStats().
+    public static CatalogSnapshot build(List<String> categoryNames, List<Entry> entries) {
+        Map<String, List<Entry>> grouped = new LinkedHashMap<>();
+        for (String name : categoryNames) {
+            grouped.put(name, new ArrayList<>());
+        }
+        for (Entry entry : entries) {
+            grouped.computeIfAbsent(entry.book.getCategory().getName(), k -> new ArrayList<>()).add(entry);
+        }
+        List<String> names = List.copyOf(grouped.keySet());
+        Map<String, CategoryView> views = new LinkedHashMap<>();
+        IntIntMap ordinals = new IntIntMap(entries.size());
+        int ordinal = 0;
+        for (Map.Entry<String, List<Entry>> group : grouped.entrySet()) {
+            List<Entry> books = group.getValue();
+            books.sort(Comparator.comparingInt(e -> e.book.getId()));
+            views.put(group.getKey(), new CategoryView(group.getKey(), books.toArray(new Entry[0])));
+            for (Entry entry : books) {
+                ordinals.put(entry.book.getId(), ordinal + 1);
+            }
+            ordinal++;
+        }
+        return new CatalogSnapshot(List.copyOf(categoryNames), names, Collections.unmodifiableMap(views), ordinals,
+                System.currentTimeMillis(), null);
+    }
+
+    public List<Book> getBooks(String categoryName, String filterType) {
+        CategoryView view = categories.get(categoryName);
+        return view == null ? List.of() : view.sorted(filterType);
+    }
+
+    public List<CategoryStats> getCategoryStats() {
+        List<CategoryStats> stats = new ArrayList<>();
+        for (String name : registeredCategories) {
+            CategoryView view = categories.get(name);
+            stats.add(view == null ? new CategoryStats(name, 0, 0, 0, 0) : view.stats);
+        }
+        return stats;
+    }
+
+    public int getPurchaseCount(String categoryName) {
+        CategoryView view = categories.get(categoryName);
+        return view == null ? 0 : view.stats.getPurchaseCount();
+    }
+
+    public int getReviewCount(String categoryName) {
+        CategoryView view = categories.get(categoryName);
+        return view == null ? 0 : view.stats.getReviewCount();
+    }
+
+    public double getAverageRating(String categoryName) {
+        CategoryView view = categories.get(categoryName);
+        return view == null ? 0 : view.stats.getAverageRating();
+    }
+
+    public Entry getEntry(int bookId) {
+        CategoryView view = viewOf(bookId);
+        return view == null ? null : view.find(bookId);
+    }
+
+    public List<String> getRegisteredCategories() {
+        return registeredCategories;
+    }
+
+    public List<Entry> getEntries() {
+        List<Entry> all = new ArrayList<>(getBookCount());
+        for (CategoryView view : categories.values()) {
+            all.addAll(Arrays.asList(view.entries));
+        }
+        return all;
+    }
+
+    // Built on first use and cached. A patched snapshot starts without columns, so nothing is
+    // paid until somebody runs a columnar query; that query then copies only the columns
+    // the patched rows changed from the last columns built, and shares the rest.
+    public ColumnarCatalog getColumns() {
+        ColumnarCatalog result = columns;
+        if (result == null) {
+            ColumnPatch patch = columnPatch;
+            result = patch != null ? patch.apply() : null;
+            if (result == null) {
+                result = new ColumnarCatalog(categoryNames, getEntries());
+            }
+            columns = result;
+            columnPatch = null;
+        }
+        return result;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public int getBookCount() {
+        return categoryOrdinals.size();
+    }
+
+    public CatalogSnapshot withPurchase(int bookId) {
+        return patch(bookId, e -> new Entry(
+                new Book(e.book.getId(), e.book.getName(), e.book.getPrice(), e.book.getDescription(),
+                        e.book.getCategory(), e.book.getCoverPath(), e.book.getStock() - 1),
+                e.purchaseCount + 1, e.reviewCount, e.ratingTotal, e.ratingCount, e.trendingScore));
+    }
+
+    public CatalogSnapshot withReview(int bookId) {
+        return patch(bookId, e -> new Entry(e.book, e.purchaseCount, e.reviewCount + 1,
+                e.ratingTotal, e.ratingCount, e.trendingScore));
+    }
+
+    public CatalogSnapshot withRating(int bookId, int rating) {
+        return patch(bookId, e -> new Entry(e.book, e.purchaseCount, e.reviewCount,
+                e.ratingTotal + rating, e.ratingCount + 1, e.trendingScore));
+    }
+
+    // Replaces the entries of books already in the snapshot with fresh copies. Returns null when
+    // one of them is new or has moved category; the caller then needs a full reload.
+    public CatalogSnapshot withEntries(List<Entry> fresh) {
+        Map<String, Entry[]> patched = new LinkedHashMap<>();
+        for (Entry entry : fresh) {
+            int bookId = entry.book.getId();
+            CategoryView view = viewOf(bookId);
+            if (view == null || !Objects.equals(view.name, entry.book.getCategory().getName())) {
+                return null;
+            }
+            patched.computeIfAbsent(view.name, k -> view.entries.clone())[view.indexOf(bookId)] = entry;
+        }
+        if (patched.isEmpty()) {
+            return this;
+        }
+        Map<String, CategoryView> views = new LinkedHashMap<>(categories);
+        patched.forEach((name, entries) -> views.put(name, new CategoryView(name, entries)));
+        return new CatalogSnapshot(registeredCategories, categoryNames, Collections.unmodifiableMap(views),
+                categoryOrdinals, loadedAt, patchColumns(fresh));
+    }
+
+    private CatalogSnapshot patch(int bookId, UnaryOperator<Entry> change) {
+        CategoryView view = viewOf(bookId);
+        if (view == null) {
+            return this;
+        }
+        Entry[] entries = view.entries.clone();
+        int index = view.indexOf(bookId);
+        entries[index] = change.apply(entries[index]);
+        Map<String, CategoryView> views = new LinkedHashMap<>(categories);
+        views.put(view.name, new CategoryView(view.name, entries));
+        return new CatalogSnapshot(registeredCategories, categoryNames, Collections.unmodifiableMap(views),
+                categoryOrdinals, loadedAt, patchColumns(List.of(entries[index])));
+    }
+
+    // What a snapshot patched with changed starts from: these columns if they are built,
+    // otherwise whatever this snapshot was going to patch, plus changed. Null when there is
+    // nothing to start from or too much has changed.
+    private ColumnPatch patchColumns(List<Entry> changed) {
+        ColumnarCatalog built = columns;
+        ColumnPatch patch = built != null ? new ColumnPatch(built, null, null, 0) : columnPatch;
+        if (patch == null || patch.count + changed.size() > MAX_COLUMN_PATCHES) {
+            return null;
+        }
+        for (Entry entry : changed) {
+            patch = new ColumnPatch(patch.base, entry, patch, patch.count + 1);
+        }
+        return patch;
+    }
+
+    private CategoryView viewOf(int bookId) {
+        int ordinal = categoryOrdinals.get(bookId);
+        return ordinal == 0 ? null : categories.get(categoryNames.get(ordinal - 1));
+    }
+
+    // Newest change first; each snapshot along a run of patches shares its predecessors' tail.
+    private static final class ColumnPatch {
+        private final ColumnarCatalog base;
+        private final Entry entry;
+        private final ColumnPatch previous;
+        private final int count;
+
+        ColumnPatch(ColumnarCatalog base, Entry entry, ColumnPatch previous, int count) {
+            this.base = base;
+            this.entry = entry;
+            this.previous = previous;
+            this.count = count;
+        }
+
+        ColumnarCatalog apply() {
+            Entry[] changed = new Entry[count];
+            int i = count;
+            for (ColumnPatch patch = this; patch.entry != null; patch = patch.previous) {
+                changed[--i] = patch.entry;
+            }
+            return base.withEntries(Arrays.asList(changed));
+        }
+    }
+
+    public static final class Entry {
+        private final Book book;
+        private final int purchaseCount;
+        private final int reviewCount;
+        private final long ratingTotal;
+        private final int ratingCount;
+        private final double trendingScore;
+
+        public Entry(Book book, int purchaseCount, int reviewCount, long ratingTotal, int ratingCount, double trendingScore) {
+            this.book = book;
+            this.purchaseCount = purchaseCount;
+            this.reviewCount = reviewCount;
+            this.ratingTotal = ratingTotal;
+            this.ratingCount = ratingCount;
+            this.trendingScore = trendingScore;
+        }
+
+        public Book getBook() {
+            return book;
+        }
+
+        public int getPurchaseCount() {
+            return purchaseCount;
+        }
+
+        public int getReviewCount() {
+            return reviewCount;
+        }
+
+        public long getRatingTotal() {
+            return ratingTotal;
+        }
+
+        public int getRatingCount() {
+            return ratingCount;
+        }
+
+        public double getAverageRating() {
+            return ratingCount == 0 ? 0 : (double) ratingTotal / ratingCount;
+        }
+
+        public double getTrendingScore() {
+            return trendingScore;
+        }
+    }
+
+    // Entries are kept in id order, matching the "Default" query. The other orders use
+    // stable sorts over that, so ties break by ascending id like the SQL ORDER BY does;
+    // only the price-descending order breaks ties by descending id, as its index scan does.
+    private static final Map<String, Comparator<Entry>> ORDERS = Map.of(
+            "Price (Ascending)", Comparator.comparingDouble(e -> e.book.getPrice()),
+            "Price (Descending)", Comparator.comparingDouble((Entry e) -> e.book.getPrice())
+                    .thenComparingInt(e -> e.book.getId()).reversed(),
+            "Popularity (Descending)", Comparator.comparingInt((Entry e) -> e.purchaseCount).reversed(),
+            "Rating (Descending)", Comparator.comparingDouble(Entry::getAverageRating).reversed(),
+            "Reviews (Descending)", Comparator.comparingInt((Entry e) -> e.reviewCount).reversed(),
+            "Trending", Comparator.comparingDouble((Entry e) -> e.trendingScore).reversed());
+
+    // Each order is sorted on first use, so a patched view costs one array copy and a
+    // purchase burst does not re-sort categories nobody is browsing.
+    private static final class CategoryView {
+        private final String name;
+        private final Entry[] entries;
+        private final Map<String, List<Book>> sorted = new ConcurrentHashMap<>();
+        private final CategoryStats stats;
+
+        CategoryView(String name, Entry[] entries) {
+            this.name = name;
+            this.entries = entries;
+            int purchases = 0;
+            int reviews = 0;
+            long ratingTotal = 0;
+            int ratingCount = 0;
+            for (Entry entry : entries) {
+                purchases += entry.purchaseCount;
+                reviews += entry.reviewCount;
+                ratingTotal += entry.ratingTotal;
+                ratingCount += entry.ratingCount;
+            }
+            stats = new CategoryStats(name, purchases, reviews, ratingCount == 0 ? 0 : (double) ratingTotal / ratingCount,
+                    ratingCount);
+        }
+
+        List<Book> sorted(String filterType) {
+            String key = ORDERS.containsKey(filterType) ? filterType : "Default";
+            return sorted.computeIfAbsent(key, k -> order(ORDERS.get(k)));
+        }
+
+        private List<Book> order(Comparator<Entry> comparator) {
+            Entry[] copy = comparator == null ? entries : entries.clone();
+            if (comparator != null) {
+                Arrays.sort(copy, comparator);
+            }
+            Book[] books = new Book[copy.length];
+            for (int i = 0; i < copy.length; i++) {
+                books[i] = copy[i].book;
+            }
+            return Collections.unmodifiableList(Arrays.asList(books));
+        }
+
+        int indexOf(int bookId) {
+            int low = 0;
+            int high = entries.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int id = entries[mid].book.getId();
+                if (id < bookId) {
+                    low = mid + 1;
+                } else if (id > bookId) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        Entry find(int bookId) {
+            int index = indexOf(bookId);
+            return index < 0 ? null : entries[index];
+        }
+    }
+}
\ No newline at end of file
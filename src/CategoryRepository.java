@@ -0,0 +1,15 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+import java.util.List;
+
+public interface CategoryRepository {
+    // In the order they were added.
+    List<Category> getCategories() throws SQLException;
+
+    // A name that already exists is a constraint error.
+    void saveCategory(String name) throws SQLException;
+
+    // Only removes a category no book points at; returns false if it was in use or missing.
+    boolean deleteCategory(String name) throws SQLException;
+}
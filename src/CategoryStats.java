@@ -0,0 +1,37 @@
+package com.bookstore;
+
+public class CategoryStats {
+    private String categoryName;
+    private int purchaseCount;
+    private int reviewCount;
+    private double averageRating;
+    private int ratingCount;
+
+    public CategoryStats(String categoryName, int purchaseCount, int reviewCount, double averageRating, int ratingCount) {
+        this.categoryName = categoryName;
+        this.purchaseCount = purchaseCount;
+        this.reviewCount = reviewCount;
+        this.averageRating = averageRating;
+        this.ratingCount = ratingCount;
+    }
+
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    public int getPurchaseCount() {
+        return purchaseCount;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+}
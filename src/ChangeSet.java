@@ -0,0 +1,57 @@
+package com.bookstore;
+
+import java.util.Collections;
+import java.util.Set;
+
+// What other processes changed since the last poll. When isFull() the change log could not
+// say exactly (the process fell too far behind), so every cached entity has to be re-read.
+public final class ChangeSet {
+    private final boolean full;
+    private final Set<Integer> bookIds;
+    private final Set<Integer> reviewBookIds;
+    private final Set<String> messageLogins;
+    private final Set<String> userLogins;
+    private final boolean categoriesChanged;
+
+    public ChangeSet(boolean full, Set<Integer> bookIds, Set<Integer> reviewBookIds, Set<String> messageLogins,
+                     Set<String> userLogins, boolean categoriesChanged) {
+        this.full = full;
+        this.bookIds = Collections.unmodifiableSet(bookIds);
+        this.reviewBookIds = Collections.unmodifiableSet(reviewBookIds);
+        this.messageLogins = Collections.unmodifiableSet(messageLogins);
+        this.userLogins = Collections.unmodifiableSet(userLogins);
+        this.categoriesChanged = categoriesChanged;
+    }
+
+    public static ChangeSet full() {
+        return new ChangeSet(true, Set.of(), Set.of(), Set.of(), Set.of(), true);
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    // Books whose row, reviews or ratings changed, i.e. whose catalog entry is stale.
+    public Set<Integer> getBookIds() {
+        return bookIds;
+    }
+
+    // Books whose reviews or review reactions changed.
+    public Set<Integer> getReviewBookIds() {
+        return reviewBookIds;
+    }
+
+    // Senders and receivers of new messages.
+    public Set<String> getMessageLogins() {
+        return messageLogins;
+    }
+
+    // Users registered or removed.
+    public Set<String> getUserLogins() {
+        return userLogins;
+    }
+
+    public boolean isCategoriesChanged() {
+        return categoriesChanged;
+    }
+}
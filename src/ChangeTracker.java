@@ -0,0 +1,109 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Notices writes other processes make to the same database file. Triggers log every change
+// to books, reviews, ratings, messages, users and categories in the changes table (see
+// DatabaseManager.createChangeLog); poll() returns the ones this process did not make itself.
+//
+// Both methods run on the writer thread with the writer's DatabaseManager. PRAGMA
+// data_version on that connection only moves when some other connection commits, so while it
+// stands still every new change row is one of ours and the poll costs two tiny queries. Once
+// it moves, everything past the last seen row is read; rows of ours among them are harmless,
+// since applying a change means re-reading the entity.
+public class ChangeTracker {
+    private static final int MAX_ROWS = 10_000;
+    // The log is trimmed to this many rows; a process further behind than that reloads everything.
+    private static final int RETAINED_CHANGES = 100_000;
+    private static final int PRUNE_EVERY_POLLS = 60;
+
+    private long lastSeenId;
+    private long lastDataVersion;
+    private int polls;
+
+    // Called once before the first catalog load, so nothing committed after that load is missed.
+    public void start(DatabaseManager db) throws SQLException {
+        lastSeenId = db.getLastChangeId();
+        lastDataVersion = db.getDataVersion();
+    }
+
+    // Returns null when no other process changed anything tracked.
+    public ChangeSet poll(DatabaseManager db) throws SQLException {
+        if (++polls % PRUNE_EVERY_POLLS == 0) {
+            db.pruneChanges(RETAINED_CHANGES);
+        }
+        // Read before data_version: if that has not moved, no other connection committed
+        // before this id was read, so everything up to it is ours.
+        long lastId = db.getLastChangeId();
+        long dataVersion = db.getDataVersion();
+        if (dataVersion == lastDataVersion) {
+            lastSeenId = lastId;
+            return null;
+        }
+        lastDataVersion = dataVersion;
+        List<Change> changes = db.getChangesSince(lastSeenId, MAX_ROWS + 1);
+        long firstId = changes.isEmpty() ? lastSeenId + 1 : changes.get(0).getId();
+        long seenBefore = lastSeenId;
+        lastSeenId = Math.max(lastId, changes.isEmpty() ? 0 : changes.get(changes.size() - 1).getId());
+        if (changes.size() > MAX_ROWS || firstId != seenBefore + 1) {
+            return ChangeSet.full();
+        }
+        if (changes.isEmpty()) {
+            return null;
+        }
+        Set<Integer> bookIds = new LinkedHashSet<>();
+        Set<Integer> reviewBookIds = new LinkedHashSet<>();
+        Set<String> messageLogins = new LinkedHashSet<>();
+        Set<String> userLogins = new LinkedHashSet<>();
+        boolean categoriesChanged = false;
+        for (Change change : changes) {
+            switch (change.getEntity()) {
+                case "book", "rating" -> bookIds.add(change.getBookId());
+                case "review" -> {
+                    bookIds.add(change.getBookId());
+                    reviewBookIds.add(change.getBookId());
+                }
+                case "message" -> messageLogins.add(change.getUserLogin());
+                case "user" -> userLogins.add(change.getUserLogin());
+                case "category" -> categoriesChanged = true;
+                default -> {
+                    return ChangeSet.full();
+                }
+            }
+        }
+        return new ChangeSet(false, bookIds, reviewBookIds, messageLogins, userLogins, categoriesChanged);
+    }
+
+    public static final class Change {
+        private final long id;
+        private final String entity;
+        private final int bookId;
+        private final String userLogin;
+
+        public Change(long id, String entity, int bookId, String userLogin) {
+            this.id = id;
+            this.entity = entity;
+            this.bookId = bookId;
+            this.userLogin = userLogin;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public int getBookId() {
+            return bookId;
+        }
+
+        public String getUserLogin() {
+            return userLogin;
+        }
+    }
+}
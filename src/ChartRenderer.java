@@ -0,0 +1,48 @@
+package com.bookstore;
+
+import javafx.scene.image.Image;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+// JFreeChart draws through AWT, so charts are rendered to PNG on a worker thread
+// and only the finished Image is handed to the FX thread.
+public class ChartRenderer {
+    private ChartRenderer() {
+    }
+
+    public static Image renderCategoryBarChart(String title, String valueLabel, List<CategoryStats> stats,
+                                               ToDoubleFunction<CategoryStats> value, int width, int height) throws IOException {
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        for (CategoryStats s : stats) {
+            dataset.addValue(value.applyAsDouble(s), valueLabel, s.getCategoryName());
+        }
+        JFreeChart chart = ChartFactory.createBarChart(title, "Category", valueLabel, dataset,
+                PlotOrientation.VERTICAL, false, true, false);
+        return toImage(chart, width, height);
+    }
+
+    public static Image renderSalesChart(String title, List<SalesBucket> buckets, int width, int height) throws IOException {
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        for (SalesBucket b : buckets) {
+            dataset.addValue(b.getPurchaseCount(), "Purchases", b.getBucket());
+        }
+        JFreeChart chart = ChartFactory.createLineChart(title, "Period", "Purchases", dataset,
+                PlotOrientation.VERTICAL, false, true, false);
+        return toImage(chart, width, height);
+    }
+
+    private static Image toImage(JFreeChart chart, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChartUtils.writeChartAsPNG(out, chart, width, height);
+        return new Image(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
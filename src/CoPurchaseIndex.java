@@ -0,0 +1,251 @@
+package com.bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// "Customers also bought" index: for every book, how many distinct customers also bought
+// each other book. Pair counts are sharded by book id so a rebuild can fill every shard
+// on its own thread without any merging.
+//
+// A rebuild is handed purchases its caller read earlier, so anything recorded between that
+// read and the swap would be lost with the old maps. Callers bracket the read and the
+// rebuild with beginRebuild() and endRebuild(); in between, record() also queues each
+// purchase and rebuild() replays the queue onto the new maps before publishing them. A
+// purchase that was already in the read and is replayed too only bumps its customer's
+// basket count, which pair counts ignore, so replaying it is harmless.
+public class CoPurchaseIndex {
+    private final int shardCount;
+    private final Map<String, IntIntMap> baskets = new HashMap<>();
+    private IntObjectMap<IntIntMap>[] shards;
+    private long purchaseCount;
+    private int rebuilds;
+    private final List<String> pendingLogins = new ArrayList<>();
+    private int[] pendingBookIds = new int[16];
+
+    public CoPurchaseIndex() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public CoPurchaseIndex(int shardCount) {
+        this.shardCount = shardCount;
+        this.shards = newShards(shardCount);
+    }
+
+    public synchronized void record(String userLogin, int bookId) {
+        if (rebuilds > 0) {
+            if (pendingLogins.size() == pendingBookIds.length) {
+                pendingBookIds = Arrays.copyOf(pendingBookIds, pendingBookIds.length * 2);
+            }
+            pendingBookIds[pendingLogins.size()] = bookId;
+            pendingLogins.add(userLogin);
+        }
+        apply(userLogin, bookId);
+    }
+
+    // Call before reading the purchases for rebuild(), and always pair with endRebuild().
+    public synchronized void beginRebuild() {
+        rebuilds++;
+    }
+
+    public synchronized void endRebuild() {
+        if (rebuilds > 0 && --rebuilds == 0) {
+            pendingLogins.clear();
+            pendingBookIds = new int[16];
+        }
+    }
+
+    private void apply(String userLogin, int bookId) {
+        purchaseCount++;
+        IntIntMap basket = baskets.computeIfAbsent(userLogin, k -> new IntIntMap(4));
+        if (basket.increment(bookId, 1) > 1) {
+            return;
+        }
+        IntIntMap row = row(bookId);
+        for (int slot = 0; slot < basket.capacity(); slot++) {
+            int other = basket.keyAt(slot);
+            if (other != 0 && other != bookId) {
+                row.increment(other, 1);
+                row(other).increment(bookId, 1);
+            }
+        }
+    }
+
+    public void rebuild(List<String> userLogins, int[] bookIds) {
+        Map<String, IntIntMap> newBaskets = new HashMap<>();
+        for (int i = 0; i < userLogins.size(); i++) {
+            newBaskets.computeIfAbsent(userLogins.get(i), k -> new IntIntMap(4)).increment(bookIds[i], 1);
+        }
+        List<int[]> distinctBaskets = new ArrayList<>(newBaskets.size());
+        for (IntIntMap basket : newBaskets.values()) {
+            if (basket.size() > 1) {
+                int[] books = new int[basket.size()];
+                int n = 0;
+                for (int slot = 0; slot < basket.capacity(); slot++) {
+                    if (basket.keyAt(slot) != 0) {
+                        books[n++] = basket.keyAt(slot);
+                    }
+                }
+                distinctBaskets.add(books);
+            }
+        }
+
+        IntObjectMap<IntIntMap>[] newShards = newShards(shardCount);
+        IntStream.range(0, shardCount).parallel().forEach(shard -> {
+            IntObjectMap<IntIntMap> rows = newShards[shard];
+            for (int[] books : distinctBaskets) {
+                for (int a : books) {
+                    if (shardOf(a) != shard) {
+                        continue;
+                    }
+                    IntIntMap row = rows.get(a);
+                    if (row == null) {
+                        row = new IntIntMap(books.length);
+                        rows.put(a, row);
+                    }
+                    for (int b : books) {
+                        if (b != a) {
+                            row.increment(b, 1);
+                        }
+                    }
+                }
+            }
+        });
+
+        synchronized (this) {
+            baskets.clear();
+            baskets.putAll(newBaskets);
+            shards = newShards;
+            purchaseCount = bookIds.length;
+            for (int i = 0; i < pendingLogins.size(); i++) {
+                apply(pendingLogins.get(i), pendingBookIds[i]);
+            }
+        }
+    }
+
+    public synchronized int[] topK(int bookId, int k) {
+        IntIntMap row = shards[shardOf(bookId)].get(bookId);
+        if (row == null || k <= 0) {
+            return new int[0];
+        }
+        // Bounded min-heap on (count, -id) kept in two parallel arrays.
+        int[] heapIds = new int[k];
+        int[] heapCounts = new int[k];
+        int heapSize = 0;
+        for (int slot = 0; slot < row.capacity(); slot++) {
+            int id = row.keyAt(slot);
+            if (id == 0) {
+                continue;
+            }
+            int count = row.valueAt(slot);
+            if (heapSize < k) {
+                heapIds[heapSize] = id;
+                heapCounts[heapSize] = count;
+                siftUp(heapIds, heapCounts, heapSize++);
+            } else if (better(count, id, heapCounts[0], heapIds[0])) {
+                heapIds[0] = id;
+                heapCounts[0] = count;
+                siftDown(heapIds, heapCounts, heapSize);
+            }
+        }
+        int[] result = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = heapIds[0];
+            heapIds[0] = heapIds[i];
+            heapCounts[0] = heapCounts[i];
+            siftDown(heapIds, heapCounts, i);
+        }
+        return result;
+    }
+
+    public synchronized long getPurchaseCount() {
+        return purchaseCount;
+    }
+
+    public synchronized long memoryBytes() {
+        long bytes = 0;
+        for (IntObjectMap<IntIntMap> rows : shards) {
+            bytes += rows.memoryBytes();
+            for (int slot = 0; slot < rows.capacity(); slot++) {
+                IntIntMap row = rows.valueAt(slot);
+                if (row != null) {
+                    bytes += row.memoryBytes();
+                }
+            }
+        }
+        for (Map.Entry<String, IntIntMap> entry : baskets.entrySet()) {
+            bytes += 32L + 40L + 2L * entry.getKey().length() + entry.getValue().memoryBytes();
+        }
+        return bytes;
+    }
+
+    private IntIntMap row(int bookId) {
+        IntObjectMap<IntIntMap> rows = shards[shardOf(bookId)];
+        IntIntMap row = rows.get(bookId);
+        if (row == null) {
+            row = new IntIntMap(4);
+            rows.put(bookId, row);
+        }
+        return row;
+    }
+
+    private int shardOf(int bookId) {
+        return (IntIntMap.mix(bookId) & Integer.MAX_VALUE) % shardCount;
+    }
+
+    private static boolean better(int count, int id, int otherCount, int otherId) {
+        return count > otherCount || (count == otherCount && id < otherId);
+    }
+
+    private static void siftUp(int[] ids, int[] counts, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(counts[parent], ids[parent], counts[i], ids[i])) {
+                break;
+            }
+            swap(ids, counts, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] ids, int[] counts, int size) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && better(counts[left], ids[left], counts[right], ids[right])) {
+                worst = right;
+            }
+            if (!better(counts[i], ids[i], counts[worst], ids[worst])) {
+                break;
+            }
+            swap(ids, counts, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(int[] ids, int[] counts, int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        int count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static IntObjectMap<IntIntMap>[] newShards(int count) {
+        IntObjectMap<IntIntMap>[] shards = new IntObjectMap[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new IntObjectMap<>();
+        }
+        return shards;
+    }
+}
@@ -0,0 +1,507 @@
+package com.bookstore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Column-oriented copy of the catalog for ad-hoc sort and filter queries. Rows are books in
+// id order, stored as parallel primitive arrays. Every sort order is a precomputed row
+// permutation; category and stock filters are bitsets over rows. A query walks one
+// permutation and tests the bitset and the range columns, writing matching row numbers
+// into a caller-supplied int[], so the query path allocates nothing per book. Permutations
+// are sorted on first use, so a catalog rebuilt after a write only pays for the orders
+// that are actually queried, and facet counting needs none of them.
+public final class ColumnarCatalog {
+    public static final int SORT_DEFAULT = 0;
+    public static final int SORT_PRICE_ASC = 1;
+    public static final int SORT_PRICE_DESC = 2;
+    public static final int SORT_POPULARITY = 3;
+    public static final int SORT_RATING = 4;
+    public static final int SORT_REVIEWS = 5;
+    public static final int SORT_TRENDING = 6;
+    private static final int SORT_COUNT = 7;
+    // Columns a changed row can touch, and the ones each sort order is keyed on.
+    private static final int PRICE = 1;
+    private static final int RATING = 2;
+    private static final int STOCK = 4;
+    private static final int PURCHASES = 8;
+    private static final int REVIEWS = 16;
+    private static final int TRENDING = 32;
+    private static final int[] SORT_KEYS = {0, PRICE, PRICE, PURCHASES, RATING, REVIEWS, TRENDING};
+
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[0]);
+
+    private final int size;
+    private final int words;
+    private final int[] ids;
+    private final long[] priceCents;
+    private final float[] ratings;
+    private final int[] stock;
+    private final int[] purchaseCounts;
+    private final int[] reviewCounts;
+    private final double[] trendingScores;
+    private final int[] categoryOrdinals;
+    private final Book[] books;
+    private final List<String> categoryNames;
+    private final AtomicReferenceArray<int[]> permutations = new AtomicReferenceArray<>(SORT_COUNT);
+    private final long[][] categoryBits;
+    private final long[] inStockBits;
+
+    public ColumnarCatalog(List<String> categoryNames, List<CatalogSnapshot.Entry> entries) {
+        CatalogSnapshot.Entry[] rows = entries.toArray(new CatalogSnapshot.Entry[0]);
+        Arrays.sort(rows, (a, b) -> Integer.compare(a.getBook().getId(), b.getBook().getId()));
+        this.size = rows.length;
+        this.words = (size + 63) >>> 6;
+        this.categoryNames = List.copyOf(categoryNames);
+        ids = new int[size];
+        priceCents = new long[size];
+        ratings = new float[size];
+        stock = new int[size];
+        purchaseCounts = new int[size];
+        reviewCounts = new int[size];
+        trendingScores = new double[size];
+        categoryOrdinals = new int[size];
+        books = new Book[size];
+        categoryBits = new long[this.categoryNames.size()][words];
+        inStockBits = new long[words];
+        for (int row = 0; row < size; row++) {
+            CatalogSnapshot.Entry entry = rows[row];
+            Book book = entry.getBook();
+            books[row] = book;
+            ids[row] = book.getId();
+            priceCents[row] = Math.round(book.getPrice() * 100);
+            ratings[row] = (float) entry.getAverageRating();
+            stock[row] = book.getStock();
+            purchaseCounts[row] = entry.getPurchaseCount();
+            reviewCounts[row] = entry.getReviewCount();
+            trendingScores[row] = entry.getTrendingScore();
+            int ordinal = this.categoryNames.indexOf(book.getCategory().getName());
+            categoryOrdinals[row] = ordinal;
+            if (ordinal >= 0) {
+                categoryBits[ordinal][row >>> 6] |= 1L << row;
+            }
+            if (stock[row] > 0) {
+                inStockBits[row >>> 6] |= 1L << row;
+            }
+        }
+    }
+
+    // Shares every column of source except the ones in copied, which are cloned for the
+    // caller to overwrite, and keeps every sort order not keyed on one of those.
+    private ColumnarCatalog(ColumnarCatalog source, int copied) {
+        size = source.size;
+        words = source.words;
+        ids = source.ids;
+        categoryNames = source.categoryNames;
+        categoryOrdinals = source.categoryOrdinals;
+        categoryBits = source.categoryBits;
+        books = source.books.clone();
+        priceCents = (copied & PRICE) != 0 ? source.priceCents.clone() : source.priceCents;
+        ratings = (copied & RATING) != 0 ? source.ratings.clone() : source.ratings;
+        stock = (copied & STOCK) != 0 ? source.stock.clone() : source.stock;
+        inStockBits = (copied & STOCK) != 0 ? source.inStockBits.clone() : source.inStockBits;
+        purchaseCounts = (copied & PURCHASES) != 0 ? source.purchaseCounts.clone() : source.purchaseCounts;
+        reviewCounts = (copied & REVIEWS) != 0 ? source.reviewCounts.clone() : source.reviewCounts;
+        trendingScores = (copied & TRENDING) != 0 ? source.trendingScores.clone() : source.trendingScores;
+        for (int sort = 0; sort < SORT_COUNT; sort++) {
+            if ((SORT_KEYS[sort] & copied) == 0) {
+                permutations.set(sort, source.permutations.get(sort));
+            }
+        }
+    }
+
+    // A copy with the rows of the given books replaced, for a patched snapshot. A purchase
+    // only copies the stock and purchase columns and re-sorts popularity; everything else
+    // is shared with this catalog. Returns null if a book is not in the catalog or has
+    // moved category, in which case the caller builds from scratch.
+    ColumnarCatalog withEntries(List<CatalogSnapshot.Entry> changed) {
+        int[] rows = new int[changed.size()];
+        int copied = 0;
+        for (int i = 0; i < rows.length; i++) {
+            CatalogSnapshot.Entry entry = changed.get(i);
+            Book book = entry.getBook();
+            int row = Arrays.binarySearch(ids, book.getId());
+            if (row < 0 || categoryOrdinals[row] != categoryNames.indexOf(book.getCategory().getName())) {
+                return null;
+            }
+            rows[i] = row;
+            copied |= changedColumns(row, entry);
+        }
+        ColumnarCatalog next = new ColumnarCatalog(this, copied);
+        for (int i = 0; i < rows.length; i++) {
+            next.overwrite(rows[i], changed.get(i), copied);
+        }
+        return next;
+    }
+
+    private int changedColumns(int row, CatalogSnapshot.Entry entry) {
+        Book book = entry.getBook();
+        int changed = 0;
+        if (priceCents[row] != Math.round(book.getPrice() * 100)) {
+            changed |= PRICE;
+        }
+        if (ratings[row] != (float) entry.getAverageRating()) {
+            changed |= RATING;
+        }
+        if (stock[row] != book.getStock()) {
+            changed |= STOCK;
+        }
+        if (purchaseCounts[row] != entry.getPurchaseCount()) {
+            changed |= PURCHASES;
+        }
+        if (reviewCounts[row] != entry.getReviewCount()) {
+            changed |= REVIEWS;
+        }
+        if (Double.compare(trendingScores[row], entry.getTrendingScore()) != 0) {
+            changed |= TRENDING;
+        }
+        return changed;
+    }
+
+    // Only writes the columns this catalog owns a copy of; the shared ones already hold the value.
+    private void overwrite(int row, CatalogSnapshot.Entry entry, int copied) {
+        Book book = entry.getBook();
+        books[row] = book;
+        if ((copied & PRICE) != 0) {
+            priceCents[row] = Math.round(book.getPrice() * 100);
+        }
+        if ((copied & RATING) != 0) {
+            ratings[row] = (float) entry.getAverageRating();
+        }
+        if ((copied & STOCK) != 0) {
+            stock[row] = book.getStock();
+            if (stock[row] > 0) {
+                inStockBits[row >>> 6] |= 1L << row;
+            } else {
+                inStockBits[row >>> 6] &= ~(1L << row);
+            }
+        }
+        if ((copied & PURCHASES) != 0) {
+            purchaseCounts[row] = entry.getPurchaseCount();
+        }
+        if ((copied & REVIEWS) != 0) {
+            reviewCounts[row] = entry.getReviewCount();
+        }
+        if ((copied & TRENDING) != 0) {
+            trendingScores[row] = entry.getTrendingScore();
+        }
+    }
+
+    private int[] permutation(int sort) {
+        int[] order = permutations.get(sort);
+        if (order == null) {
+            order = switch (sort) {
+                case SORT_PRICE_ASC -> {
+                    int[] keys = new int[size];
+                    for (int row = 0; row < size; row++) {
+                        keys[row] = (int) Math.min(Integer.MAX_VALUE, priceCents[row]);
+                    }
+                    yield sortBy(keys, false);
+                }
+                case SORT_PRICE_DESC -> reversed(permutation(SORT_PRICE_ASC));
+                case SORT_POPULARITY -> sortBy(purchaseCounts, true);
+                case SORT_REVIEWS -> sortBy(reviewCounts, true);
+                case SORT_RATING -> {
+                    int[] keys = new int[size];
+                    for (int row = 0; row < size; row++) {
+                        keys[row] = Float.floatToIntBits(Math.max(0f, ratings[row]));
+                    }
+                    yield sortBy(keys, true);
+                }
+                case SORT_TRENDING -> sortDescending(trendingScores);
+                default -> identity(size);
+            };
+            // Two threads may race to sort the same order; both results are identical.
+            permutations.set(sort, order);
+        }
+        return order;
+    }
+
+    public static int sortFor(String filterType) {
+        return switch (filterType) {
+            case "Price (Ascending)" -> SORT_PRICE_ASC;
+            case "Price (Descending)" -> SORT_PRICE_DESC;
+            case "Popularity (Descending)" -> SORT_POPULARITY;
+            case "Rating (Descending)" -> SORT_RATING;
+            case "Reviews (Descending)" -> SORT_REVIEWS;
+            case "Trending" -> SORT_TRENDING;
+            default -> SORT_DEFAULT;
+        };
+    }
+
+    // Sort and paging are left to the caller; everything else in the filter carries over.
+    public Query query(BookFilter filter) {
+        Query query = new Query().sort(sortFor(filter.getSort()));
+        for (String category : filter.getCategories()) {
+            query.category(categoryOrdinal(category));
+        }
+        query.priceCents(filter.getMinPrice() == null ? Long.MIN_VALUE + 1 : (long) Math.ceil(filter.getMinPrice() * 100 - 1e-6),
+                filter.getMaxPrice() == null ? Long.MAX_VALUE - 1 : (long) Math.floor(filter.getMaxPrice() * 100 + 1e-6));
+        if (filter.getMinRating() != null) {
+            query.minRating(filter.getMinRating().floatValue());
+        }
+        return query.inStockOnly(filter.isInStockOnly());
+    }
+
+    public int categoryOrdinal(String categoryName) {
+        return categoryNames.indexOf(categoryName);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Book bookAt(int row) {
+        return books[row];
+    }
+
+    public int idAt(int row) {
+        return ids[row];
+    }
+
+    public long priceCentsAt(int row) {
+        return priceCents[row];
+    }
+
+    public float ratingAt(int row) {
+        return ratings[row];
+    }
+
+    public int stockAt(int row) {
+        return stock[row];
+    }
+
+    public int purchaseCountAt(int row) {
+        return purchaseCounts[row];
+    }
+
+    public int categoryOrdinalAt(int row) {
+        return categoryOrdinals[row];
+    }
+
+    // Writes the rows of page [offset, offset + out.length) into out and returns the total
+    // number of matching rows; the number written is min(out.length, max(0, total - offset)).
+    public int select(Query query, int offset, int[] out) {
+        long[] filter = SCRATCH.get();
+        if (filter.length < words) {
+            filter = new long[words];
+            SCRATCH.set(filter);
+        }
+        boolean anyCategory = false;
+        for (int ordinal = 0; ordinal < categoryBits.length; ordinal++) {
+            if (query.hasCategory(ordinal)) {
+                long[] bits = categoryBits[ordinal];
+                if (!anyCategory) {
+                    System.arraycopy(bits, 0, filter, 0, words);
+                    anyCategory = true;
+                } else {
+                    for (int w = 0; w < words; w++) {
+                        filter[w] |= bits[w];
+                    }
+                }
+            }
+        }
+        if (!anyCategory) {
+            if (query.hasAnyCategory()) {
+                return 0;
+            }
+            Arrays.fill(filter, 0, words, -1L);
+        }
+        if (query.inStockOnly) {
+            for (int w = 0; w < words; w++) {
+                filter[w] &= inStockBits[w];
+            }
+        }
+
+        int[] order = permutation(query.sort);
+        int from = 0;
+        int to = size;
+        // Price sorts are ordered by the column being bounded, so the range becomes a slice.
+        if (query.sort == SORT_PRICE_ASC) {
+            from = lowerBound(order, query.minPriceCents, false);
+            to = lowerBound(order, query.maxPriceCents + 1, false);
+        } else if (query.sort == SORT_PRICE_DESC) {
+            from = lowerBound(order, query.maxPriceCents, true);
+            to = lowerBound(order, query.minPriceCents - 1, true);
+        }
+        int total = 0;
+        int written = 0;
+        for (int i = from; i < to; i++) {
+            int row = order[i];
+            if ((filter[row >>> 6] & (1L << row)) == 0) {
+                continue;
+            }
+            long price = priceCents[row];
+            if (price < query.minPriceCents || price > query.maxPriceCents || ratings[row] < query.minRating) {
+                continue;
+            }
+            if (total >= offset && written < out.length) {
+                out[written++] = row;
+            }
+            total++;
+        }
+        return total;
+    }
+
+    // One pass over every row. Each facet counts the rows that pass all of the query's
+    // criteria except its own, so picking a value in one facet still shows the
+    // alternatives next to it.
+    public CatalogFacets facets(Query query) {
+        CatalogFacets facets = new CatalogFacets(categoryNames);
+        for (int row = 0; row < size; row++) {
+            int ordinal = categoryOrdinals[row];
+            boolean categoryMatch = !query.hasAnyCategory() || (ordinal >= 0 && query.hasCategory(ordinal));
+            long price = priceCents[row];
+            boolean priceMatch = price >= query.minPriceCents && price <= query.maxPriceCents;
+            boolean ratingMatch = ratings[row] >= query.minRating;
+            boolean inStock = stock[row] > 0;
+            boolean stockMatch = !query.inStockOnly || inStock;
+            facets.add(ordinal >= 0 ? categoryNames.get(ordinal) : books[row].getCategory().getName(),
+                    CatalogFacets.priceBucket(price / 100.0), CatalogFacets.ratingBand(ratings[row]), inStock,
+                    categoryMatch, priceMatch, ratingMatch, stockMatch, 1);
+        }
+        return facets;
+    }
+
+    // First position in a price-sorted permutation whose price is >= bound (ascending) or
+    // <= bound (descending).
+    private int lowerBound(int[] order, long bound, boolean descending) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long price = priceCents[order[mid]];
+            if (descending ? price > bound : price < bound) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int[] reversed(int[] order) {
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[order.length - 1 - i];
+        }
+        return result;
+    }
+
+    private static int[] identity(int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    // Packs (key, row) into one long so a primitive sort orders by key and breaks ties by
+    // row, i.e. by book id, matching the orders CatalogSnapshot and the SQL path produce.
+    private static int[] sortBy(int[] keys, boolean descending) {
+        long[] packed = new long[keys.length];
+        for (int row = 0; row < keys.length; row++) {
+            int key = descending ? ~keys[row] : keys[row];
+            packed[row] = ((long) key << 32) | row;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < packed.length; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
+    }
+
+    // Trending scores need full double precision to keep their order, so they cannot be
+    // packed next to the row number; a stable merge sort over row numbers keeps ties in id order.
+    private static int[] sortDescending(double[] keys) {
+        int[] order = identity(keys.length);
+        int[] buffer = new int[keys.length];
+        for (int width = 1; width < order.length; width <<= 1) {
+            for (int low = 0; low < order.length; low += width << 1) {
+                int mid = Math.min(low + width, order.length);
+                int high = Math.min(low + (width << 1), order.length);
+                int left = low;
+                int right = mid;
+                for (int i = low; i < high; i++) {
+                    if (left < mid && (right >= high || keys[order[left]] >= keys[order[right]])) {
+                        buffer[i] = order[left++];
+                    } else {
+                        buffer[i] = order[right++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+
+    // Mutable and reusable so a caller can run many queries without allocating.
+    public static final class Query {
+        private long[] categories = new long[1];
+        private boolean anyCategory;
+        private long minPriceCents = Long.MIN_VALUE + 1;
+        private long maxPriceCents = Long.MAX_VALUE - 1;
+        private float minRating = Float.NEGATIVE_INFINITY;
+        private boolean inStockOnly;
+        private int sort = SORT_DEFAULT;
+
+        public Query reset() {
+            Arrays.fill(categories, 0);
+            anyCategory = false;
+            minPriceCents = Long.MIN_VALUE + 1;
+            maxPriceCents = Long.MAX_VALUE - 1;
+            minRating = Float.NEGATIVE_INFINITY;
+            inStockOnly = false;
+            sort = SORT_DEFAULT;
+            return this;
+        }
+
+        // A negative ordinal (unknown category) still restricts the query, to nothing.
+        public Query category(int ordinal) {
+            anyCategory = true;
+            if (ordinal < 0) {
+                return this;
+            }
+            if ((ordinal >>> 6) >= categories.length) {
+                categories = Arrays.copyOf(categories, (ordinal >>> 6) + 1);
+            }
+            categories[ordinal >>> 6] |= 1L << ordinal;
+            return this;
+        }
+
+        public Query priceCents(long min, long max) {
+            minPriceCents = min;
+            maxPriceCents = max;
+            return this;
+        }
+
+        public Query minRating(float rating) {
+            minRating = rating;
+            return this;
+        }
+
+        public Query inStockOnly(boolean value) {
+            inStockOnly = value;
+            return this;
+        }
+
+        public Query sort(int value) {
+            if (value < 0 || value >= SORT_COUNT) {
+                throw new IllegalArgumentException("Unknown sort " + value);
+            }
+            sort = value;
+            return this;
+        }
+
+        boolean hasCategory(int ordinal) {
+            return (ordinal >>> 6) < categories.length && (categories[ordinal >>> 6] & (1L << ordinal)) != 0;
+        }
+
+        boolean hasAnyCategory() {
+            return anyCategory;
+        }
+    }
+}
\ No newline at end of file
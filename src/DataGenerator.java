@@ -0,0 +1,253 @@
+package com.bookstore;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Random;
+
+// Deterministic synthetic data for local load testing. The same seed and sizes always
+// produce the same rows. Generated users log in with GENERATED_PASSWORD.
+public class DataGenerator {
+    public static final String GENERATED_PASSWORD = "password";
+    public static final String[] CATEGORIES = {"Fiction", "Non-Fiction", "Science", "Fantasy", "Mystery", "Romance", "History"};
+
+    private static final int BATCH_SIZE = 5_000;
+    private static final int HISTORY_DAYS = 365;
+    private static final String[] ADJECTIVES = {"Silent", "Crimson", "Hidden", "Last", "Golden", "Broken", "Distant", "Secret", "Lost", "Eternal"};
+    private static final String[] NOUNS = {"River", "Empire", "Garden", "Winter", "Machine", "Kingdom", "Shadow", "Voyage", "Library", "Storm"};
+
+    private final int users;
+    private final int books;
+    private final int purchases;
+    private final int ratings;
+    private final int reviews;
+    private final int messages;
+    private final double zipfExponent;
+    private final long seed;
+
+    public DataGenerator(int users, int books, int purchases, int ratings, int reviews, int messages, double zipfExponent, long seed) {
+        this.users = users;
+        this.books = books;
+        this.purchases = purchases;
+        this.ratings = ratings;
+        this.reviews = reviews;
+        this.messages = messages;
+        this.zipfExponent = zipfExponent;
+        this.seed = seed;
+    }
+
+    public static DataGenerator scaled(int books, long seed) {
+        int users = Math.max(100, books / 2);
+        return new DataGenerator(users, books, books * 10, books * 2, books * 3, users * 5, 1.0, seed);
+    }
+
+    public static String login(int index) {
+        return String.format("user%06d", index);
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getBooks() {
+        return books;
+    }
+
+    public int getReviews() {
+        return reviews;
+    }
+
+    public void generate(String dbPath) throws SQLException {
+        DatabaseManager db = new DatabaseManager();
+        db.connect(dbPath);
+        db.createTables();
+        db.close();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath)) {
+            conn.setAutoCommit(false);
+            Random random = new Random(seed);
+            insertCategories(conn);
+            insertUsers(conn);
+            int firstBookId = nextId(conn, "books");
+            insertBooks(conn, random);
+            insertPurchases(conn, random, firstBookId);
+            insertRatings(conn, random, firstBookId);
+            insertReviews(conn, random, firstBookId);
+            insertMessages(conn, random);
+            conn.commit();
+        }
+    }
+
+    private void insertCategories(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT OR IGNORE INTO categories (name) VALUES (?)")) {
+            for (String category : CATEGORIES) {
+                stmt.setString(1, category);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void insertUsers(Connection conn) throws SQLException {
+        String passwordHash = BCrypt.hashpw(GENERATED_PASSWORD, BCrypt.gensalt(4));
+        String query = """
+            INSERT OR IGNORE INTO users (login, first_name, last_name, email, birth_date, password, role)
+            VALUES (?, ?, ?, ?, ?, ?, 'Client')
+            """;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < users; i++) {
+                stmt.setString(1, login(i));
+                stmt.setString(2, "User");
+                stmt.setString(3, "Number" + i);
+                stmt.setString(4, login(i) + "@example.com");
+                stmt.setString(5, String.format("%04d-%02d-%02d", 1950 + i % 55, 1 + i % 12, 1 + i % 28));
+                stmt.setString(6, passwordHash);
+                addBatch(conn, stmt, i);
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void insertBooks(Connection conn, Random random) throws SQLException {
+        String query = """
+            INSERT INTO books (name, price, description, category_name, stock)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < books; i++) {
+                stmt.setString(1, "The " + ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                        + NOUNS[random.nextInt(NOUNS.length)] + " " + (i + 1));
+                stmt.setDouble(2, 199 + random.nextInt(4800) / 100.0);
+                stmt.setString(3, "Generated book #" + (i + 1));
+                stmt.setString(4, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                stmt.setInt(5, random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(500));
+                addBatch(conn, stmt, i);
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void insertPurchases(Connection conn, Random random, int firstBookId) throws SQLException {
+        ZipfSampler bookSampler = new ZipfSampler(books, zipfExponent);
+        ZipfSampler userSampler = new ZipfSampler(users, zipfExponent * 0.5);
+        int[] bookRanks = permutation(books, random);
+        int[] userRanks = permutation(users, random);
+        String query = "INSERT INTO purchases (user_login, book_id, timestamp) VALUES (?, ?, datetime('now', ?))";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < purchases; i++) {
+                stmt.setString(1, login(userRanks[userSampler.next(random)]));
+                stmt.setInt(2, firstBookId + bookRanks[bookSampler.next(random)]);
+                stmt.setString(3, "-" + random.nextInt(HISTORY_DAYS * 24 * 60) + " minutes");
+                addBatch(conn, stmt, i);
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void insertRatings(Connection conn, Random random, int firstBookId) throws SQLException {
+        ZipfSampler bookSampler = new ZipfSampler(books, zipfExponent);
+        String query = "INSERT OR IGNORE INTO book_reactions (user_login, book_id, rating) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < ratings; i++) {
+                stmt.setString(1, login(random.nextInt(users)));
+                stmt.setInt(2, firstBookId + bookSampler.next(random));
+                stmt.setInt(3, Math.max(1, Math.min(5, (int) Math.round(3.6 + random.nextGaussian()))));
+                addBatch(conn, stmt, i);
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void insertReviews(Connection conn, Random random, int firstBookId) throws SQLException {
+        ZipfSampler bookSampler = new ZipfSampler(books, zipfExponent);
+        int firstReviewId = nextId(conn, "reviews");
+        int[] reviewBooks = new int[reviews];
+        String query = "INSERT INTO reviews (book_id, user_login, text, parent_id) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < reviews; i++) {
+                boolean reply = i > 0 && random.nextInt(3) == 0;
+                int parent = reply ? random.nextInt(i) : -1;
+                reviewBooks[i] = reply ? reviewBooks[parent] : firstBookId + bookSampler.next(random);
+                stmt.setInt(1, reviewBooks[i]);
+                stmt.setString(2, login(random.nextInt(users)));
+                stmt.setString(3, reply ? "Reply to review " + (firstReviewId + parent) : "Generated review #" + (i + 1));
+                if (reply) {
+                    stmt.setInt(4, firstReviewId + parent);
+                } else {
+                    stmt.setNull(4, Types.INTEGER);
+                }
+                addBatch(conn, stmt, i);
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void insertMessages(Connection conn, Random random) throws SQLException {
+        String query = "INSERT INTO messages (sender_login, receiver_login, text, timestamp) VALUES (?, ?, ?, datetime('now', ?))";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < messages; i++) {
+                int sender = random.nextInt(users);
+                int receiver = (sender + 1 + random.nextInt(Math.max(1, Math.min(users - 1, 50)))) % users;
+                stmt.setString(1, login(sender));
+                stmt.setString(2, login(receiver));
+                stmt.setString(3, "Generated message #" + (i + 1));
+                stmt.setString(4, "-" + random.nextInt(HISTORY_DAYS * 24 * 60) + " minutes");
+                addBatch(conn, stmt, i);
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void addBatch(Connection conn, PreparedStatement stmt, int row) throws SQLException {
+        stmt.addBatch();
+        if ((row + 1) % BATCH_SIZE == 0) {
+            stmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    private static int nextId(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table)) {
+            return rs.next() ? rs.getInt(1) : 1;
+        }
+    }
+
+    private static int[] permutation(int n, Random random) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        String dbPath = "bookstore.db";
+        int books = 10_000;
+        long seed = 42;
+        for (String arg : args) {
+            if (arg.startsWith("--db=")) {
+                dbPath = arg.substring("--db=".length());
+            } else if (arg.startsWith("--books=")) {
+                books = Integer.parseInt(arg.substring("--books=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            }
+        }
+        DataGenerator generator = scaled(books, seed);
+        long start = System.nanoTime();
+        generator.generate(dbPath);
+        System.out.printf("Generated %d users and %d books into %s in %d ms%n",
+                generator.getUsers(), generator.getBooks(), dbPath, (System.nanoTime() - start) / 1_000_000);
+    }
+}
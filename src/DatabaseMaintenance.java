@@ -0,0 +1,188 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Idle-time housekeeping for the SQLite file: refresh planner statistics, move old purchases
+// and messages to the archive file, hand free pages back and checkpoint the WAL. A run only
+// starts once nobody has touched the app for IDLE_NANOS and stops between steps as soon as
+// its time budget is spent or activity resumes; whatever is left is picked up by the next
+// idle run. Every step is submitted to the DatabaseWriter on its own, so it commits on the
+// writer's connection and user writes queued meanwhile go in between steps.
+public class DatabaseMaintenance {
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long FORCED_BUDGET_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long OPTIMIZE_INTERVAL_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final long ANALYZE_INTERVAL_NANOS = TimeUnit.HOURS.toNanos(24);
+    private static final int VACUUM_CHUNK_PAGES = 256;
+    // Purchases and messages older than this many days move to the archive file; 0 turns it off.
+    private static final int ARCHIVE_AFTER_DAYS = Integer.getInteger("bookstore.archiveAfterDays", 365);
+    private static final int ARCHIVE_BATCH_ROWS = 500;
+    // A file without incremental auto-vacuum is rebuilt once, if enough of it is free and it
+    // is small enough to rebuild inside a forced run.
+    private static final double FULL_VACUUM_FREE_RATIO = 0.1;
+    private static final long FULL_VACUUM_MAX_BYTES = 64L << 20;
+    private static final String PAUSED = "out of budget or user active";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final DatabaseWriter writer;
+    private volatile long lastActivity = System.nanoTime();
+    private long lastOptimize;
+    private long lastAnalyze;
+    private boolean optimized;
+    private boolean analyzed;
+    private volatile String lastReport = "Not run yet";
+
+    public DatabaseMaintenance(DatabaseWriter writer) {
+        this.writer = writer;
+    }
+
+    public void markActivity() {
+        lastActivity = System.nanoTime();
+    }
+
+    public boolean isIdle() {
+        return System.nanoTime() - lastActivity >= IDLE_NANOS;
+    }
+
+    public String getLastReport() {
+        return lastReport;
+    }
+
+    public void runIfIdle() {
+        if (isIdle()) {
+            run(false);
+        }
+    }
+
+    // Forced runs come from the admin button: they ignore activity and get a larger budget.
+    public synchronized String run(boolean forced) {
+        long start = System.nanoTime();
+        long budget = forced ? FORCED_BUDGET_NANOS : BUDGET_NANOS;
+        List<String> done = new ArrayList<>();
+        String stoppedBy;
+        try {
+            stoppedBy = runSteps(start, budget, forced, done);
+            // Last, so it also folds in what the steps above wrote to the WAL.
+            long walBytes = writer.executeAlone(DatabaseManager::getStorageStats).getWalBytes();
+            if (walBytes > 0) {
+                done.add(String.format(writer.executeAlone(DatabaseManager::checkpoint) ? "checkpointed %.1f MB of WAL" : "WAL checkpoint of %.1f MB blocked by a reader",
+                        walBytes / 1048576.0));
+            }
+        } catch (SQLException e) {
+            Log.warn("Database maintenance failed: {}", e.getMessage());
+            stoppedBy = "error: " + e.getMessage();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        String report = String.format("%s, %d ms: %s%s", LocalTime.now().format(TIME_FORMAT), millis,
+                done.isEmpty() ? "nothing to do" : String.join(", ", done),
+                stoppedBy != null ? " (stopped: " + stoppedBy + ")" : "");
+        lastReport = report;
+        Log.info("Database maintenance {}", report);
+        return report;
+    }
+
+    // Returns why the run stopped early, or null when everything due was done.
+    private String runSteps(long start, long budget, boolean forced, List<String> done) throws SQLException {
+        if (!optimized || start - lastOptimize >= OPTIMIZE_INTERVAL_NANOS) {
+            if (!canContinue(start, budget, forced)) {
+                return PAUSED;
+            }
+            writer.executeAlone(w -> {
+                w.optimize();
+                return null;
+            });
+            optimized = true;
+            lastOptimize = start;
+            done.add("optimize");
+        }
+        if (!analyzed || start - lastAnalyze >= ANALYZE_INTERVAL_NANOS) {
+            if (!canContinue(start, budget, forced)) {
+                return PAUSED;
+            }
+            writer.executeAlone(w -> {
+                w.analyze();
+                return null;
+            });
+            analyzed = true;
+            lastAnalyze = start;
+            done.add("analyze");
+        }
+        if (ARCHIVE_AFTER_DAYS > 0) {
+            String stopped = archive(start, budget, forced, done);
+            if (stopped != null) {
+                return stopped;
+            }
+        }
+        return vacuum(start, budget, forced, done);
+    }
+
+    private String archive(long start, long budget, boolean forced, List<String> done) throws SQLException {
+        int purchases = 0;
+        int messages = 0;
+        try {
+            int moved = ARCHIVE_BATCH_ROWS;
+            while (moved == ARCHIVE_BATCH_ROWS) {
+                if (!canContinue(start, budget, forced)) {
+                    return PAUSED;
+                }
+                moved = writer.executeAlone(w -> w.archivePurchases(ARCHIVE_AFTER_DAYS, ARCHIVE_BATCH_ROWS));
+                purchases += moved;
+            }
+            moved = ARCHIVE_BATCH_ROWS;
+            while (moved == ARCHIVE_BATCH_ROWS) {
+                if (!canContinue(start, budget, forced)) {
+                    return PAUSED;
+                }
+                moved = writer.executeAlone(w -> w.archiveMessages(ARCHIVE_AFTER_DAYS, ARCHIVE_BATCH_ROWS));
+                messages += moved;
+            }
+            return null;
+        } finally {
+            if (purchases + messages > 0) {
+                done.add("archived " + purchases + " purchases and " + messages + " messages");
+            }
+        }
+    }
+
+    private String vacuum(long start, long budget, boolean forced, List<String> done) throws SQLException {
+        StorageStats stats = writer.executeAlone(DatabaseManager::getStorageStats);
+        if (stats.getFreePages() == 0) {
+            return null;
+        }
+        if (!stats.getAutoVacuum().equals("incremental")) {
+            boolean worthIt = stats.getFreePages() >= stats.getPageCount() * FULL_VACUUM_FREE_RATIO;
+            if (worthIt && forced && stats.getFileBytes() <= FULL_VACUUM_MAX_BYTES) {
+                writer.executeAlone(w -> {
+                    w.vacuum();
+                    return null;
+                });
+                done.add("vacuumed " + stats.getFreePages() + " free pages and enabled incremental vacuum");
+                return null;
+            }
+            return worthIt ? "full vacuum needed, run maintenance from the admin tab" : null;
+        }
+        long freed = 0;
+        long remaining = stats.getFreePages();
+        while (remaining > 0) {
+            if (!canContinue(start, budget, forced)) {
+                done.add("released " + freed + " free pages");
+                return PAUSED + ", " + remaining + " free pages left";
+            }
+            long left = writer.executeAlone(w -> w.incrementalVacuum(VACUUM_CHUNK_PAGES));
+            freed += remaining - left;
+            remaining = left;
+        }
+        done.add("released " + freed + " free pages");
+        return null;
+    }
+
+    private boolean canContinue(long start, long budget, boolean forced) {
+        return System.nanoTime() - start < budget && (forced || isIdle());
+    }
+}
@@ -4,30 +4,239 @@ import org.mindrot.jbcrypt.BCrypt;
 
 import java.io.File;
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class DatabaseManager implements StorageEngine {
+    private static final LatencyHistogram SALES_ROLLUPS_NEED_BACKFILL_LATENCY = Metrics.histogram("db.salesRollupsNeedBackfill");
+    private static final LatencyHistogram REBUILD_SALES_ROLLUPS_LATENCY = Metrics.histogram("db.rebuildSalesRollups");
+    private static final LatencyHistogram CATEGORY_EXISTS_LATENCY = Metrics.histogram("db.categoryExists");
+    private static final LatencyHistogram SAVE_CATEGORY_LATENCY = Metrics.histogram("db.saveCategory");
+    private static final LatencyHistogram DELETE_CATEGORY_LATENCY = Metrics.histogram("db.deleteCategory");
+    private static final LatencyHistogram GET_CATEGORIES_LATENCY = Metrics.histogram("db.getCategories");
+    private static final LatencyHistogram GET_FILTERED_BOOKS_LATENCY = Metrics.histogram("db.getFilteredBooks");
+    private static final LatencyHistogram SAVE_BOOK_LATENCY = Metrics.histogram("db.saveBook");
+    private static final LatencyHistogram UPDATE_BOOK_LATENCY = Metrics.histogram("db.updateBook");
+    private static final LatencyHistogram DELETE_BOOK_LATENCY = Metrics.histogram("db.deleteBook");
+    private static final LatencyHistogram FIND_USER_LATENCY = Metrics.histogram("db.findUser");
+    private static final LatencyHistogram REGISTER_USER_LATENCY = Metrics.histogram("db.registerUser");
+    private static final LatencyHistogram REGISTER_ADMIN_LATENCY = Metrics.histogram("db.registerAdmin");
+    private static final LatencyHistogram UPDATE_USER_ROLE_LATENCY = Metrics.histogram("db.updateUserRole");
+    private static final LatencyHistogram GET_ALL_USERS_LATENCY = Metrics.histogram("db.getAllUsers");
+    private static final LatencyHistogram REMOVE_USER_LATENCY = Metrics.histogram("db.removeUser");
+    private static final LatencyHistogram SAVE_REVIEW_LATENCY = Metrics.histogram("db.saveReview");
+    private static final LatencyHistogram GET_REVIEWS_LATENCY = Metrics.histogram("db.getReviews");
+    private static final LatencyHistogram FIND_REVIEW_LATENCY = Metrics.histogram("db.findReview");
+    private static final LatencyHistogram SAVE_REACTION_LATENCY = Metrics.histogram("db.saveReaction");
+    private static final LatencyHistogram GET_USER_REACTION_LATENCY = Metrics.histogram("db.getUserReaction");
+    private static final LatencyHistogram SAVE_BOOK_RATING_LATENCY = Metrics.histogram("db.saveBookRating");
+    private static final LatencyHistogram GET_USER_BOOK_RATING_LATENCY = Metrics.histogram("db.getUserBookRating");
+    private static final LatencyHistogram GET_BOOK_AVERAGE_RATING_LATENCY = Metrics.histogram("db.getBookAverageRating");
+    private static final LatencyHistogram GET_BOOK_RATING_COUNT_LATENCY = Metrics.histogram("db.getBookRatingCount");
+    private static final LatencyHistogram SAVE_MESSAGE_LATENCY = Metrics.histogram("db.saveMessage");
+    private static final LatencyHistogram GET_MESSAGES_LATENCY = Metrics.histogram("db.getMessages");
+    private static final LatencyHistogram SAVE_PURCHASE_LATENCY = Metrics.histogram("db.savePurchase");
+    private static final LatencyHistogram LOAD_CO_PURCHASE_INDEX_LATENCY = Metrics.histogram("db.loadCoPurchaseIndex");
+    private static final LatencyHistogram GET_BOOKS_BY_IDS_LATENCY = Metrics.histogram("db.getBooksByIds");
+    private static final LatencyHistogram DECREASE_STOCK_LATENCY = Metrics.histogram("db.decreaseStock");
+    private static final LatencyHistogram GET_PURCHASE_COUNT_LATENCY = Metrics.histogram("db.getPurchaseCount");
+    private static final LatencyHistogram GET_REVIEW_COUNT_LATENCY = Metrics.histogram("db.getReviewCount");
+    private static final LatencyHistogram GET_AVERAGE_RATING_LATENCY = Metrics.histogram("db.getAverageRating");
+    private static final LatencyHistogram GET_CATEGORY_STATS_LATENCY = Metrics.histogram("db.getCategoryStats");
+    private static final LatencyHistogram GET_CATEGORY_SALES_LATENCY = Metrics.histogram("db.getCategorySales");
+    private static final LatencyHistogram GET_BOOK_SALES_LATENCY = Metrics.histogram("db.getBookSales");
+    private static final LatencyHistogram UPDATE_TRENDING_SCORES_LATENCY = Metrics.histogram("db.updateTrendingScores");
+    private static final LatencyHistogram LOAD_CATALOG_SNAPSHOT_LATENCY = Metrics.histogram("db.loadCatalogSnapshot");
+    private static final LatencyHistogram FIND_BOOKS_LATENCY = Metrics.histogram("db.findBooks");
+    private static final LatencyHistogram GET_FACETS_LATENCY = Metrics.histogram("db.getFacets");
+    private static final LatencyHistogram GET_STORAGE_STATS_LATENCY = Metrics.histogram("db.getStorageStats");
+    private static final LatencyHistogram CHECKPOINT_LATENCY = Metrics.histogram("db.checkpoint");
+    private static final LatencyHistogram OPTIMIZE_LATENCY = Metrics.histogram("db.optimize");
+    private static final LatencyHistogram ANALYZE_LATENCY = Metrics.histogram("db.analyze");
+    private static final LatencyHistogram INCREMENTAL_VACUUM_LATENCY = Metrics.histogram("db.incrementalVacuum");
+    private static final LatencyHistogram VACUUM_LATENCY = Metrics.histogram("db.vacuum");
+    private static final LatencyHistogram ARCHIVE_PURCHASES_LATENCY = Metrics.histogram("db.archivePurchases");
+    private static final LatencyHistogram ARCHIVE_MESSAGES_LATENCY = Metrics.histogram("db.archiveMessages");
+    private static final LatencyHistogram GET_ARCHIVED_MESSAGE_COUNT_LATENCY = Metrics.histogram("db.getArchivedMessageCount");
+    private static final LatencyHistogram GET_APPLIED_JOURNAL_SEQUENCE_LATENCY = Metrics.histogram("db.getAppliedJournalSequence");
+    private static final LatencyHistogram APPLY_JOURNALED_PURCHASES_LATENCY = Metrics.histogram("db.applyJournaledPurchases");
+    private static final LatencyHistogram RUN_GROUP_LATENCY = Metrics.histogram("db.runGroup");
+    private static final LatencyHistogram GET_DATA_VERSION_LATENCY = Metrics.histogram("db.getDataVersion");
+    private static final LatencyHistogram GET_LAST_CHANGE_ID_LATENCY = Metrics.histogram("db.getLastChangeId");
+    private static final LatencyHistogram GET_CHANGES_SINCE_LATENCY = Metrics.histogram("db.getChangesSince");
+    private static final LatencyHistogram PRUNE_CHANGES_LATENCY = Metrics.histogram("db.pruneChanges");
+    private static final LatencyHistogram LOAD_CATALOG_ENTRIES_LATENCY = Metrics.histogram("db.loadCatalogEntries");
+    private static final LatencyHistogram LOAD_LOGIN_TRIE_LATENCY = Metrics.histogram("db.loadLoginTrie");
+
+    private static final int CATALOG_ENTRY_BATCH = 1000;
+    private static final DateTimeFormatter SQL_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Bump whenever createTables() changes, so databases created by an older build run the DDL again.
+    private static final int SCHEMA_REVISION = 5;
 
-public class DatabaseManager {
     private Connection conn;
+    private String dbPath;
+    private boolean archiveAttached;
+    private final CoPurchaseIndex coPurchaseIndex;
+    private int schemaFingerprint;
+
+    public DatabaseManager() {
+        this(new CoPurchaseIndex());
+    }
+
+    private DatabaseManager(CoPurchaseIndex coPurchaseIndex) {
+        this.coPurchaseIndex = coPurchaseIndex;
+    }
 
     public void connect() throws SQLException {
-        new File("avatars").mkdirs();
-        new File("covers").mkdirs();
-        String dbPath = "bookstore.db";
-        conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
-        System.out.println("Connected to database: " + dbPath);
+        connect("bookstore.db");
+    }
+
+    public void connect(String dbPath) throws SQLException {
+        connect(dbPath, new Properties());
+    }
+
+    private void connect(String dbPath, Properties properties) throws SQLException {
+        this.dbPath = dbPath;
+        getMediaDir("avatars").mkdirs();
+        getMediaDir("covers").mkdirs();
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath, properties);
+        Log.info("Connected to database: {}", dbPath);
         conn.setAutoCommit(true);
+        // auto_vacuum only takes effect on a new file, before WAL mode writes its first page;
+        // older files are converted by a one-off VACUUM in DatabaseMaintenance.
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            stmt.execute("PRAGMA journal_mode = WAL");
+        }
+        if (new File(archivePath(dbPath)).exists()) {
+            attachArchive();
+        }
+    }
+
+    // A second connection to the same file for DatabaseWriter. Its transactions begin
+    // IMMEDIATE, taking the write lock up front (waiting out the busy timeout like any write)
+    // rather than failing on upgrade when another connection committed since its first read.
+    // It shares this manager's co-purchase index, so purchases it saves show up in
+    // recommendations read through this one.
+    public DatabaseManager openWriter() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("transaction_mode", "IMMEDIATE");
+        DatabaseManager writer = new DatabaseManager(coPurchaseIndex);
+        writer.connect(dbPath, properties);
+        return writer;
+    }
+
+    // DatabaseWriter's commit cycle: the tasks run in order in one transaction, each under its
+    // own savepoint, so a task that throws is undone on its own while the rest still commit.
+    // Each task's result or exception lands at its index in results or failures. If the
+    // transaction itself fails, nothing was written and the exception propagates.
+    public void runGroup(List<? extends DatabaseWriter.Task<?>> tasks, Object[] results, Exception[] failures) throws SQLException {
+        RUN_GROUP_LATENCY.time(() -> {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (int i = 0; i < tasks.size(); i++) {
+                    stmt.execute("SAVEPOINT task");
+                    try {
+                        results[i] = tasks.get(i).run(this);
+                    } catch (SQLException | RuntimeException e) {
+                        stmt.execute("ROLLBACK TO task");
+                        failures[i] = e;
+                    }
+                    stmt.execute("RELEASE task");
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    // Uploaded covers and avatars live beside the database file, so every tenant shard keeps
+    // its own; for a database in the working directory this is the old "covers"/"avatars".
+    public File getMediaDir(String kind) {
+        return new File(new File(dbPath).getParentFile(), kind);
+    }
+
+    public static String archivePath(String dbPath) {
+        return (dbPath.endsWith(".db") ? dbPath.substring(0, dbPath.length() - 3) : dbPath) + "-archive.db";
+    }
+
+    // Old purchases and messages live in a second file attached as "archive". It is only
+    // created once something is archived; until then every read stays on the hot tables.
+    private void attachArchive() throws SQLException {
+        try (PreparedStatement attach = conn.prepareStatement("ATTACH DATABASE ? AS archive")) {
+            attach.setString(1, archivePath(dbPath));
+            attach.execute();
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA archive.journal_mode = WAL");
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS archive.purchases (
+                    id INTEGER PRIMARY KEY,
+                    user_login TEXT NOT NULL,
+                    book_id INTEGER NOT NULL,
+                    timestamp DATETIME
+                )""");
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS archive.messages (
+                    id INTEGER PRIMARY KEY,
+                    sender_login TEXT NOT NULL,
+                    receiver_login TEXT NOT NULL,
+                    text TEXT NOT NULL,
+                    timestamp DATETIME
+                )""");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS archive.idx_archive_messages_sender ON messages(sender_login)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS archive.idx_archive_messages_receiver ON messages(receiver_login)");
+        }
+        archiveAttached = true;
+    }
+
+    // A batch is copied into the archive before it is deleted from the hot table, so a crash
+    // in between leaves a row in both places rather than in neither; reads that span both
+    // therefore use UNION, which folds such duplicates back into one.
+    private String allPurchases() {
+        return archiveAttached
+                ? "(SELECT id, user_login, book_id, timestamp FROM purchases UNION SELECT id, user_login, book_id, timestamp FROM archive.purchases)"
+                : "purchases";
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        return SlowQueryLog.prepare(conn, sql);
+    }
+
+    private Statement statement() throws SQLException {
+        return SlowQueryLog.statement(conn);
     }
 
     public void close() throws SQLException {
         if (conn != null && !conn.isClosed()) {
             conn.close();
-            System.out.println("Database connection closed");
+            Log.info("Database connection closed");
         }
     }
 
-    public void createTables() throws SQLException {
-        Statement stmt = conn.createStatement();
+    // The fingerprint of the schema the DDL below produced is kept in PRAGMA user_version.
+    // When it still matches the live sqlite_master, every statement here would be a no-op,
+    // so startup skips them all. Returns whether the DDL ran.
+    public boolean createTables() throws SQLException {
+        int fingerprint = computeSchemaFingerprint();
+        if (fingerprint == readUserVersion()) {
+            schemaFingerprint = fingerprint;
+            return false;
+        }
+        Statement stmt = statement();
 
         stmt.executeUpdate("""
             CREATE TABLE IF NOT EXISTS users (
@@ -46,6 +255,13 @@ public class DatabaseManager {
                 name TEXT PRIMARY KEY
             )""");
 
+        // Seeded once into an empty table; after that the admin owns the list.
+        stmt.executeUpdate("""
+            INSERT INTO categories (name)
+            SELECT column1 FROM (VALUES ('Fiction'), ('Non-Fiction'), ('Science'), ('Fantasy'),
+                                        ('Mystery'), ('Romance'), ('History'))
+            WHERE NOT EXISTS (SELECT 1 FROM categories)""");
+
         stmt.executeUpdate("""
             CREATE TABLE IF NOT EXISTS books (
                 id INTEGER PRIMARY KEY AUTOINCREMENT,
@@ -113,462 +329,1649 @@ public class DatabaseManager {
                 FOREIGN KEY (user_login) REFERENCES users(login),
                 FOREIGN KEY (book_id) REFERENCES books(id)
             )""");
+
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_messages_sender ON messages(sender_login)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_messages_receiver ON messages(receiver_login)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_messages_timestamp ON messages(timestamp)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_purchases_timestamp ON purchases(timestamp)");
+
+        // Per-user totals of archived messages, so the hot database can say how much history
+        // there is without opening the archive.
+        stmt.executeUpdate("""
+            CREATE TABLE IF NOT EXISTS archived_message_counts (
+                user_login TEXT PRIMARY KEY,
+                message_count INTEGER NOT NULL DEFAULT 0
+            )""");
+
+        // Last PurchaseJournal sequence folded into purchases, committed with the batch itself.
+        stmt.executeUpdate("""
+            CREATE TABLE IF NOT EXISTS journal_state (
+                id INTEGER PRIMARY KEY CHECK (id = 1),
+                applied_sequence INTEGER NOT NULL DEFAULT 0
+            )""");
+        stmt.executeUpdate("INSERT OR IGNORE INTO journal_state (id) VALUES (1)");
+
+        createSalesRollups(stmt);
+        createTrending(stmt);
+        createBookCounters(stmt);
+        createChangeLog(stmt);
+
+        schemaFingerprint = computeSchemaFingerprint();
+        stmt.executeUpdate("PRAGMA user_version = " + schemaFingerprint);
+        Log.info("Schema created or migrated, fingerprint {}", Integer.toHexString(schemaFingerprint));
+        return true;
     }
 
-    public boolean categoryExists(String name) throws SQLException {
-        String query = "SELECT COUNT(*) FROM categories WHERE name = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, name);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() && rs.getInt(1) > 0;
+    public int getSchemaFingerprint() {
+        return schemaFingerprint;
+    }
+
+    private int computeSchemaFingerprint() throws SQLException {
+        int hash = SCHEMA_REVISION;
+        try (Statement stmt = statement();
+             ResultSet rs = stmt.executeQuery("SELECT type, name, sql FROM sqlite_master ORDER BY type, name")) {
+            while (rs.next()) {
+                hash = 31 * hash + rs.getString("type").hashCode();
+                hash = 31 * hash + rs.getString("name").hashCode();
+                hash = 31 * hash + String.valueOf(rs.getString("sql")).hashCode();
+            }
         }
+        return hash == 0 ? 1 : hash;
     }
 
-    public void saveCategory(String name) throws SQLException {
-        String query = "INSERT INTO categories (name) VALUES (?)";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, name);
-            stmt.executeUpdate();
-            System.out.println("Category saved: " + name);
+    private int readUserVersion() throws SQLException {
+        try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
         }
     }
 
-    public List<Book> getFilteredBooks(String categoryName, String filterType) throws SQLException {
-        String query;
-        switch (filterType) {
-            case "Price (Ascending)":
-                query = "SELECT * FROM books WHERE category_name = ? ORDER BY price ASC";
-                break;
-            case "Price (Descending)":
-                query = "SELECT * FROM books WHERE category_name = ? ORDER BY price DESC";
-                break;
-            case "Popularity (Descending)":
-                query = """
-                    SELECT b.* FROM books b
-                    LEFT JOIN purchases p ON b.id = p.book_id
-                    WHERE b.category_name = ?
-                    GROUP BY b.id
-                    ORDER BY COUNT(p.id) DESC
-                    """;
-                break;
-            case "Rating (Descending)":
-                query = """
-                    SELECT b.* FROM books b
-                    LEFT JOIN book_reactions r ON b.id = r.book_id
-                    WHERE b.category_name = ?
-                    GROUP BY b.id
-                    ORDER BY COALESCE(AVG(r.rating), 0) DESC
-                    """;
-                break;
-            case "Reviews (Descending)":
-                query = """
-                    SELECT b.* FROM books b
-                    LEFT JOIN reviews r ON b.id = r.book_id
-                    WHERE b.category_name = ?
-                    GROUP BY b.id
-                    ORDER BY COUNT(r.id) DESC
-                    """;
-                break;
-            default:
-                query = "SELECT * FROM books WHERE category_name = ?";
+    // Purchase, review and rating totals are denormalized onto books and kept current by
+    // triggers, so catalog sorts and filters read one table through composite indexes
+    // instead of aggregating the child tables on every browse.
+    private void createBookCounters(Statement stmt) throws SQLException {
+        boolean added = false;
+        for (String column : new String[]{"purchase_count", "review_count", "rating_total", "rating_count"}) {
+            if (!columnExists("books", column)) {
+                stmt.executeUpdate("ALTER TABLE books ADD COLUMN " + column + " INTEGER NOT NULL DEFAULT 0");
+                added = true;
+            }
         }
-        List<Book> books = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, categoryName);
-            ResultSet rs = stmt.executeQuery();
+        if (!columnExists("books", "avg_rating")) {
+            stmt.executeUpdate("ALTER TABLE books ADD COLUMN avg_rating REAL NOT NULL DEFAULT 0");
+            added = true;
+        }
+        if (added) {
+            stmt.executeUpdate("""
+                UPDATE books SET purchase_count = p.n
+                FROM (SELECT book_id, COUNT(*) AS n FROM purchases GROUP BY book_id) AS p
+                WHERE p.book_id = books.id""");
+            stmt.executeUpdate("""
+                UPDATE books SET review_count = r.n
+                FROM (SELECT book_id, COUNT(*) AS n FROM reviews GROUP BY book_id) AS r
+                WHERE r.book_id = books.id""");
+            stmt.executeUpdate("""
+                UPDATE books SET rating_total = br.total, rating_count = br.n, avg_rating = br.total * 1.0 / br.n
+                FROM (SELECT book_id, SUM(rating) AS total, COUNT(*) AS n FROM book_reactions GROUP BY book_id) AS br
+                WHERE br.book_id = books.id""");
+        }
+
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_category ON books(category_name)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_category_price ON books(category_name, price)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_category_purchases ON books(category_name, purchase_count DESC)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_category_rating ON books(category_name, avg_rating DESC)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_category_reviews ON books(category_name, review_count DESC)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_price ON books(price)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_purchases ON books(purchase_count DESC)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_rating ON books(avg_rating DESC)");
+
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS purchases_book_counter_insert AFTER INSERT ON purchases
+            BEGIN
+                UPDATE books SET purchase_count = purchase_count + 1 WHERE id = NEW.book_id;
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS purchases_book_counter_delete AFTER DELETE ON purchases
+            BEGIN
+                UPDATE books SET purchase_count = purchase_count - 1 WHERE id = OLD.book_id;
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS reviews_book_counter_insert AFTER INSERT ON reviews
+            BEGIN
+                UPDATE books SET review_count = review_count + 1 WHERE id = NEW.book_id;
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS reviews_book_counter_delete AFTER DELETE ON reviews
+            BEGIN
+                UPDATE books SET review_count = review_count - 1 WHERE id = OLD.book_id;
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS book_reactions_counter_insert AFTER INSERT ON book_reactions
+            BEGIN
+                UPDATE books SET rating_total = rating_total + NEW.rating,
+                                 rating_count = rating_count + 1,
+                                 avg_rating = (rating_total + NEW.rating) * 1.0 / (rating_count + 1)
+                WHERE id = NEW.book_id;
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS book_reactions_counter_update AFTER UPDATE OF rating ON book_reactions
+            BEGIN
+                UPDATE books SET rating_total = rating_total - OLD.rating + NEW.rating,
+                                 avg_rating = (rating_total - OLD.rating + NEW.rating) * 1.0 / rating_count
+                WHERE id = NEW.book_id;
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS book_reactions_counter_delete AFTER DELETE ON book_reactions
+            BEGIN
+                UPDATE books SET rating_total = rating_total - OLD.rating,
+                                 rating_count = rating_count - 1,
+                                 avg_rating = CASE WHEN rating_count > 1
+                                                   THEN (rating_total - OLD.rating) * 1.0 / (rating_count - 1)
+                                                   ELSE 0 END
+                WHERE id = OLD.book_id;
+            END""");
+    }
+
+    // One row per changed entity, for ChangeTracker in other processes sharing this file. Only
+    // columns another process caches are watched on books, so counter and trending updates
+    // do not log anything; purchases show up through the stock decrement that comes with them.
+    private void createChangeLog(Statement stmt) throws SQLException {
+        stmt.executeUpdate("""
+            CREATE TABLE IF NOT EXISTS changes (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                entity TEXT NOT NULL,
+                book_id INTEGER,
+                user_login TEXT
+            )""");
+
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS books_change_insert AFTER INSERT ON books
+            BEGIN
+                INSERT INTO changes (entity, book_id) VALUES ('book', NEW.id);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS books_change_update
+            AFTER UPDATE OF name, price, description, category_name, cover_path, stock ON books
+            BEGIN
+                INSERT INTO changes (entity, book_id) VALUES ('book', NEW.id);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS books_change_delete AFTER DELETE ON books
+            BEGIN
+                INSERT INTO changes (entity, book_id) VALUES ('book', OLD.id);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS reviews_change_insert AFTER INSERT ON reviews
+            BEGIN
+                INSERT INTO changes (entity, book_id, user_login) VALUES ('review', NEW.book_id, NEW.user_login);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS reviews_change_delete AFTER DELETE ON reviews
+            BEGIN
+                INSERT INTO changes (entity, book_id, user_login) VALUES ('review', OLD.book_id, OLD.user_login);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS reactions_change_insert AFTER INSERT ON reactions
+            BEGIN
+                INSERT INTO changes (entity, book_id, user_login)
+                SELECT 'review', book_id, NEW.user_login FROM reviews WHERE id = NEW.review_id;
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS book_reactions_change_insert AFTER INSERT ON book_reactions
+            BEGIN
+                INSERT INTO changes (entity, book_id, user_login) VALUES ('rating', NEW.book_id, NEW.user_login);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS book_reactions_change_update AFTER UPDATE OF rating ON book_reactions
+            BEGIN
+                INSERT INTO changes (entity, book_id, user_login) VALUES ('rating', NEW.book_id, NEW.user_login);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS book_reactions_change_delete AFTER DELETE ON book_reactions
+            BEGIN
+                INSERT INTO changes (entity, book_id, user_login) VALUES ('rating', OLD.book_id, OLD.user_login);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS messages_change_insert AFTER INSERT ON messages
+            BEGIN
+                INSERT INTO changes (entity, user_login) VALUES ('message', NEW.sender_login);
+                INSERT INTO changes (entity, user_login)
+                SELECT 'message', NEW.receiver_login WHERE NEW.receiver_login <> NEW.sender_login;
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS users_change_insert AFTER INSERT ON users
+            BEGIN
+                INSERT INTO changes (entity, user_login) VALUES ('user', NEW.login);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS users_change_delete AFTER DELETE ON users
+            BEGIN
+                INSERT INTO changes (entity, user_login) VALUES ('user', OLD.login);
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS categories_change_insert AFTER INSERT ON categories
+            BEGIN
+                INSERT INTO changes (entity) VALUES ('category');
+            END""");
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS categories_change_delete AFTER DELETE ON categories
+            BEGIN
+                INSERT INTO changes (entity) VALUES ('category');
+            END""");
+    }
+
+    private void createTrending(Statement stmt) throws SQLException {
+        if (!columnExists("books", "trending_score")) {
+            stmt.executeUpdate("ALTER TABLE books ADD COLUMN trending_score REAL NOT NULL DEFAULT 0");
+        }
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_books_category_trending ON books(category_name, trending_score DESC)");
+
+        stmt.executeUpdate("""
+            CREATE TABLE IF NOT EXISTS trending_state (
+                id INTEGER PRIMARY KEY CHECK (id = 1),
+                last_purchase_id INTEGER NOT NULL DEFAULT 0,
+                last_rating_id INTEGER NOT NULL DEFAULT 0,
+                landmark INTEGER NOT NULL
+            )""");
+        stmt.executeUpdate("INSERT OR IGNORE INTO trending_state (id, landmark) VALUES (1, CAST(strftime('%s', 'now') AS INTEGER))");
+    }
+
+    private boolean columnExists(String table, String column) throws SQLException {
+        try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
             while (rs.next()) {
-                books.add(new Book(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getDouble("price"),
-                        rs.getString("description"),
-                        new Category(rs.getString("category_name")),
-                        rs.getString("cover_path"),
-                        rs.getInt("stock")
-                ));
+                if (rs.getString("name").equalsIgnoreCase(column)) {
+                    return true;
+                }
             }
+            return false;
         }
-        return books;
     }
 
-    public void saveBook(Book book) throws SQLException {
-        String query = """
-            INSERT INTO books (name, price, description, category_name, cover_path, stock)
-            VALUES (?, ?, ?, ?, ?, ?)
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, book.getName());
-            stmt.setDouble(2, book.getPrice());
-            stmt.setString(3, book.getDescription());
-            stmt.setString(4, book.getCategory().getName());
-            stmt.setString(5, book.getCoverPath());
-            stmt.setInt(6, book.getStock());
-            stmt.executeUpdate();
+    private void createSalesRollups(Statement stmt) throws SQLException {
+        stmt.executeUpdate("""
+            CREATE TABLE IF NOT EXISTS book_sales_hourly (
+                book_id INTEGER NOT NULL,
+                bucket TEXT NOT NULL,
+                purchase_count INTEGER NOT NULL DEFAULT 0,
+                revenue REAL NOT NULL DEFAULT 0,
+                PRIMARY KEY (book_id, bucket)
+            )""");
+
+        stmt.executeUpdate("""
+            CREATE TABLE IF NOT EXISTS book_sales_daily (
+                book_id INTEGER NOT NULL,
+                bucket TEXT NOT NULL,
+                purchase_count INTEGER NOT NULL DEFAULT 0,
+                revenue REAL NOT NULL DEFAULT 0,
+                PRIMARY KEY (book_id, bucket)
+            )""");
+
+        stmt.executeUpdate("""
+            CREATE TABLE IF NOT EXISTS category_sales_hourly (
+                category_name TEXT NOT NULL,
+                bucket TEXT NOT NULL,
+                purchase_count INTEGER NOT NULL DEFAULT 0,
+                revenue REAL NOT NULL DEFAULT 0,
+                PRIMARY KEY (category_name, bucket)
+            )""");
+
+        stmt.executeUpdate("""
+            CREATE TABLE IF NOT EXISTS category_sales_daily (
+                category_name TEXT NOT NULL,
+                bucket TEXT NOT NULL,
+                purchase_count INTEGER NOT NULL DEFAULT 0,
+                revenue REAL NOT NULL DEFAULT 0,
+                PRIMARY KEY (category_name, bucket)
+            )""");
+
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_category_sales_hourly_bucket ON category_sales_hourly(bucket)");
+        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_category_sales_daily_bucket ON category_sales_daily(bucket)");
+
+        // Every purchase row, whichever code path inserts it, is folded into the four rollups
+        // in the same transaction, so reports never have to scan purchases.
+        stmt.executeUpdate("""
+            CREATE TRIGGER IF NOT EXISTS purchases_sales_rollup AFTER INSERT ON purchases
+            BEGIN
+                INSERT INTO book_sales_hourly (book_id, bucket, purchase_count, revenue)
+                SELECT NEW.book_id, strftime('%Y-%m-%d %H:00:00', NEW.timestamp), 1,
+                       COALESCE((SELECT price FROM books WHERE id = NEW.book_id), 0)
+                WHERE true
+                ON CONFLICT (book_id, bucket) DO UPDATE
+                SET purchase_count = purchase_count + 1, revenue = revenue + excluded.revenue;
+
+                INSERT INTO book_sales_daily (book_id, bucket, purchase_count, revenue)
+                SELECT NEW.book_id, date(NEW.timestamp), 1,
+                       COALESCE((SELECT price FROM books WHERE id = NEW.book_id), 0)
+                WHERE true
+                ON CONFLICT (book_id, bucket) DO UPDATE
+                SET purchase_count = purchase_count + 1, revenue = revenue + excluded.revenue;
+
+                INSERT INTO category_sales_hourly (category_name, bucket, purchase_count, revenue)
+                SELECT category_name, strftime('%Y-%m-%d %H:00:00', NEW.timestamp), 1, price
+                FROM books WHERE id = NEW.book_id AND category_name IS NOT NULL
+                ON CONFLICT (category_name, bucket) DO UPDATE
+                SET purchase_count = purchase_count + 1, revenue = revenue + excluded.revenue;
+
+                INSERT INTO category_sales_daily (category_name, bucket, purchase_count, revenue)
+                SELECT category_name, date(NEW.timestamp), 1, price
+                FROM books WHERE id = NEW.book_id AND category_name IS NOT NULL
+                ON CONFLICT (category_name, bucket) DO UPDATE
+                SET purchase_count = purchase_count + 1, revenue = revenue + excluded.revenue;
+            END""");
+    }
+
+    public StorageStats getStorageStats() throws SQLException {
+        return GET_STORAGE_STATS_LATENCY.time(() -> {
+            long pageSize = pragmaLong("page_size");
+            long pageCount = pragmaLong("page_count");
+            long freePages = pragmaLong("freelist_count");
+            String journalMode;
+            String autoVacuum;
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+                journalMode = rs.next() ? rs.getString(1) : "unknown";
+            }
+            switch ((int) pragmaLong("auto_vacuum")) {
+                case 1 -> autoVacuum = "full";
+                case 2 -> autoVacuum = "incremental";
+                default -> autoVacuum = "none";
+            }
+            File file = new File(dbPath);
+            File wal = new File(dbPath + "-wal");
+            return new StorageStats(pageSize, pageCount, freePages, file.length(), wal.length(), journalMode, autoVacuum);
+        });
+    }
+
+    private long pragmaLong(String pragma) throws SQLException {
+        try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+            return rs.next() ? rs.getLong(1) : 0;
         }
     }
 
+    // Copies the WAL back into the database file and truncates it. Returns false when a
+    // reader kept the checkpoint from completing.
+    public boolean checkpoint() throws SQLException {
+        return CHECKPOINT_LATENCY.time(() -> {
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)")) {
+                return rs.next() && rs.getInt(1) == 0;
+            }
+        });
+    }
+
+    public void optimize() throws SQLException {
+        OPTIMIZE_LATENCY.time(() -> {
+            try (Statement stmt = statement()) {
+                stmt.execute("PRAGMA optimize");
+            }
+        });
+    }
+
+    // analysis_limit makes ANALYZE sample each index instead of reading it whole, which keeps
+    // it short enough for an idle-time slot at any catalog size.
+    public void analyze() throws SQLException {
+        ANALYZE_LATENCY.time(() -> {
+            try (Statement stmt = statement()) {
+                stmt.execute("PRAGMA analysis_limit = 1000");
+                stmt.execute("ANALYZE");
+            }
+        });
+    }
+
+    // Releases up to maxPages free pages back to the file system; returns the free pages left.
+    // The driver steps a statement only once and every step of incremental_vacuum frees one
+    // page, so the pragma is run page by page inside a single transaction.
+    public long incrementalVacuum(int maxPages) throws SQLException {
+        return INCREMENTAL_VACUUM_LATENCY.time(() -> {
+            long pages = Math.min(maxPages, pragmaLong("freelist_count"));
+            conn.setAutoCommit(false);
+            try {
+                // Closed before the commit: the last step leaves the statement in progress.
+                try (PreparedStatement stmt = prepare("PRAGMA incremental_vacuum(1)")) {
+                    for (long i = 0; i < pages; i++) {
+                        stmt.execute();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return pragmaLong("freelist_count");
+        });
+    }
+
+    // Rebuilds the whole file, switching it to incremental auto-vacuum on the way.
+    public void vacuum() throws SQLException {
+        VACUUM_LATENCY.time(() -> {
+            try (Statement stmt = statement()) {
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                stmt.execute("VACUUM");
+            }
+        });
+    }
+
+    public boolean salesRollupsNeedBackfill() throws SQLException {
+        return SALES_ROLLUPS_NEED_BACKFILL_LATENCY.time(() -> {
+            String query = """
+                SELECT EXISTS (SELECT 1 FROM purchases)
+                   AND NOT EXISTS (SELECT 1 FROM book_sales_daily)
+                """;
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery(query)) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        });
+    }
+
+    public void rebuildSalesRollups() throws SQLException {
+        REBUILD_SALES_ROLLUPS_LATENCY.time(() -> {
+            String purchases = allPurchases();
+            String[] statements = {
+                    "DELETE FROM book_sales_hourly",
+                    "DELETE FROM book_sales_daily",
+                    "DELETE FROM category_sales_hourly",
+                    "DELETE FROM category_sales_daily",
+                    """
+                    INSERT INTO book_sales_hourly (book_id, bucket, purchase_count, revenue)
+                    SELECT p.book_id, strftime('%%Y-%%m-%%d %%H:00:00', p.timestamp), COUNT(*), SUM(COALESCE(b.price, 0))
+                    FROM %s p LEFT JOIN books b ON b.id = p.book_id
+                    GROUP BY 1, 2
+                    """.formatted(purchases),
+                    """
+                    INSERT INTO book_sales_daily (book_id, bucket, purchase_count, revenue)
+                    SELECT p.book_id, date(p.timestamp), COUNT(*), SUM(COALESCE(b.price, 0))
+                    FROM %s p LEFT JOIN books b ON b.id = p.book_id
+                    GROUP BY 1, 2
+                    """.formatted(purchases),
+                    """
+                    INSERT INTO category_sales_hourly (category_name, bucket, purchase_count, revenue)
+                    SELECT b.category_name, strftime('%%Y-%%m-%%d %%H:00:00', p.timestamp), COUNT(*), SUM(b.price)
+                    FROM %s p JOIN books b ON b.id = p.book_id
+                    WHERE b.category_name IS NOT NULL
+                    GROUP BY 1, 2
+                    """.formatted(purchases),
+                    """
+                    INSERT INTO category_sales_daily (category_name, bucket, purchase_count, revenue)
+                    SELECT b.category_name, date(p.timestamp), COUNT(*), SUM(b.price)
+                    FROM %s p JOIN books b ON b.id = p.book_id
+                    WHERE b.category_name IS NOT NULL
+                    GROUP BY 1, 2
+                    """.formatted(purchases)
+            };
+            conn.setAutoCommit(false);
+            try (Statement stmt = statement()) {
+                for (String sql : statements) {
+                    stmt.executeUpdate(sql);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    public boolean categoryExists(String name) throws SQLException {
+        return CATEGORY_EXISTS_LATENCY.time(() -> {
+            String query = "SELECT COUNT(*) FROM categories WHERE name = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, name);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        });
+    }
+
+    public void saveCategory(String name) throws SQLException {
+        SAVE_CATEGORY_LATENCY.time(() -> {
+            String query = "INSERT INTO categories (name) VALUES (?)";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, name);
+                stmt.executeUpdate();
+                Log.info("Category saved: {}", name);
+            }
+        });
+    }
+
+    // Only removes a category no book points at; returns false if it was in use or missing.
+    public boolean deleteCategory(String name) throws SQLException {
+        return DELETE_CATEGORY_LATENCY.time(() -> {
+            String query = "DELETE FROM categories WHERE name = ? AND NOT EXISTS (SELECT 1 FROM books WHERE category_name = ?)";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, name);
+                stmt.setString(2, name);
+                boolean deleted = stmt.executeUpdate() > 0;
+                if (deleted) {
+                    Log.info("Category deleted: {}", name);
+                }
+                return deleted;
+            }
+        });
+    }
+
+    public List<Category> getCategories() throws SQLException {
+        return GET_CATEGORIES_LATENCY.time(() -> {
+            List<Category> categories = new ArrayList<>();
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("SELECT name FROM categories ORDER BY rowid")) {
+                while (rs.next()) {
+                    categories.add(new Category(rs.getString("name")));
+                }
+            }
+            return categories;
+        });
+    }
+
+    public List<Book> getFilteredBooks(String categoryName, String filterType) throws SQLException {
+        return GET_FILTERED_BOOKS_LATENCY.time(() -> findBooks(new BookFilter().category(categoryName).sort(filterType).page(0, 0)).getBooks());
+    }
+
+    // Each sort matches one composite index (category_name, <sort column>) or, across
+    // categories, the single-column one, and id breaks ties in index order. The total
+    // comes back on every row through COUNT(*) OVER (), so paging needs no second query.
+    public BookPage findBooks(BookFilter filter) throws SQLException {
+        return FIND_BOOKS_LATENCY.time(() -> {
+            StringBuilder query = new StringBuilder("SELECT *");
+            boolean paged = filter.getLimit() > 0;
+            if (paged) {
+                query.append(", COUNT(*) OVER () AS total_count");
+            }
+            query.append(" FROM books");
+            List<Object> params = new ArrayList<>();
+            List<String> conditions = new ArrayList<>();
+            if (!filter.getCategories().isEmpty()) {
+                conditions.add(filter.getCategories().size() == 1 ? "category_name = ?"
+                        : "category_name IN (" + String.join(", ", Collections.nCopies(filter.getCategories().size(), "?")) + ")");
+                params.addAll(filter.getCategories());
+            }
+            if (filter.getMinPrice() != null) {
+                conditions.add("price >= ?");
+                params.add(filter.getMinPrice());
+            }
+            if (filter.getMaxPrice() != null) {
+                conditions.add("price <= ?");
+                params.add(filter.getMaxPrice());
+            }
+            if (filter.getMinRating() != null) {
+                conditions.add("avg_rating >= ?");
+                params.add(filter.getMinRating());
+            }
+            if (filter.isInStockOnly()) {
+                conditions.add("stock > 0");
+            }
+            if (!conditions.isEmpty()) {
+                query.append(" WHERE ").append(String.join(" AND ", conditions));
+            }
+            query.append(switch (filter.getSort()) {
+                case "Price (Ascending)" -> " ORDER BY price ASC, id ASC";
+                case "Price (Descending)" -> " ORDER BY price DESC, id DESC";
+                case "Popularity (Descending)" -> " ORDER BY purchase_count DESC, id ASC";
+                case "Rating (Descending)" -> " ORDER BY avg_rating DESC, id ASC";
+                case "Reviews (Descending)" -> " ORDER BY review_count DESC, id ASC";
+                case "Trending" -> " ORDER BY trending_score DESC, id ASC";
+                default -> " ORDER BY id ASC";
+            });
+            if (paged) {
+                query.append(" LIMIT ? OFFSET ?");
+                params.add(filter.getLimit());
+                params.add(filter.getOffset());
+            }
+
+            List<Book> books = new ArrayList<>();
+            int total = 0;
+            try (PreparedStatement stmt = prepare(query.toString())) {
+                for (int i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 1, params.get(i));
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    if (paged && books.isEmpty()) {
+                        total = rs.getInt("total_count");
+                    }
+                    books.add(new Book(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getDouble("price"),
+                            rs.getString("description"),
+                            new Category(rs.getString("category_name")),
+                            rs.getString("cover_path"),
+                            rs.getInt("stock")
+                    ));
+                }
+            }
+            if (!paged) {
+                total = books.size();
+            } else if (books.isEmpty() && filter.getOffset() > 0) {
+                // Paged past the end, so no row carried the window total; ask for the first row.
+                total = findBooks(filter.withPage(0, 1)).getTotalCount();
+            }
+            return new BookPage(books, total);
+        });
+    }
+
+    // One grouped scan of books. Each criterion becomes a 0/1 column instead of a WHERE
+    // condition, so CatalogFacets can count every facet against the other criteria.
+    public CatalogFacets getFacets(BookFilter filter) throws SQLException {
+        return GET_FACETS_LATENCY.time(() -> {
+            List<String> categoryNames = new ArrayList<>();
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("SELECT name FROM categories ORDER BY rowid")) {
+                while (rs.next()) {
+                    categoryNames.add(rs.getString("name"));
+                }
+            }
+            List<Object> params = new ArrayList<>();
+            StringBuilder priceBucket = new StringBuilder("CASE");
+            for (int i = 0; i < CatalogFacets.PRICE_EDGES.length; i++) {
+                priceBucket.append(" WHEN price < ").append(CatalogFacets.PRICE_EDGES[i]).append(" THEN ").append(i);
+            }
+            priceBucket.append(" ELSE ").append(CatalogFacets.PRICE_EDGES.length).append(" END");
+            String categoryMatch = "1";
+            if (!filter.getCategories().isEmpty()) {
+                categoryMatch = "category_name IN (" + String.join(", ", Collections.nCopies(filter.getCategories().size(), "?")) + ")";
+                params.addAll(filter.getCategories());
+            }
+            String priceMatch = "1";
+            if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+                priceMatch = "price BETWEEN ? AND ?";
+                params.add(filter.getMinPrice() != null ? filter.getMinPrice() : -Double.MAX_VALUE);
+                params.add(filter.getMaxPrice() != null ? filter.getMaxPrice() : Double.MAX_VALUE);
+            }
+            String ratingMatch = "1";
+            if (filter.getMinRating() != null) {
+                ratingMatch = "avg_rating >= ?";
+                params.add(filter.getMinRating());
+            }
+            String query = "SELECT category_name, " + priceBucket + " AS price_bucket,"
+                    + " CASE WHEN avg_rating <= 0 THEN 0 WHEN avg_rating >= 4 THEN 4 ELSE CAST(avg_rating AS INTEGER) END AS rating_band,"
+                    + " stock > 0 AS in_stock, " + categoryMatch + " AS category_match, " + priceMatch + " AS price_match, "
+                    + ratingMatch + " AS rating_match, COUNT(*) AS n"
+                    + " FROM books GROUP BY 1, 2, 3, 4, 5, 6, 7";
+            CatalogFacets facets = new CatalogFacets(categoryNames);
+            try (PreparedStatement stmt = prepare(query)) {
+                for (int i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 1, params.get(i));
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    boolean inStock = rs.getBoolean("in_stock");
+                    facets.add(rs.getString("category_name"), rs.getInt("price_bucket"), rs.getInt("rating_band"), inStock,
+                            rs.getBoolean("category_match"), rs.getBoolean("price_match"), rs.getBoolean("rating_match"),
+                            !filter.isInStockOnly() || inStock, rs.getInt("n"));
+                }
+            }
+            return facets;
+        });
+    }
+
+    public void saveBook(Book book) throws SQLException {
+        SAVE_BOOK_LATENCY.time(() -> {
+            String query = """
+                INSERT INTO books (name, price, description, category_name, cover_path, stock)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, book.getName());
+                stmt.setDouble(2, book.getPrice());
+                stmt.setString(3, book.getDescription());
+                stmt.setString(4, book.getCategory().getName());
+                stmt.setString(5, book.getCoverPath());
+                stmt.setInt(6, book.getStock());
+                stmt.executeUpdate();
+            }
+        });
+    }
+
     public void updateBook(int id, String name, double price, String description, String coverPath, int stock) throws SQLException {
-        String query = """
-            UPDATE books
-            SET name = ?, price = ?, description = ?, cover_path = ?, stock = ?
-            WHERE id = ?
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, name);
-            stmt.setDouble(2, price);
-            stmt.setString(3, description);
-            stmt.setString(4, coverPath);
-            stmt.setInt(5, stock);
-            stmt.setInt(6, id);
-            stmt.executeUpdate();
-        }
+        UPDATE_BOOK_LATENCY.time(() -> {
+            String query = """
+                UPDATE books
+                SET name = ?, price = ?, description = ?, cover_path = ?, stock = ?
+                WHERE id = ?
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, name);
+                stmt.setDouble(2, price);
+                stmt.setString(3, description);
+                stmt.setString(4, coverPath);
+                stmt.setInt(5, stock);
+                stmt.setInt(6, id);
+                stmt.executeUpdate();
+            }
+        });
     }
 
     public void deleteBook(int id) throws SQLException {
-        String query = "DELETE FROM books WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, id);
-            stmt.executeUpdate();
-        }
+        DELETE_BOOK_LATENCY.time(() -> {
+            String query = "DELETE FROM books WHERE id = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setInt(1, id);
+                stmt.executeUpdate();
+            }
+        });
     }
 
     public User findUser(String login) throws SQLException {
-        String query = "SELECT * FROM users WHERE login = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, login);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                User user = rs.getString("role").equals("Admin") ?
-                        new Admin(
-                                rs.getString("login"),
-                                rs.getString("first_name"),
-                                rs.getString("last_name"),
-                                rs.getString("email"),
-                                rs.getString("birth_date"),
-                                rs.getString("password"),
-                                rs.getString("avatar_path")
-                        ) :
-                        new Client(
-                                rs.getString("login"),
-                                rs.getString("first_name"),
-                                rs.getString("last_name"),
-                                rs.getString("email"),
-                                rs.getString("birth_date"),
-                                rs.getString("password"),
-                                rs.getString("avatar_path")
-                        );
-                user.setRole(rs.getString("role"));
-                System.out.println("Found user: " + login + ", role: " + rs.getString("role"));
-                return user;
-            }
-            System.out.println("User " + login + " not found");
-            return null;
-        }
+        return FIND_USER_LATENCY.time(() -> {
+            String query = "SELECT * FROM users WHERE login = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, login);
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    User user = rs.getString("role").equals("Admin") ?
+                            new Admin(
+                                    rs.getString("login"),
+                                    rs.getString("first_name"),
+                                    rs.getString("last_name"),
+                                    rs.getString("email"),
+                                    rs.getString("birth_date"),
+                                    rs.getString("password"),
+                                    rs.getString("avatar_path")
+                            ) :
+                            new Client(
+                                    rs.getString("login"),
+                                    rs.getString("first_name"),
+                                    rs.getString("last_name"),
+                                    rs.getString("email"),
+                                    rs.getString("birth_date"),
+                                    rs.getString("password"),
+                                    rs.getString("avatar_path")
+                            );
+                    user.setRole(rs.getString("role"));
+                    Log.debug("Found user: {}, role: {}", login, user.getRole());
+                    return user;
+                }
+                Log.debug("User {} not found", login);
+                return null;
+            }
+        });
     }
 
     public void registerUser(String login, String firstName, String lastName, String email, String birthDate, String password, String avatarPath) throws SQLException {
-        String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
-        String query = """
-            INSERT INTO users (login, first_name, last_name, email, birth_date, password, avatar_path, role)
-            VALUES (?, ?, ?, ?, ?, ?, ?, 'Client')
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, login);
-            stmt.setString(2, firstName);
-            stmt.setString(3, lastName);
-            stmt.setString(4, email);
-            stmt.setString(5, birthDate);
-            stmt.setString(6, hashedPassword);
-            stmt.setString(7, avatarPath);
-            stmt.executeUpdate();
-            System.out.println("Registered user: " + login);
-        }
+        REGISTER_USER_LATENCY.time(() -> {
+            String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
+            String query = """
+                INSERT INTO users (login, first_name, last_name, email, birth_date, password, avatar_path, role)
+                VALUES (?, ?, ?, ?, ?, ?, ?, 'Client')
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, login);
+                stmt.setString(2, firstName);
+                stmt.setString(3, lastName);
+                stmt.setString(4, email);
+                stmt.setString(5, birthDate);
+                stmt.setString(6, hashedPassword);
+                stmt.setString(7, avatarPath);
+                stmt.executeUpdate();
+                Log.info("Registered user: {}", login);
+            }
+        });
     }
 
     public void registerAdmin(String login, String firstName, String lastName, String email, String birthDate, String password, String avatarPath) throws SQLException {
-        String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
-        String query = """
-            INSERT INTO users (login, first_name, last_name, email, birth_date, password, avatar_path, role)
-            VALUES (?, ?, ?, ?, ?, ?, ?, 'Admin')
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, login);
-            stmt.setString(2, firstName);
-            stmt.setString(3, lastName);
-            stmt.setString(4, email);
-            stmt.setString(5, birthDate);
-            stmt.setString(6, hashedPassword);
-            stmt.setString(7, avatarPath);
-            stmt.executeUpdate();
-            System.out.println("Registered admin: " + login);
-        }
+        REGISTER_ADMIN_LATENCY.time(() -> {
+            String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
+            String query = """
+                INSERT INTO users (login, first_name, last_name, email, birth_date, password, avatar_path, role)
+                VALUES (?, ?, ?, ?, ?, ?, ?, 'Admin')
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, login);
+                stmt.setString(2, firstName);
+                stmt.setString(3, lastName);
+                stmt.setString(4, email);
+                stmt.setString(5, birthDate);
+                stmt.setString(6, hashedPassword);
+                stmt.setString(7, avatarPath);
+                stmt.executeUpdate();
+                Log.info("Registered admin: {}", login);
+            }
+        });
     }
 
     public void updateUserRole(String login, String role) throws SQLException {
-        String query = "UPDATE users SET role = ? WHERE login = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, role);
-            stmt.setString(2, login);
-            stmt.executeUpdate();
-            System.out.println("Updated role for " + login + " to " + role);
-        }
+        UPDATE_USER_ROLE_LATENCY.time(() -> {
+            String query = "UPDATE users SET role = ? WHERE login = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, role);
+                stmt.setString(2, login);
+                stmt.executeUpdate();
+                Log.info("Updated role for {} to {}", login, role);
+            }
+        });
     }
 
     public List<User> getAllUsers() throws SQLException {
-        List<User> users = new ArrayList<>();
-        String query = "SELECT * FROM users";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                User user = rs.getString("role").equals("Admin") ?
-                        new Admin(
-                                rs.getString("login"),
-                                rs.getString("first_name"),
-                                rs.getString("last_name"),
-                                rs.getString("email"),
-                                rs.getString("birth_date"),
-                                rs.getString("password"),
-                                rs.getString("avatar_path")
-                        ) :
-                        new Client(
-                                rs.getString("login"),
-                                rs.getString("first_name"),
-                                rs.getString("last_name"),
-                                rs.getString("email"),
-                                rs.getString("birth_date"),
-                                rs.getString("password"),
-                                rs.getString("avatar_path")
-                        );
-                user.setRole(rs.getString("role"));
-                users.add(user);
+        return GET_ALL_USERS_LATENCY.time(() -> {
+            List<User> users = new ArrayList<>();
+            String query = "SELECT * FROM users";
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    User user = rs.getString("role").equals("Admin") ?
+                            new Admin(
+                                    rs.getString("login"),
+                                    rs.getString("first_name"),
+                                    rs.getString("last_name"),
+                                    rs.getString("email"),
+                                    rs.getString("birth_date"),
+                                    rs.getString("password"),
+                                    rs.getString("avatar_path")
+                            ) :
+                            new Client(
+                                    rs.getString("login"),
+                                    rs.getString("first_name"),
+                                    rs.getString("last_name"),
+                                    rs.getString("email"),
+                                    rs.getString("birth_date"),
+                                    rs.getString("password"),
+                                    rs.getString("avatar_path")
+                            );
+                    user.setRole(rs.getString("role"));
+                    users.add(user);
+                }
             }
-        }
-        return users;
+            return users;
+        });
     }
 
     public void removeUser(String login) throws SQLException {
-        String query = "DELETE FROM users WHERE login = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, login);
-            stmt.executeUpdate();
-        }
+        REMOVE_USER_LATENCY.time(() -> {
+            String query = "DELETE FROM users WHERE login = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, login);
+                stmt.executeUpdate();
+            }
+        });
     }
 
     public void saveReview(int bookId, String userLogin, String text, Integer parentId) throws SQLException {
-        String query = """
-            INSERT INTO reviews (book_id, user_login, text, parent_id)
-            VALUES (?, ?, ?, ?)
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, bookId);
-            stmt.setString(2, userLogin);
-            stmt.setString(3, text);
-            if (parentId != null) {
-                stmt.setInt(4, parentId);
-            } else {
-                stmt.setNull(4, Types.INTEGER);
-            }
-            stmt.executeUpdate();
-        }
+        SAVE_REVIEW_LATENCY.time(() -> {
+            String query = """
+                INSERT INTO reviews (book_id, user_login, text, parent_id)
+                VALUES (?, ?, ?, ?)
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setInt(1, bookId);
+                stmt.setString(2, userLogin);
+                stmt.setString(3, text);
+                if (parentId != null) {
+                    stmt.setInt(4, parentId);
+                } else {
+                    stmt.setNull(4, Types.INTEGER);
+                }
+                stmt.executeUpdate();
+            }
+        });
     }
 
     public List<Review> getReviews(int bookId) {
         try {
-            List<Review> reviews = new ArrayList<>();
-            String query = "SELECT * FROM reviews WHERE book_id = ? ORDER BY id";
-            try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                stmt.setInt(1, bookId);
-                ResultSet rs = stmt.executeQuery();
-                while (rs.next()) {
-                    Review review = new Review(
-                            rs.getInt("id"),
-                            rs.getInt("book_id"),
-                            rs.getString("user_login"),
-                            rs.getString("text"),
-                            rs.getInt("likes"),
-                            rs.getInt("dislikes")
-                    );
-                    if (rs.getObject("parent_id") != null) {
-                        review.setParentId(rs.getInt("parent_id"));
+            return GET_REVIEWS_LATENCY.time(() -> {
+                List<Review> reviews = new ArrayList<>();
+                String query = "SELECT * FROM reviews WHERE book_id = ? ORDER BY id";
+                try (PreparedStatement stmt = prepare(query)) {
+                    stmt.setInt(1, bookId);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        reviews.add(readReview(rs));
                     }
-                    reviews.add(review);
                 }
-            }
-            return reviews;
+                return reviews;
+            });
         } catch (SQLException e) {
-            System.err.println("Error retrieving reviews: " + e.getMessage());
+            Log.warn("Error retrieving reviews: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
 
-    public void saveReaction(String userLogin, int reviewId, String reaction) throws SQLException {
-        String query = """
-            INSERT INTO reactions (user_login, review_id, reaction)
-            VALUES (?, ?, ?)
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, userLogin);
-            stmt.setInt(2, reviewId);
-            stmt.setString(3, reaction);
-            stmt.executeUpdate();
-        }
-        String updateQuery = """
-            UPDATE reviews
-            SET likes = (SELECT COUNT(*) FROM reactions WHERE review_id = ? AND reaction = 'Like'),
-                dislikes = (SELECT COUNT(*) FROM reactions WHERE review_id = ? AND reaction = 'Dislike')
-            WHERE id = ?
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(updateQuery)) {
-            stmt.setInt(1, reviewId);
-            stmt.setInt(2, reviewId);
-            stmt.setInt(3, reviewId);
-            stmt.executeUpdate();
+    public Review findReview(int reviewId) throws SQLException {
+        return FIND_REVIEW_LATENCY.time(() -> {
+            try (PreparedStatement stmt = prepare("SELECT * FROM reviews WHERE id = ?")) {
+                stmt.setInt(1, reviewId);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? readReview(rs) : null;
+            }
+        });
+    }
+
+    private static Review readReview(ResultSet rs) throws SQLException {
+        Review review = new Review(
+                rs.getInt("id"),
+                rs.getInt("book_id"),
+                rs.getString("user_login"),
+                rs.getString("text"),
+                rs.getInt("likes"),
+                rs.getInt("dislikes")
+        );
+        if (rs.getObject("parent_id") != null) {
+            review.setParentId(rs.getInt("parent_id"));
         }
+        return review;
+    }
+
+    public void saveReaction(String userLogin, int reviewId, String reaction) throws SQLException {
+        SAVE_REACTION_LATENCY.time(() -> {
+            String query = """
+                INSERT INTO reactions (user_login, review_id, reaction)
+                VALUES (?, ?, ?)
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, userLogin);
+                stmt.setInt(2, reviewId);
+                stmt.setString(3, reaction);
+                stmt.executeUpdate();
+            }
+            String updateQuery = """
+                UPDATE reviews
+                SET likes = (SELECT COUNT(*) FROM reactions WHERE review_id = ? AND reaction = 'Like'),
+                    dislikes = (SELECT COUNT(*) FROM reactions WHERE review_id = ? AND reaction = 'Dislike')
+                WHERE id = ?
+                """;
+            try (PreparedStatement stmt = prepare(updateQuery)) {
+                stmt.setInt(1, reviewId);
+                stmt.setInt(2, reviewId);
+                stmt.setInt(3, reviewId);
+                stmt.executeUpdate();
+            }
+        });
     }
 
     public String getUserReaction(String userLogin, int reviewId) throws SQLException {
-        String query = "SELECT reaction FROM reactions WHERE user_login = ? AND review_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, userLogin);
-            stmt.setInt(2, reviewId);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() ? rs.getString("reaction") : null;
-        }
+        return GET_USER_REACTION_LATENCY.time(() -> {
+            String query = "SELECT reaction FROM reactions WHERE user_login = ? AND review_id = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, userLogin);
+                stmt.setInt(2, reviewId);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getString("reaction") : null;
+            }
+        });
     }
 
     public void saveBookRating(String userLogin, int bookId, int rating) throws SQLException {
-        String query = """
-            INSERT INTO book_reactions (user_login, book_id, rating)
-            VALUES (?, ?, ?)
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, userLogin);
-            stmt.setInt(2, bookId);
-            stmt.setInt(3, rating);
-            stmt.executeUpdate();
-        }
+        SAVE_BOOK_RATING_LATENCY.time(() -> {
+            String query = """
+                INSERT INTO book_reactions (user_login, book_id, rating)
+                VALUES (?, ?, ?)
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, userLogin);
+                stmt.setInt(2, bookId);
+                stmt.setInt(3, rating);
+                stmt.executeUpdate();
+            }
+        });
     }
 
     public Integer getUserBookRating(String userLogin, int bookId) throws SQLException {
-        String query = "SELECT rating FROM book_reactions WHERE user_login = ? AND book_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, userLogin);
-            stmt.setInt(2, bookId);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() ? rs.getInt("rating") : null;
-        }
+        return GET_USER_BOOK_RATING_LATENCY.time(() -> {
+            String query = "SELECT rating FROM book_reactions WHERE user_login = ? AND book_id = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, userLogin);
+                stmt.setInt(2, bookId);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getInt("rating") : null;
+            }
+        });
     }
 
     public double getBookAverageRating(int bookId) throws SQLException {
-        String query = "SELECT AVG(rating) AS avg_rating FROM book_reactions WHERE book_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, bookId);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() ? rs.getDouble("avg_rating") : 0.0;
-        }
+        return GET_BOOK_AVERAGE_RATING_LATENCY.time(() -> {
+            String query = "SELECT AVG(rating) AS avg_rating FROM book_reactions WHERE book_id = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setInt(1, bookId);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getDouble("avg_rating") : 0.0;
+            }
+        });
     }
 
     public int getBookRatingCount(int bookId) throws SQLException {
-        String query = "SELECT COUNT(*) AS count FROM book_reactions WHERE book_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, bookId);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() ? rs.getInt("count") : 0;
-        }
+        return GET_BOOK_RATING_COUNT_LATENCY.time(() -> {
+            String query = "SELECT COUNT(*) AS count FROM book_reactions WHERE book_id = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setInt(1, bookId);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getInt("count") : 0;
+            }
+        });
     }
 
     public void saveMessage(String senderLogin, String receiverLogin, String text) throws SQLException {
-        String query = """
-            INSERT INTO messages (sender_login, receiver_login, text)
-            VALUES (?, ?, ?)
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, senderLogin);
-            stmt.setString(2, receiverLogin);
-            stmt.setString(3, text);
-            stmt.executeUpdate();
-        }
+        SAVE_MESSAGE_LATENCY.time(() -> {
+            String query = """
+                INSERT INTO messages (sender_login, receiver_login, text)
+                VALUES (?, ?, ?)
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, senderLogin);
+                stmt.setString(2, receiverLogin);
+                stmt.setString(3, text);
+                stmt.executeUpdate();
+            }
+        });
     }
 
     public List<Message> getMessages(String userLogin) throws SQLException {
-        List<Message> messages = new ArrayList<>();
+        return getMessages(userLogin, false);
+    }
+
+    public List<Message> getMessages(String userLogin, boolean includeArchived) throws SQLException {
+        return GET_MESSAGES_LATENCY.time(() -> {
+            List<Message> messages = new ArrayList<>();
+            boolean spanArchive = includeArchived && archiveAttached;
+            String query = spanArchive ? """
+                SELECT * FROM messages WHERE sender_login = ? OR receiver_login = ?
+                UNION
+                SELECT * FROM archive.messages WHERE sender_login = ? OR receiver_login = ?
+                ORDER BY timestamp, id
+                """ : """
+                SELECT * FROM messages
+                WHERE sender_login = ? OR receiver_login = ?
+                ORDER BY timestamp, id
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, userLogin);
+                stmt.setString(2, userLogin);
+                if (spanArchive) {
+                    stmt.setString(3, userLogin);
+                    stmt.setString(4, userLogin);
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    messages.add(new Message(
+                            rs.getInt("id"),
+                            rs.getString("sender_login"),
+                            rs.getString("receiver_login"),
+                            rs.getString("text"),
+                            rs.getString("timestamp")
+                    ));
+                }
+            }
+            return messages;
+        });
+    }
+
+    public int getArchivedMessageCount(String userLogin) throws SQLException {
+        return GET_ARCHIVED_MESSAGE_COUNT_LATENCY.time(() -> {
+            String query = "SELECT message_count FROM archived_message_counts WHERE user_login = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, userLogin);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+
+    // Moves up to batchSize purchases older than the given number of days into the archive
+    // and returns how many moved. Each batch is two short transactions, a copy that only
+    // writes the archive file and a delete from the hot table, so writers on the hot database
+    // wait for at most one batch. Book counters and sales rollups keep counting the archived
+    // rows: the counter delete trigger is offset by adding the batch's counts first.
+    //
+    // The cutoff is fixed once per batch and every step binds the same value, and the second
+    // transaction only touches rows the copy put in the archive, so a row that crosses the
+    // cutoff between the two can neither be dropped without a copy nor counted twice.
+    public int archivePurchases(int olderThanDays, int batchSize) throws SQLException {
+        return ARCHIVE_PURCHASES_LATENCY.time(() -> {
+            if (!archiveAttached) {
+                attachArchive();
+            }
+            String cutoff = archiveCutoff(olderThanDays);
+            long lastId = lastArchivableId("purchases", cutoff, batchSize);
+            if (lastId == 0) {
+                return 0;
+            }
+            try (PreparedStatement stmt = prepare("""
+                    INSERT OR IGNORE INTO archive.purchases (id, user_login, book_id, timestamp)
+                    SELECT id, user_login, book_id, timestamp FROM purchases WHERE id <= ? AND timestamp < ?
+                    """)) {
+                stmt.setLong(1, lastId);
+                stmt.setString(2, cutoff);
+                stmt.executeUpdate();
+            }
+            String archived = "id <= ?1 AND timestamp < ?2 AND id IN (SELECT id FROM archive.purchases WHERE id <= ?1)";
+            String[] statements = {
+                    """
+                    UPDATE books SET purchase_count = purchase_count + p.n
+                    FROM (SELECT book_id, COUNT(*) AS n FROM purchases WHERE %s GROUP BY book_id) AS p
+                    WHERE p.book_id = books.id
+                    """.formatted(archived),
+                    "DELETE FROM purchases WHERE " + archived
+            };
+            return runInTransaction(statements, lastId, cutoff);
+        });
+    }
+
+    // Same two-step move as archivePurchases; the hot database keeps per-user counts of
+    // what was archived in archived_message_counts.
+    public int archiveMessages(int olderThanDays, int batchSize) throws SQLException {
+        return ARCHIVE_MESSAGES_LATENCY.time(() -> {
+            if (!archiveAttached) {
+                attachArchive();
+            }
+            String cutoff = archiveCutoff(olderThanDays);
+            long lastId = lastArchivableId("messages", cutoff, batchSize);
+            if (lastId == 0) {
+                return 0;
+            }
+            try (PreparedStatement stmt = prepare("""
+                    INSERT OR IGNORE INTO archive.messages (id, sender_login, receiver_login, text, timestamp)
+                    SELECT id, sender_login, receiver_login, text, timestamp FROM messages WHERE id <= ? AND timestamp < ?
+                    """)) {
+                stmt.setLong(1, lastId);
+                stmt.setString(2, cutoff);
+                stmt.executeUpdate();
+            }
+            String archived = "id <= ?1 AND timestamp < ?2 AND id IN (SELECT id FROM archive.messages WHERE id <= ?1)";
+            String[] statements = {
+                    """
+                    INSERT INTO archived_message_counts (user_login, message_count)
+                    SELECT login, COUNT(*) FROM (
+                        SELECT sender_login AS login FROM messages WHERE %1$s
+                        UNION ALL
+                        SELECT receiver_login FROM messages WHERE %1$s AND receiver_login <> sender_login
+                    ) GROUP BY login
+                    ON CONFLICT (user_login) DO UPDATE SET message_count = message_count + excluded.message_count
+                    """.formatted(archived),
+                    "DELETE FROM messages WHERE " + archived
+            };
+            return runInTransaction(statements, lastId, cutoff);
+        });
+    }
+
+    // The archive cutoff as a timestamp in the form CURRENT_TIMESTAMP stores (UTC), so it
+    // compares as text against the timestamp columns.
+    private static String archiveCutoff(int olderThanDays) {
+        return LocalDateTime.now(ZoneOffset.UTC).minusDays(olderThanDays).format(SQL_TIMESTAMP);
+    }
+
+    // Highest id among the first batchSize rows older than cutoff, or 0 if there are none.
+    private long lastArchivableId(String table, String cutoff, int batchSize) throws SQLException {
         String query = """
-            SELECT * FROM messages
-            WHERE sender_login = ? OR receiver_login = ?
-            ORDER BY timestamp
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, userLogin);
-            stmt.setString(2, userLogin);
+            SELECT MAX(id) FROM (
+                SELECT id FROM %s WHERE timestamp < ? ORDER BY id LIMIT ?
+            )""".formatted(table);
+        try (PreparedStatement stmt = prepare(query)) {
+            stmt.setString(1, cutoff);
+            stmt.setInt(2, batchSize);
             ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                messages.add(new Message(
-                        rs.getInt("id"),
-                        rs.getString("sender_login"),
-                        rs.getString("receiver_login"),
-                        rs.getString("text"),
-                        rs.getString("timestamp")
-                ));
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Runs the statements, each bound to (lastId, cutoff), in one transaction and returns
+    // the row count of the last one.
+    private int runInTransaction(String[] statements, long lastId, String cutoff) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            int changed = 0;
+            for (String sql : statements) {
+                try (PreparedStatement stmt = prepare(sql)) {
+                    stmt.setLong(1, lastId);
+                    stmt.setString(2, cutoff);
+                    changed = stmt.executeUpdate();
+                }
             }
+            conn.commit();
+            return changed;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
-        return messages;
+    }
+
+    public long getAppliedJournalSequence() throws SQLException {
+        return GET_APPLIED_JOURNAL_SEQUENCE_LATENCY.time(() -> {
+            try (Statement stmt = statement();
+                 ResultSet rs = stmt.executeQuery("SELECT applied_sequence FROM journal_state WHERE id = 1")) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        });
+    }
+
+    // Folds a batch of journaled purchases in one transaction, each as the stock decrement and
+    // purchase row purchaseBook would have written, stamped with its original time so the
+    // rollup triggers bucket it correctly. Records at or below the stored sequence were
+    // applied before and are skipped. The co-purchase index is not touched; BookStore already
+    // recorded these purchases when they were journaled.
+    public void applyJournaledPurchases(List<PurchaseJournal.Record> records) throws SQLException {
+        APPLY_JOURNALED_PURCHASES_LATENCY.time(() -> {
+            if (records.isEmpty()) {
+                return;
+            }
+            long applied = getAppliedJournalSequence();
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stock = prepare("UPDATE books SET stock = stock - 1 WHERE id = ?");
+                     PreparedStatement purchase = prepare("""
+                         INSERT INTO purchases (user_login, book_id, timestamp)
+                         VALUES (?, ?, datetime(? / 1000, 'unixepoch'))
+                         """)) {
+                    for (PurchaseJournal.Record record : records) {
+                        if (record.getSequence() <= applied) {
+                            continue;
+                        }
+                        stock.setInt(1, record.getBookId());
+                        stock.executeUpdate();
+                        purchase.setString(1, record.getUserLogin());
+                        purchase.setInt(2, record.getBookId());
+                        purchase.setLong(3, record.getTimestampMillis());
+                        purchase.executeUpdate();
+                    }
+                }
+                try (PreparedStatement state = prepare("UPDATE journal_state SET applied_sequence = MAX(applied_sequence, ?) WHERE id = 1")) {
+                    state.setLong(1, records.get(records.size() - 1).getSequence());
+                    state.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    // Moves whenever another connection, in this process or another, commits to the file.
+    public long getDataVersion() throws SQLException {
+        return GET_DATA_VERSION_LATENCY.time(() -> {
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("PRAGMA data_version")) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        });
+    }
+
+    public long getLastChangeId() throws SQLException {
+        return GET_LAST_CHANGE_ID_LATENCY.time(() -> {
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM changes")) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        });
+    }
+
+    public List<ChangeTracker.Change> getChangesSince(long afterId, int limit) throws SQLException {
+        return GET_CHANGES_SINCE_LATENCY.time(() -> {
+            List<ChangeTracker.Change> changes = new ArrayList<>();
+            try (PreparedStatement stmt = prepare("SELECT id, entity, book_id, user_login FROM changes WHERE id > ? ORDER BY id LIMIT ?")) {
+                stmt.setLong(1, afterId);
+                stmt.setInt(2, limit);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    changes.add(new ChangeTracker.Change(rs.getLong("id"), rs.getString("entity"), rs.getInt("book_id"),
+                            rs.getString("user_login")));
+                }
+            }
+            return changes;
+        });
+    }
+
+    // Keeps the newest keep rows of the change log; returns how many were deleted.
+    public int pruneChanges(int keep) throws SQLException {
+        return PRUNE_CHANGES_LATENCY.time(() -> {
+            try (PreparedStatement stmt = prepare("DELETE FROM changes WHERE id <= (SELECT MAX(id) FROM changes) - ?")) {
+                stmt.setInt(1, keep);
+                return stmt.executeUpdate();
+            }
+        });
     }
 
     public void savePurchase(String userLogin, int bookId) throws SQLException {
-        String query = """
-            INSERT INTO purchases (user_login, book_id)
-            VALUES (?, ?)
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, userLogin);
-            stmt.setInt(2, bookId);
-            stmt.executeUpdate();
-        }
+        SAVE_PURCHASE_LATENCY.time(() -> {
+            String query = """
+                INSERT INTO purchases (user_login, book_id)
+                VALUES (?, ?)
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, userLogin);
+                stmt.setInt(2, bookId);
+                stmt.executeUpdate();
+            }
+        });
     }
 
-    public void decreaseStock(int bookId) throws SQLException {
-        String query = "UPDATE books SET stock = stock - 1 WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, bookId);
-            stmt.executeUpdate();
-        }
+    public void loadCoPurchaseIndex() throws SQLException {
+        LOAD_CO_PURCHASE_INDEX_LATENCY.time(() -> {
+            List<String> userLogins = new ArrayList<>();
+            int[] bookIds = new int[1024];
+            String query = "SELECT user_login, book_id FROM " + allPurchases() + " ORDER BY id";
+            coPurchaseIndex.beginRebuild();
+            try {
+                try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery(query)) {
+                    while (rs.next()) {
+                        if (userLogins.size() == bookIds.length) {
+                            bookIds = Arrays.copyOf(bookIds, bookIds.length * 2);
+                        }
+                        bookIds[userLogins.size()] = rs.getInt("book_id");
+                        userLogins.add(rs.getString("user_login"));
+                    }
+                }
+                coPurchaseIndex.rebuild(userLogins, Arrays.copyOf(bookIds, userLogins.size()));
+            } finally {
+                coPurchaseIndex.endRebuild();
+            }
+        });
+    }
+
+    // Every login with its display name, for recipient type-ahead.
+    public LoginTrie loadLoginTrie() throws SQLException {
+        return LOAD_LOGIN_TRIE_LATENCY.time(() -> {
+            LoginTrie trie = new LoginTrie();
+            String query = "SELECT login, first_name, last_name FROM users";
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    trie.put(rs.getString("login"), rs.getString("first_name") + " " + rs.getString("last_name"));
+                }
+            }
+            return trie;
+        });
+    }
+
+    public CoPurchaseIndex getCoPurchaseIndex() {
+        return coPurchaseIndex;
+    }
+
+    public List<Book> getBooksByIds(int[] ids) throws SQLException {
+        return GET_BOOKS_BY_IDS_LATENCY.time(() -> {
+            List<Book> books = new ArrayList<>();
+            if (ids.length == 0) {
+                return books;
+            }
+            String placeholders = String.join(", ", Collections.nCopies(ids.length, "?"));
+            String query = "SELECT * FROM books WHERE id IN (" + placeholders + ")";
+            Map<Integer, Book> byId = new HashMap<>();
+            try (PreparedStatement stmt = prepare(query)) {
+                for (int i = 0; i < ids.length; i++) {
+                    stmt.setInt(i + 1, ids[i]);
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    byId.put(rs.getInt("id"), new Book(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getDouble("price"),
+                            rs.getString("description"),
+                            new Category(rs.getString("category_name")),
+                            rs.getString("cover_path"),
+                            rs.getInt("stock")
+                    ));
+                }
+            }
+            for (int id : ids) {
+                Book book = byId.get(id);
+                if (book != null) {
+                    books.add(book);
+                }
+            }
+            return books;
+        });
+    }
+
+    public CatalogSnapshot loadCatalogSnapshot() throws SQLException {
+        return LOAD_CATALOG_SNAPSHOT_LATENCY.time(() -> {
+            List<String> categoryNames = new ArrayList<>();
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("SELECT name FROM categories ORDER BY rowid")) {
+                while (rs.next()) {
+                    categoryNames.add(rs.getString("name"));
+                }
+            }
+            Map<String, Category> categories = new HashMap<>();
+            List<CatalogSnapshot.Entry> entries = new ArrayList<>();
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery("SELECT * FROM books")) {
+                while (rs.next()) {
+                    entries.add(readCatalogEntry(rs, categories));
+                }
+            }
+            return CatalogSnapshot.build(categoryNames, entries);
+        });
+    }
+
+    // The current catalog entries of the given books, for patching a snapshot; ids without a
+    // row are left out.
+    public List<CatalogSnapshot.Entry> loadCatalogEntries(int[] bookIds) throws SQLException {
+        return LOAD_CATALOG_ENTRIES_LATENCY.time(() -> {
+            List<CatalogSnapshot.Entry> entries = new ArrayList<>(bookIds.length);
+            Map<String, Category> categories = new HashMap<>();
+            // Chunked so a whole table's worth of ids stays under SQLite's bound-parameter limit.
+            for (int from = 0; from < bookIds.length; from += CATALOG_ENTRY_BATCH) {
+                int count = Math.min(CATALOG_ENTRY_BATCH, bookIds.length - from);
+                String placeholders = String.join(", ", Collections.nCopies(count, "?"));
+                try (PreparedStatement stmt = prepare("SELECT * FROM books WHERE id IN (" + placeholders + ")")) {
+                    for (int i = 0; i < count; i++) {
+                        stmt.setInt(i + 1, bookIds[from + i]);
+                    }
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        entries.add(readCatalogEntry(rs, categories));
+                    }
+                }
+            }
+            return entries;
+        });
+    }
+
+    private static CatalogSnapshot.Entry readCatalogEntry(ResultSet rs, Map<String, Category> categories) throws SQLException {
+        Category category = categories.computeIfAbsent(rs.getString("category_name"), Category::new);
+        Book book = new Book(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getDouble("price"),
+                rs.getString("description"),
+                category,
+                rs.getString("cover_path"),
+                rs.getInt("stock")
+        );
+        return new CatalogSnapshot.Entry(book, rs.getInt("purchase_count"), rs.getInt("review_count"),
+                rs.getLong("rating_total"), rs.getInt("rating_count"), rs.getDouble("trending_score"));
+    }
+
+    // Conditional, so two buyers of the last copy cannot both take it.
+    public boolean decreaseStock(int bookId) throws SQLException {
+        return DECREASE_STOCK_LATENCY.time(() -> {
+            String query = "UPDATE books SET stock = stock - 1 WHERE id = ? AND stock > 0";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setInt(1, bookId);
+                return stmt.executeUpdate() > 0;
+            }
+        });
     }
 
     public int getPurchaseCount(String categoryName) throws SQLException {
-        String query = """
-            SELECT COUNT(*) FROM purchases p
-            JOIN books b ON p.book_id = b.id
-            WHERE b.category_name = ?
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, categoryName);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() ? rs.getInt(1) : 0;
-        }
+        return GET_PURCHASE_COUNT_LATENCY.time(() -> {
+            String query = "SELECT COALESCE(SUM(purchase_count), 0) FROM books WHERE category_name = ?";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, categoryName);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
     }
 
     public int getReviewCount(String categoryName) throws SQLException {
-        String query = """
-            SELECT COUNT(*) FROM reviews r
-            JOIN books b ON r.book_id = b.id
-            WHERE b.category_name = ?
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, categoryName);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() ? rs.getInt(1) : 0;
-        }
+        return GET_REVIEW_COUNT_LATENCY.time(() -> {
+            String query = """
+                SELECT COUNT(*) FROM reviews r
+                JOIN books b ON r.book_id = b.id
+                WHERE b.category_name = ?
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, categoryName);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
     }
 
     public double getAverageRating(String categoryName) throws SQLException {
-        String query = """
-            SELECT AVG(r.rating) FROM book_reactions r
-            JOIN books b ON r.book_id = b.id
-            WHERE b.category_name = ?
-            """;
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setString(1, categoryName);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() ? rs.getDouble(1) : 0.0;
+        return GET_AVERAGE_RATING_LATENCY.time(() -> {
+            String query = """
+                SELECT AVG(r.rating) FROM book_reactions r
+                JOIN books b ON r.book_id = b.id
+                WHERE b.category_name = ?
+                """;
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setString(1, categoryName);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() ? rs.getDouble(1) : 0.0;
+            }
+        });
+    }
+
+    public List<CategoryStats> getCategoryStats() throws SQLException {
+        return GET_CATEGORY_STATS_LATENCY.time(() -> {
+            String query = """
+                SELECT c.name AS category_name,
+                       COALESCE(SUM(b.purchase_count), 0) AS purchase_count,
+                       COALESCE(SUM(b.review_count), 0) AS review_count,
+                       COALESCE(SUM(b.rating_total) * 1.0 / NULLIF(SUM(b.rating_count), 0), 0) AS average_rating,
+                       COALESCE(SUM(b.rating_count), 0) AS rating_count
+                FROM categories c
+                LEFT JOIN books b ON b.category_name = c.name
+                GROUP BY c.name
+                ORDER BY c.rowid
+                """;
+            List<CategoryStats> stats = new ArrayList<>();
+            try (Statement stmt = statement(); ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    stats.add(new CategoryStats(
+                            rs.getString("category_name"),
+                            rs.getInt("purchase_count"),
+                            rs.getInt("review_count"),
+                            rs.getDouble("average_rating"),
+                            rs.getInt("rating_count")
+                    ));
+                }
+            }
+            return stats;
+        });
+    }
+
+    public List<SalesBucket> getCategorySales(String categoryName, String fromDate, String toDate, boolean hourly) throws SQLException {
+        return GET_CATEGORY_SALES_LATENCY.time(() -> {
+            String table = hourly ? "category_sales_hourly" : "category_sales_daily";
+            String query = categoryName != null ?
+                    "SELECT bucket, purchase_count, revenue FROM " + table +
+                            " WHERE category_name = ? AND bucket >= ? AND bucket < date(?, '+1 day') ORDER BY bucket" :
+                    "SELECT bucket, SUM(purchase_count) AS purchase_count, SUM(revenue) AS revenue FROM " + table +
+                            " WHERE bucket >= ? AND bucket < date(?, '+1 day') GROUP BY bucket ORDER BY bucket";
+            try (PreparedStatement stmt = prepare(query)) {
+                int index = 1;
+                if (categoryName != null) {
+                    stmt.setString(index++, categoryName);
+                }
+                stmt.setString(index++, fromDate);
+                stmt.setString(index, toDate);
+                return readSalesBuckets(stmt.executeQuery());
+            }
+        });
+    }
+
+    public List<SalesBucket> getBookSales(int bookId, String fromDate, String toDate, boolean hourly) throws SQLException {
+        return GET_BOOK_SALES_LATENCY.time(() -> {
+            String table = hourly ? "book_sales_hourly" : "book_sales_daily";
+            String query = "SELECT bucket, purchase_count, revenue FROM " + table +
+                    " WHERE book_id = ? AND bucket >= ? AND bucket < date(?, '+1 day') ORDER BY bucket";
+            try (PreparedStatement stmt = prepare(query)) {
+                stmt.setInt(1, bookId);
+                stmt.setString(2, fromDate);
+                stmt.setString(3, toDate);
+                return readSalesBuckets(stmt.executeQuery());
+            }
+        });
+    }
+
+    private List<SalesBucket> readSalesBuckets(ResultSet rs) throws SQLException {
+        List<SalesBucket> buckets = new ArrayList<>();
+        while (rs.next()) {
+            buckets.add(new SalesBucket(
+                    rs.getString("bucket"),
+                    rs.getInt("purchase_count"),
+                    rs.getDouble("revenue")
+            ));
         }
+        return buckets;
+    }
+
+    // Scores use forward decay: each event adds weight * e^(lambda * (t - landmark)), so
+    // only books with new events are touched and the stored order always matches the
+    // decayed order. All scores are rescaled whenever the landmark has to move forward.
+    public void updateTrendingScores(double halfLifeHours, double ratingWeight) throws SQLException {
+        UPDATE_TRENDING_SCORES_LATENCY.time(() -> {
+            double lambda = Math.log(2) / (halfLifeHours * 3600);
+            long now = System.currentTimeMillis() / 1000;
+            conn.setAutoCommit(false);
+            try {
+                long lastPurchaseId;
+                long lastRatingId;
+                long landmark;
+                try (Statement stmt = statement();
+                     ResultSet rs = stmt.executeQuery("SELECT last_purchase_id, last_rating_id, landmark FROM trending_state WHERE id = 1")) {
+                    rs.next();
+                    lastPurchaseId = rs.getLong("last_purchase_id");
+                    lastRatingId = rs.getLong("last_rating_id");
+                    landmark = rs.getLong("landmark");
+                }
+
+                if (lambda * (now - landmark) > 50) {
+                    try (PreparedStatement stmt = prepare("UPDATE books SET trending_score = trending_score * ?")) {
+                        stmt.setDouble(1, Math.exp(-lambda * (now - landmark)));
+                        stmt.executeUpdate();
+                    }
+                    landmark = now;
+                }
+
+                Map<Integer, Double> deltas = new HashMap<>();
+                String purchaseQuery = """
+                    SELECT id, book_id, CAST(strftime('%s', timestamp) AS INTEGER) AS ts
+                    FROM purchases WHERE id > ? ORDER BY id
+                    """;
+                try (PreparedStatement stmt = prepare(purchaseQuery)) {
+                    stmt.setLong(1, lastPurchaseId);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        lastPurchaseId = rs.getLong("id");
+                        double weight = Math.exp(lambda * (rs.getLong("ts") - landmark));
+                        deltas.merge(rs.getInt("book_id"), weight, Double::sum);
+                    }
+                }
+
+                double ratingDecay = Math.exp(lambda * (now - landmark));
+                String ratingQuery = "SELECT id, book_id, rating FROM book_reactions WHERE id > ? ORDER BY id";
+                try (PreparedStatement stmt = prepare(ratingQuery)) {
+                    stmt.setLong(1, lastRatingId);
+                    ResultSet rs = stmt.executeQuery();
+                    while (rs.next()) {
+                        lastRatingId = rs.getLong("id");
+                        double weight = ratingWeight * (rs.getInt("rating") - 3) * ratingDecay;
+                        deltas.merge(rs.getInt("book_id"), weight, Double::sum);
+                    }
+                }
+
+                try (PreparedStatement stmt = prepare("UPDATE books SET trending_score = trending_score + ? WHERE id = ?")) {
+                    for (Map.Entry<Integer, Double> delta : deltas.entrySet()) {
+                        stmt.setDouble(1, delta.getValue());
+                        stmt.setInt(2, delta.getKey());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+
+                try (PreparedStatement stmt = prepare(
+                        "UPDATE trending_state SET last_purchase_id = ?, last_rating_id = ?, landmark = ? WHERE id = 1")) {
+                    stmt.setLong(1, lastPurchaseId);
+                    stmt.setLong(2, lastRatingId);
+                    stmt.setLong(3, landmark);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        });
     }
 }
\ No newline at end of file
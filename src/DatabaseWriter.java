@@ -0,0 +1,207 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The only thread that writes through its DatabaseManager. Callers submit mutations as tasks;
+// the writer takes whatever has queued up since its last commit, runs it all in one
+// transaction (each task under its own savepoint, see DatabaseManager.runGroup) and completes
+// every caller's future once that transaction has committed. One caller pays one fsync per
+// write as before; many concurrent callers share each fsync.
+//
+// The writer owns a connection of its own, so an open group transaction never mixes with the
+// reads other threads run on the main connection. Batch jobs that commit on their own (the
+// trending refresh, journal batches) are submitted "alone" and run between groups, so they
+// queue with everything else instead of fighting the writer for SQLite's write lock.
+public class DatabaseWriter {
+    private static final int MAX_GROUP = 1000;
+    private static final LatencyHistogram EXECUTE_LATENCY = Metrics.histogram("writer.execute");
+
+    private final DatabaseManager db;
+    private final LinkedBlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    // Guarded by queue, so nothing is queued behind the stop marker.
+    private boolean closed;
+
+    public DatabaseWriter(DatabaseManager db) {
+        this.db = db;
+        thread = new Thread(this::run, "bookstore-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public <T> CompletableFuture<T> submit(Task<T> task) {
+        return enqueue(new Pending<>(task, false));
+    }
+
+    // For a task that manages its own transaction: it runs by itself, outside any group.
+    public <T> CompletableFuture<T> submitAlone(Task<T> task) {
+        return enqueue(new Pending<>(task, true));
+    }
+
+    private <T> CompletableFuture<T> enqueue(Pending<T> pending) {
+        synchronized (queue) {
+            if (closed) {
+                pending.future.completeExceptionally(new IllegalStateException("Database writer is closed"));
+            } else {
+                queue.add(pending);
+            }
+        }
+        return pending.future;
+    }
+
+    // Submits the task and waits for the commit that includes it, rethrowing what it threw.
+    public <T> T execute(Task<T> task) throws SQLException {
+        return await(submit(task));
+    }
+
+    public <T> T executeAlone(Task<T> task) throws SQLException {
+        return await(submitAlone(task));
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            EXECUTE_LATENCY.recordError();
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the database writer", e);
+        } catch (ExecutionException e) {
+            EXECUTE_LATENCY.recordError();
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException(cause);
+        } finally {
+            EXECUTE_LATENCY.recordSince(start);
+        }
+    }
+
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    // Everything already submitted is still written; later submissions fail.
+    public void close() throws SQLException {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(Pending.STOP);
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        db.close();
+    }
+
+    private void run() {
+        List<Pending<?>> group = new ArrayList<>();
+        while (true) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(group, MAX_GROUP - 1);
+            int from = 0;
+            for (int i = 0; i < group.size(); i++) {
+                Pending<?> pending = group.get(i);
+                if (pending.alone) {
+                    commit(group.subList(from, i));
+                    from = i + 1;
+                    if (pending == Pending.STOP) {
+                        return;
+                    }
+                    runAlone(pending);
+                }
+            }
+            commit(group.subList(from, group.size()));
+            group.clear();
+        }
+    }
+
+    private void runAlone(Pending<?> pending) {
+        Object result;
+        try {
+            result = pending.task.run(db);
+        } catch (SQLException | RuntimeException e) {
+            pending.complete(null, e);
+            return;
+        }
+        commits.incrementAndGet();
+        writes.incrementAndGet();
+        pending.complete(result, null);
+    }
+
+    private void commit(List<Pending<?>> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        List<Task<?>> tasks = new ArrayList<>(group.size());
+        for (Pending<?> pending : group) {
+            tasks.add(pending.task);
+        }
+        Object[] results = new Object[group.size()];
+        Exception[] failures = new Exception[group.size()];
+        try {
+            db.runGroup(tasks, results, failures);
+        } catch (SQLException | RuntimeException e) {
+            Log.warn("Group commit of {} writes failed: {}", group.size(), e.getMessage());
+            for (Pending<?> pending : group) {
+                pending.future.completeExceptionally(e);
+            }
+            return;
+        }
+        commits.incrementAndGet();
+        writes.addAndGet(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).complete(results[i], failures[i]);
+        }
+    }
+
+    public interface Task<T> {
+        T run(DatabaseManager db) throws SQLException;
+    }
+
+    private static final class Pending<T> {
+        static final Pending<Void> STOP = new Pending<>(db -> null, true);
+
+        final Task<T> task;
+        final boolean alone;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Pending(Task<T> task, boolean alone) {
+            this.task = task;
+            this.alone = alone;
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Object result, Exception failure) {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete((T) result);
+            }
+        }
+    }
+}
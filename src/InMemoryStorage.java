@@ -0,0 +1,540 @@
+package com.bookstore;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Storage engine that keeps everything on the heap and loses it on close. Like SQLite it
+// lets readers run side by side and serializes writers, here with one read-write lock, and
+// it keeps the same derived state SQLite's triggers do: per-book purchase, review and
+// rating counters and review like/dislike totals. Catalog listings are cut from a
+// CatalogSnapshot that is rebuilt on the first read after a write.
+public class InMemoryStorage implements StorageEngine {
+    // SQLITE_CONSTRAINT extended result codes, so callers can handle both engines alike.
+    private static final int CONSTRAINT_CHECK = 275;
+    private static final int CONSTRAINT_PRIMARY_KEY = 1555;
+    private static final int CONSTRAINT_UNIQUE = 2067;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<Integer, BookRow> books = new LinkedHashMap<>();
+    private final Map<String, UserRow> users = new LinkedHashMap<>();
+    private final Map<Integer, List<ReviewRow>> reviewsByBook = new HashMap<>();
+    private final Map<Integer, ReviewRow> reviewsById = new HashMap<>();
+    private final Map<Integer, List<String[]>> reactionsByReview = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> ratingsByBook = new HashMap<>();
+    private final Map<String, List<Message>> messagesByUser = new HashMap<>();
+    private final List<String> purchaseLogins = new ArrayList<>();
+    private int[] purchaseBookIds = new int[1024];
+    private final CoPurchaseIndex coPurchaseIndex = new CoPurchaseIndex();
+    private int nextBookId = 1;
+    private int nextReviewId = 1;
+    private int nextMessageId = 1;
+    private volatile CatalogSnapshot snapshot;
+
+    public List<Category> getCategories() {
+        lock.readLock().lock();
+        try {
+            List<Category> categories = new ArrayList<>(categoryNames.size());
+            for (String name : categoryNames) {
+                categories.add(new Category(name));
+            }
+            return categories;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void saveCategory(String name) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (categoryNames.contains(name)) {
+                throw constraint(CONSTRAINT_PRIMARY_KEY, "UNIQUE constraint failed: categories.name");
+            }
+            categoryNames.add(name);
+            snapshot = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean deleteCategory(String name) {
+        lock.writeLock().lock();
+        try {
+            for (BookRow row : books.values()) {
+                if (name.equals(row.book.getCategory().getName())) {
+                    return false;
+                }
+            }
+            boolean deleted = categoryNames.remove(name);
+            if (deleted) {
+                snapshot = null;
+            }
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void saveBook(Book book) {
+        lock.writeLock().lock();
+        try {
+            int id = nextBookId++;
+            books.put(id, new BookRow(new Book(id, book.getName(), book.getPrice(), book.getDescription(),
+                    new Category(book.getCategory().getName()), book.getCoverPath(), book.getStock())));
+            snapshot = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateBook(int id, String name, double price, String description, String coverPath, int stock) {
+        lock.writeLock().lock();
+        try {
+            BookRow row = books.get(id);
+            if (row != null) {
+                row.book = new Book(id, name, price, description, row.book.getCategory(), coverPath, stock);
+                snapshot = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteBook(int id) {
+        lock.writeLock().lock();
+        try {
+            if (books.remove(id) != null) {
+                snapshot = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Book> getBooksByIds(int[] ids) {
+        lock.readLock().lock();
+        try {
+            List<Book> found = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                BookRow row = books.get(id);
+                if (row != null) {
+                    found.add(row.copy());
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Book> getFilteredBooks(String categoryName, String filterType) {
+        return new ArrayList<>(loadCatalogSnapshot().getBooks(categoryName, filterType));
+    }
+
+    public CatalogSnapshot loadCatalogSnapshot() {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            lock.readLock().lock();
+            try {
+                List<CatalogSnapshot.Entry> entries = new ArrayList<>(books.size());
+                for (BookRow row : books.values()) {
+                    entries.add(new CatalogSnapshot.Entry(row.copy(), row.purchaseCount, row.reviewCount,
+                            row.ratingTotal, row.ratingCount, 0));
+                }
+                current = CatalogSnapshot.build(List.copyOf(categoryNames), entries);
+                snapshot = current;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return current;
+    }
+
+    public boolean decreaseStock(int bookId) {
+        lock.writeLock().lock();
+        try {
+            BookRow row = books.get(bookId);
+            if (row == null || row.book.getStock() <= 0) {
+                return false;
+            }
+            row.book.setStock(row.book.getStock() - 1);
+            snapshot = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public User findUser(String login) {
+        lock.readLock().lock();
+        try {
+            UserRow row = users.get(login);
+            return row == null ? null : row.toUser();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void registerUser(String login, String firstName, String lastName, String email, String birthDate, String password, String avatarPath) throws SQLException {
+        insertUser(new UserRow(login, firstName, lastName, email, birthDate, BCrypt.hashpw(password, BCrypt.gensalt()), avatarPath, "Client"));
+    }
+
+    public void registerAdmin(String login, String firstName, String lastName, String email, String birthDate, String password, String avatarPath) throws SQLException {
+        insertUser(new UserRow(login, firstName, lastName, email, birthDate, BCrypt.hashpw(password, BCrypt.gensalt()), avatarPath, "Admin"));
+    }
+
+    private void insertUser(UserRow row) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (users.putIfAbsent(row.login, row) != null) {
+                throw constraint(CONSTRAINT_PRIMARY_KEY, "UNIQUE constraint failed: users.login");
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateUserRole(String login, String role) {
+        lock.writeLock().lock();
+        try {
+            UserRow row = users.get(login);
+            if (row != null) {
+                row.role = role;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<User> getAllUsers() {
+        lock.readLock().lock();
+        try {
+            List<User> all = new ArrayList<>(users.size());
+            for (UserRow row : users.values()) {
+                all.add(row.toUser());
+            }
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void removeUser(String login) {
+        lock.writeLock().lock();
+        try {
+            users.remove(login);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void saveReview(int bookId, String userLogin, String text, Integer parentId) {
+        lock.writeLock().lock();
+        try {
+            ReviewRow row = new ReviewRow(nextReviewId++, bookId, userLogin, text, parentId);
+            reviewsById.put(row.id, row);
+            reviewsByBook.computeIfAbsent(bookId, k -> new ArrayList<>()).add(row);
+            BookRow book = books.get(bookId);
+            if (book != null) {
+                book.reviewCount++;
+                snapshot = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Review> getReviews(int bookId) {
+        lock.readLock().lock();
+        try {
+            List<Review> found = new ArrayList<>();
+            for (ReviewRow row : reviewsByBook.getOrDefault(bookId, List.of())) {
+                found.add(row.toReview());
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Review findReview(int reviewId) {
+        lock.readLock().lock();
+        try {
+            ReviewRow row = reviewsById.get(reviewId);
+            return row == null ? null : row.toReview();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void saveReaction(String userLogin, int reviewId, String reaction) {
+        lock.writeLock().lock();
+        try {
+            List<String[]> reactions = reactionsByReview.computeIfAbsent(reviewId, k -> new ArrayList<>());
+            reactions.add(new String[]{userLogin, reaction});
+            ReviewRow review = reviewsById.get(reviewId);
+            if (review != null) {
+                review.likes = 0;
+                review.dislikes = 0;
+                for (String[] r : reactions) {
+                    if (r[1].equals("Like")) {
+                        review.likes++;
+                    } else if (r[1].equals("Dislike")) {
+                        review.dislikes++;
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public String getUserReaction(String userLogin, int reviewId) {
+        lock.readLock().lock();
+        try {
+            for (String[] r : reactionsByReview.getOrDefault(reviewId, List.of())) {
+                if (r[0].equals(userLogin)) {
+                    return r[1];
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void saveBookRating(String userLogin, int bookId, int rating) throws SQLException {
+        if (rating < 1 || rating > 5) {
+            throw constraint(CONSTRAINT_CHECK, "CHECK constraint failed: rating >= 1 AND rating <= 5");
+        }
+        lock.writeLock().lock();
+        try {
+            if (ratingsByBook.computeIfAbsent(bookId, k -> new HashMap<>()).putIfAbsent(userLogin, rating) != null) {
+                throw constraint(CONSTRAINT_UNIQUE, "UNIQUE constraint failed: book_reactions.user_login, book_reactions.book_id");
+            }
+            BookRow book = books.get(bookId);
+            if (book != null) {
+                book.ratingTotal += rating;
+                book.ratingCount++;
+                snapshot = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Integer getUserBookRating(String userLogin, int bookId) {
+        lock.readLock().lock();
+        try {
+            return ratingsByBook.getOrDefault(bookId, Map.of()).get(userLogin);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Averaged over the ratings themselves rather than the book's counters, as SQLite does,
+    // so ratings of a deleted book are still reported.
+    public double getBookAverageRating(int bookId) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> bookRatings = ratingsByBook.getOrDefault(bookId, Map.of());
+            long total = 0;
+            for (int rating : bookRatings.values()) {
+                total += rating;
+            }
+            return bookRatings.isEmpty() ? 0.0 : (double) total / bookRatings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getBookRatingCount(int bookId) {
+        lock.readLock().lock();
+        try {
+            return ratingsByBook.getOrDefault(bookId, Map.of()).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void saveMessage(String senderLogin, String receiverLogin, String text) {
+        lock.writeLock().lock();
+        try {
+            Message message = new Message(nextMessageId++, senderLogin, receiverLogin, text, now());
+            messagesByUser.computeIfAbsent(senderLogin, k -> new ArrayList<>()).add(message);
+            if (!receiverLogin.equals(senderLogin)) {
+                messagesByUser.computeIfAbsent(receiverLogin, k -> new ArrayList<>()).add(message);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Message> getMessages(String userLogin) {
+        return getMessages(userLogin, false);
+    }
+
+    // Nothing is ever archived here, so history is the same list.
+    public List<Message> getMessages(String userLogin, boolean includeArchived) {
+        lock.readLock().lock();
+        try {
+            List<Message> found = new ArrayList<>(messagesByUser.getOrDefault(userLogin, List.of()));
+            found.sort(Comparator.comparing(Message::getTimestamp).thenComparingInt(Message::getId));
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getArchivedMessageCount(String userLogin) {
+        return 0;
+    }
+
+    public void savePurchase(String userLogin, int bookId) {
+        lock.writeLock().lock();
+        try {
+            if (purchaseLogins.size() == purchaseBookIds.length) {
+                purchaseBookIds = Arrays.copyOf(purchaseBookIds, purchaseBookIds.length * 2);
+            }
+            purchaseBookIds[purchaseLogins.size()] = bookId;
+            purchaseLogins.add(userLogin);
+            BookRow book = books.get(bookId);
+            if (book != null) {
+                book.purchaseCount++;
+                snapshot = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getPurchaseCount(String categoryName) {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (BookRow row : books.values()) {
+                if (categoryName.equals(row.book.getCategory().getName())) {
+                    count += row.purchaseCount;
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void loadCoPurchaseIndex() {
+        coPurchaseIndex.beginRebuild();
+        lock.readLock().lock();
+        try {
+            coPurchaseIndex.rebuild(new ArrayList<>(purchaseLogins), Arrays.copyOf(purchaseBookIds, purchaseLogins.size()));
+        } finally {
+            lock.readLock().unlock();
+            coPurchaseIndex.endRebuild();
+        }
+    }
+
+    public CoPurchaseIndex getCoPurchaseIndex() {
+        return coPurchaseIndex;
+    }
+
+    public void close() {
+    }
+
+    private static String now() {
+        return LocalDateTime.now(ZoneOffset.UTC).format(TIMESTAMP);
+    }
+
+    private static SQLException constraint(int code, String detail) {
+        return new SQLException("[SQLITE_CONSTRAINT] Abort due to constraint violation (" + detail + ")", null, code);
+    }
+
+    private static final class BookRow {
+        private Book book;
+        private int purchaseCount;
+        private int reviewCount;
+        private long ratingTotal;
+        private int ratingCount;
+
+        BookRow(Book book) {
+            this.book = book;
+        }
+
+        // Callers get their own Book, so setStock on it cannot reach the stored row.
+        Book copy() {
+            return new Book(book.getId(), book.getName(), book.getPrice(), book.getDescription(), book.getCategory(),
+                    book.getCoverPath(), book.getStock());
+        }
+    }
+
+    private static final class UserRow {
+        private final String login;
+        private final String firstName;
+        private final String lastName;
+        private final String email;
+        private final String birthDate;
+        private final String passwordHash;
+        private final String avatarPath;
+        private String role;
+
+        UserRow(String login, String firstName, String lastName, String email, String birthDate, String passwordHash,
+                String avatarPath, String role) {
+            this.login = login;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.email = email;
+            this.birthDate = birthDate;
+            this.passwordHash = passwordHash;
+            this.avatarPath = avatarPath;
+            this.role = role;
+        }
+
+        User toUser() {
+            User user = role.equals("Admin")
+                    ? new Admin(login, firstName, lastName, email, birthDate, passwordHash, avatarPath)
+                    : new Client(login, firstName, lastName, email, birthDate, passwordHash, avatarPath);
+            user.setRole(role);
+            return user;
+        }
+    }
+
+    private static final class ReviewRow {
+        private final int id;
+        private final int bookId;
+        private final String userLogin;
+        private final String text;
+        private final Integer parentId;
+        private int likes;
+        private int dislikes;
+
+        ReviewRow(int id, int bookId, String userLogin, String text, Integer parentId) {
+            this.id = id;
+            this.bookId = bookId;
+            this.userLogin = userLogin;
+            this.text = text;
+            this.parentId = parentId;
+        }
+
+        Review toReview() {
+            Review review = new Review(id, bookId, userLogin, text, likes, dislikes);
+            if (parentId != null) {
+                review.setParentId(parentId);
+            }
+            return review;
+        }
+    }
+}
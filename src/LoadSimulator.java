@@ -0,0 +1,276 @@
+package com.bookstore;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Headless load driver: many virtual-thread shoppers call the BookStore API against a
+// database produced by DataGenerator and latency percentiles are printed per operation.
+// With --http=<base url> the same operation mix is sent to a running ApiServer instead.
+public class LoadSimulator {
+    private static final String[] FILTERS = {
+            "Default", "Price (Ascending)", "Price (Descending)", "Popularity (Descending)",
+            "Rating (Descending)", "Reviews (Descending)", "Trending"
+    };
+    private static final String[] OPERATIONS = {
+            "browse", "reviews", "messages", "login", "purchase", "rate", "review", "message"
+    };
+    private static final int[] OPERATION_WEIGHTS = {40, 20, 10, 5, 10, 5, 5, 5};
+    private static final int TOTAL_WEIGHT = Arrays.stream(OPERATION_WEIGHTS).sum();
+    private static final Pattern BOOK_ID = Pattern.compile("\\{\"id\":(\\d+)");
+
+    private final BookStore store;
+    private final HttpClient http;
+    private final URI baseUri;
+    private final int users;
+    private final int[] bookIds;
+    private final Map<String, LatencyHistogram> stats = new LinkedHashMap<>();
+
+    public LoadSimulator(BookStore store, int users) {
+        this.store = store;
+        this.http = null;
+        this.baseUri = null;
+        this.users = users;
+        List<Integer> ids = new ArrayList<>();
+        for (String category : DataGenerator.CATEGORIES) {
+            try {
+                for (Book book : store.getFilteredBooks(category, "Default")) {
+                    ids.add(book.getId());
+                }
+            } catch (Exception e) {
+                Log.warn("Error loading books for {}: {}", category, e.getMessage());
+            }
+        }
+        this.bookIds = ids.stream().mapToInt(Integer::intValue).toArray();
+        for (String operation : OPERATIONS) {
+            stats.put(operation, new LatencyHistogram(operation));
+        }
+    }
+
+    public LoadSimulator(URI baseUri, int users) throws IOException, InterruptedException {
+        this.store = null;
+        this.http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.baseUri = baseUri;
+        this.users = users;
+        List<Integer> ids = new ArrayList<>();
+        for (String category : DataGenerator.CATEGORIES) {
+            Matcher matcher = BOOK_ID.matcher(httpGet("books?category=" + encode(category), null));
+            while (matcher.find()) {
+                ids.add(Integer.parseInt(matcher.group(1)));
+            }
+        }
+        this.bookIds = ids.stream().mapToInt(Integer::intValue).toArray();
+        for (String operation : OPERATIONS) {
+            stats.put(operation, new LatencyHistogram(operation));
+        }
+    }
+
+    public void run(int shoppers, long durationMillis, long thinkMillis, long seed) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + durationMillis;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < shoppers; i++) {
+                Random random = new Random(seed + i);
+                executor.submit(() -> shop(random, deadline, thinkMillis));
+            }
+            executor.shutdown();
+            executor.awaitTermination(durationMillis + 60_000, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void shop(Random random, long deadline, long thinkMillis) {
+        String login = DataGenerator.login(random.nextInt(users));
+        String[] token = new String[1];
+        while (System.currentTimeMillis() < deadline) {
+            String operation = pickOperation(random);
+            LatencyHistogram histogram = stats.get(operation);
+            long start = System.nanoTime();
+            try {
+                if (http == null) {
+                    perform(operation, login, random);
+                } else {
+                    if (token[0] == null && !operation.equals("login")) {
+                        token[0] = httpLogin(login);
+                        start = System.nanoTime();
+                    }
+                    performHttp(operation, login, token, random);
+                }
+            } catch (Exception e) {
+                histogram.recordError();
+            }
+            histogram.recordSince(start);
+            if (thinkMillis > 0) {
+                try {
+                    Thread.sleep(random.nextLong(thinkMillis * 2 + 1));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void perform(String operation, String login, Random random) throws Exception {
+        store.markActivity();
+        int bookId = bookIds[random.nextInt(bookIds.length)];
+        switch (operation) {
+            case "browse" -> store.getFilteredBooks(
+                    DataGenerator.CATEGORIES[random.nextInt(DataGenerator.CATEGORIES.length)],
+                    FILTERS[random.nextInt(FILTERS.length)]);
+            case "reviews" -> store.getReviews(bookId);
+            case "messages" -> store.getMessages(login);
+            case "login" -> {
+                User user = store.findUser(login);
+                if (user == null || !user.authenticate(DataGenerator.GENERATED_PASSWORD)) {
+                    throw new IllegalStateException("Login failed for " + login);
+                }
+            }
+            case "purchase" -> store.purchaseBook(login, bookId);
+            case "rate" -> store.rateBook(login, bookId, 1 + random.nextInt(5));
+            case "review" -> store.addReview(bookId, login, "Load test review", null);
+            case "message" -> store.sendMessage(login, DataGenerator.login(random.nextInt(users)), "Load test message");
+            default -> throw new IllegalArgumentException(operation);
+        }
+    }
+
+    private void performHttp(String operation, String login, String[] token, Random random) throws Exception {
+        int bookId = bookIds[random.nextInt(bookIds.length)];
+        switch (operation) {
+            case "browse" -> httpGet("books?category="
+                    + encode(DataGenerator.CATEGORIES[random.nextInt(DataGenerator.CATEGORIES.length)])
+                    + "&filter=" + encode(FILTERS[random.nextInt(FILTERS.length)]), null);
+            case "reviews" -> httpGet("books/" + bookId + "/reviews", null);
+            case "messages" -> httpGet("messages", token[0]);
+            case "login" -> token[0] = httpLogin(login);
+            case "purchase" -> httpPost("books/" + bookId + "/purchase", "{}", token[0]);
+            case "rate" -> httpPost("books/" + bookId + "/rating", "{\"rating\":" + (1 + random.nextInt(5)) + "}", token[0]);
+            case "review" -> httpPost("books/" + bookId + "/reviews", "{\"text\":\"Load test review\"}", token[0]);
+            case "message" -> httpPost("messages", "{\"to\":\"" + DataGenerator.login(random.nextInt(users))
+                    + "\",\"text\":\"Load test message\"}", token[0]);
+            default -> throw new IllegalArgumentException(operation);
+        }
+    }
+
+    private String httpLogin(String login) throws IOException, InterruptedException {
+        String body = httpPost("login", "{\"login\":\"" + login + "\",\"password\":\""
+                + DataGenerator.GENERATED_PASSWORD + "\"}", null);
+        return Json.parseObject(body).get("token");
+    }
+
+    private String httpGet(String path, String token) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(baseUri.resolve(path)).GET(), token);
+    }
+
+    private String httpPost(String path, String json, String token) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)), token);
+    }
+
+    private String send(HttpRequest.Builder request, String token) throws IOException, InterruptedException {
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private String pickOperation(Random random) {
+        int roll = random.nextInt(TOTAL_WEIGHT);
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            roll -= OPERATION_WEIGHTS[i];
+            if (roll < 0) {
+                return OPERATIONS[i];
+            }
+        }
+        return OPERATIONS[0];
+    }
+
+    public void printReport(long durationMillis) {
+        System.out.printf("%-10s %8s %7s %10s %10s %10s %10s %10s %9s%n",
+                "operation", "count", "errors", "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms", "ops/s");
+        for (LatencyHistogram histogram : stats.values()) {
+            LatencyHistogram.Snapshot s = histogram.snapshot();
+            System.out.printf("%-10s %8d %7d %10.2f %10.2f %10.2f %10.2f %10.2f %9.1f%n",
+                    s.getName(), s.getCount(), s.getErrors(), s.getMeanNanos() / 1e6, s.getP50Nanos() / 1e6,
+                    s.getP99Nanos() / 1e6, s.getP999Nanos() / 1e6, s.getMaxNanos() / 1e6,
+                    s.getCount() * 1000.0 / durationMillis);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dbPath = "loadtest.db";
+        int books = 10_000;
+        int shoppers = 1_000;
+        long durationSeconds = 30;
+        long thinkMillis = 50;
+        long seed = 42;
+        boolean generate = false;
+        String httpUrl = null;
+        for (String arg : args) {
+            if (arg.startsWith("--db=")) {
+                dbPath = arg.substring("--db=".length());
+            } else if (arg.startsWith("--books=")) {
+                books = Integer.parseInt(arg.substring("--books=".length()));
+            } else if (arg.startsWith("--shoppers=")) {
+                shoppers = Integer.parseInt(arg.substring("--shoppers=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                durationSeconds = Long.parseLong(arg.substring("--duration=".length()));
+            } else if (arg.startsWith("--think-ms=")) {
+                thinkMillis = Long.parseLong(arg.substring("--think-ms=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--http=")) {
+                httpUrl = arg.substring("--http=".length());
+            } else if (arg.equals("--generate")) {
+                generate = true;
+            }
+        }
+
+        DataGenerator generator = DataGenerator.scaled(books, seed);
+        if (generate) {
+            generator.generate(dbPath);
+        }
+        if (httpUrl != null) {
+            URI baseUri = URI.create(httpUrl.endsWith("/") ? httpUrl + "api/" : httpUrl + "/api/");
+            LoadSimulator simulator = new LoadSimulator(baseUri, generator.getUsers());
+            System.out.printf("Running %d HTTP shoppers for %d s against %s (%d books)%n",
+                    shoppers, durationSeconds, baseUri, simulator.bookIds.length);
+            simulator.run(shoppers, durationSeconds * 1000, thinkMillis, seed);
+            Log.flush();
+            simulator.printReport(durationSeconds * 1000);
+            return;
+        }
+        BookStore store = new BookStore(dbPath);
+        store.awaitStartup();
+        LoadSimulator simulator = new LoadSimulator(store, generator.getUsers());
+        System.out.printf("Running %d shoppers for %d s against %s (%d books)%n",
+                shoppers, durationSeconds, dbPath, simulator.bookIds.length);
+        simulator.run(shoppers, durationSeconds * 1000, thinkMillis, seed);
+        Log.flush();
+        simulator.printReport(durationSeconds * 1000);
+        System.out.println("Per-operation store metrics written to " + Metrics.dump(Path.of("metrics")));
+        store.close();
+    }
+}
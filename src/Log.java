@@ -0,0 +1,233 @@
+package com.bookstore;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Minimal logging facade. Callers only claim a slot in a preallocated ring buffer and store
+// references; formatting and I/O happen on the "log-writer" thread, which sleeps while the
+// buffer is empty and is woken by the caller that fills it again. A disabled level
+// returns after a single field read. When the buffer is full, messages are dropped and
+// counted instead of blocking the caller.
+public final class Log {
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO ", "WARN ", "ERROR"};
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final int[] levels = new int[CAPACITY];
+    private static final long[] times = new long[CAPACITY];
+    private static final String[] threads = new String[CAPACITY];
+    private static final String[] templates = new String[CAPACITY];
+    private static final Object[] args = new Object[CAPACITY * 3];
+    private static final Throwable[] throwables = new Throwable[CAPACITY];
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong claimed = new AtomicLong();
+    private static final AtomicLong consumed = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static volatile int level = parseLevel(System.getProperty("bookstore.logLevel", "INFO"));
+    private static final Thread writer = new Thread(Log::drainLoop, "log-writer");
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    public static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+
+    public static boolean isDebugEnabled() {
+        return level <= DEBUG;
+    }
+
+    public static void debug(String message) {
+        if (level <= DEBUG) {
+            log(DEBUG, message, null, null, null, null);
+        }
+    }
+
+    public static void debug(String template, Object a) {
+        if (level <= DEBUG) {
+            log(DEBUG, template, a, null, null, null);
+        }
+    }
+
+    public static void debug(String template, Object a, Object b) {
+        if (level <= DEBUG) {
+            log(DEBUG, template, a, b, null, null);
+        }
+    }
+
+    public static void info(String message) {
+        if (level <= INFO) {
+            log(INFO, message, null, null, null, null);
+        }
+    }
+
+    public static void info(String template, Object a) {
+        if (level <= INFO) {
+            log(INFO, template, a, null, null, null);
+        }
+    }
+
+    public static void info(String template, Object a, Object b) {
+        if (level <= INFO) {
+            log(INFO, template, a, b, null, null);
+        }
+    }
+
+    public static void info(String template, Object a, Object b, Object c) {
+        if (level <= INFO) {
+            log(INFO, template, a, b, c, null);
+        }
+    }
+
+    public static void warn(String message) {
+        if (level <= WARN) {
+            log(WARN, message, null, null, null, null);
+        }
+    }
+
+    public static void warn(String template, Object a) {
+        if (level <= WARN) {
+            log(WARN, template, a, null, null, null);
+        }
+    }
+
+    public static void warn(String template, Object a, Object b) {
+        if (level <= WARN) {
+            log(WARN, template, a, b, null, null);
+        }
+    }
+
+    public static void error(String message) {
+        if (level <= ERROR) {
+            log(ERROR, message, null, null, null, null);
+        }
+    }
+
+    public static void error(String template, Object a) {
+        if (level <= ERROR) {
+            log(ERROR, template, a, null, null, null);
+        }
+    }
+
+    public static void error(String template, Object a, Throwable t) {
+        if (level <= ERROR) {
+            log(ERROR, template, a, null, null, t);
+        }
+    }
+
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    public static void flush() {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (consumed.get() < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private static void log(int messageLevel, String template, Object a, Object b, Object c, Throwable t) {
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed.get() >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+        int slot = (int) (seq & MASK);
+        levels[slot] = messageLevel;
+        times[slot] = System.currentTimeMillis();
+        threads[slot] = Thread.currentThread().getName();
+        templates[slot] = template;
+        args[slot * 3] = a;
+        args[slot * 3 + 1] = b;
+        args[slot * 3 + 2] = c;
+        throwables[slot] = t;
+        published.set(slot, seq);
+        // The writer only parks on the slot right after the last one it consumed, so this
+        // entry is the one it may be waiting for; an early unpark just leaves a permit.
+        if (consumed.get() == seq) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private static void drainLoop() {
+        StringBuilder line = new StringBuilder(256);
+        long reportedDrops = 0;
+        while (true) {
+            long seq = consumed.get();
+            int slot = (int) (seq & MASK);
+            if (published.get(slot) != seq) {
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    System.err.println("[log] " + (drops - reportedDrops) + " messages dropped, ring buffer full");
+                    reportedDrops = drops;
+                }
+                LockSupport.park();
+                continue;
+            }
+            line.setLength(0);
+            TIME_FORMAT.formatTo(Instant.ofEpochMilli(times[slot]), line);
+            line.append(' ').append(LEVEL_NAMES[levels[slot]]).append(" [").append(threads[slot]).append("] ");
+            format(line, templates[slot], args[slot * 3], args[slot * 3 + 1], args[slot * 3 + 2]);
+            PrintStream out = levels[slot] >= WARN ? System.err : System.out;
+            out.println(line);
+            if (throwables[slot] != null) {
+                throwables[slot].printStackTrace(out);
+            }
+            templates[slot] = null;
+            args[slot * 3] = null;
+            args[slot * 3 + 1] = null;
+            args[slot * 3 + 2] = null;
+            throwables[slot] = null;
+            consumed.set(seq + 1);
+        }
+    }
+
+    private static void format(StringBuilder out, String template, Object a, Object b, Object c) {
+        int argIndex = 0;
+        int from = 0;
+        int at;
+        while ((at = template.indexOf("{}", from)) >= 0) {
+            out.append(template, from, at);
+            out.append(argIndex == 0 ? a : argIndex == 1 ? b : c);
+            argIndex++;
+            from = at + 2;
+        }
+        out.append(template, from, template.length());
+    }
+
+    private static int parseLevel(String name) {
+        return switch (name.trim().toUpperCase()) {
+            case "DEBUG" -> DEBUG;
+            case "WARN" -> WARN;
+            case "ERROR" -> ERROR;
+            default -> INFO;
+        };
+    }
+}
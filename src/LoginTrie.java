@@ -0,0 +1,269 @@
+package com.bookstore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+// Logins by prefix, for the recipient field on the Messages tab. A compressed (radix) trie:
+// each edge carries a run of characters, so there is one node per login plus one per branch
+// point, and a lookup steps through a node per branch instead of a node per character.
+// Completions come back in case-insensitive login order and the walk stops after the first
+// limit of them, so a lookup costs the length of the prefix plus the size of the answer,
+// however many users there are.
+//
+// Keys are lower-cased so "al" also finds "Alice". Two logins differing only in case share
+// a node, which is why a node holds an array of entries.
+public class LoginTrie {
+    private final Node root = new Node("");
+    private int size;
+
+    // Adds the login, or replaces its display name.
+    public synchronized void put(String login, String displayName) {
+        String key = key(login);
+        Entry entry = new Entry(login, displayName);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.find(key.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(i));
+                leaf.entries = new Entry[]{entry};
+                node.insert(-index - 1, leaf);
+                size++;
+                return;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                // The key leaves this edge part way along: split it at that point.
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.insert(0, child);
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.add(entry)) {
+            size++;
+        }
+    }
+
+    public synchronized boolean remove(String login) {
+        String key = key(login);
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.find(key.charAt(i));
+            if (index < 0) {
+                return false;
+            }
+            Node child = node.children[index];
+            if (!key.startsWith(child.label, i)) {
+                return false;
+            }
+            path.push(node);
+            node = child;
+            i += child.label.length();
+        }
+        if (!node.remove(login)) {
+            return false;
+        }
+        size--;
+        if (node != root && node.entries == null) {
+            Node parent = path.peek();
+            if (node.childCount == 0) {
+                parent.delete(node);
+                // The parent may now be a pass-through node that can fold into its only child.
+                if (parent != root && parent.entries == null && parent.childCount == 1) {
+                    parent.absorbOnlyChild();
+                }
+            } else if (node.childCount == 1) {
+                node.absorbOnlyChild();
+            }
+        }
+        return true;
+    }
+
+    // Up to limit entries whose login starts with prefix, ignoring case.
+    public synchronized List<Entry> complete(String prefix, int limit) {
+        List<Entry> completions = new ArrayList<>(Math.min(limit, 16));
+        if (limit <= 0) {
+            return completions;
+        }
+        String key = key(prefix);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.find(key.charAt(i));
+            if (index < 0) {
+                return completions;
+            }
+            Node child = node.children[index];
+            int n = Math.min(child.label.length(), key.length() - i);
+            if (!key.regionMatches(i, child.label, 0, n)) {
+                return completions;
+            }
+            node = child;
+            i += n;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node next = stack.pop();
+            if (next.entries != null) {
+                for (Entry entry : next.entries) {
+                    completions.add(entry);
+                    if (completions.size() == limit) {
+                        return completions;
+                    }
+                }
+            }
+            for (int c = next.childCount - 1; c >= 0; c--) {
+                stack.push(next.children[c]);
+            }
+        }
+        return completions;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static String key(String login) {
+        return login.toLowerCase(Locale.ROOT);
+    }
+
+    private static int commonPrefix(String label, String key, int from) {
+        int max = Math.min(label.length(), key.length() - from);
+        int n = 0;
+        while (n < max && label.charAt(n) == key.charAt(from + n)) {
+            n++;
+        }
+        return n;
+    }
+
+    public static final class Entry {
+        private final String login;
+        private final String displayName;
+
+        public Entry(String login, String displayName) {
+            this.login = login;
+            this.displayName = displayName;
+        }
+
+        public String getLogin() {
+            return login;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName == null || displayName.isBlank() ? login : login + " (" + displayName + ")";
+        }
+    }
+
+    // Children are kept sorted by the first character of their label, which no two share.
+    private static final class Node {
+        String label;
+        Node[] children;
+        int childCount;
+        Entry[] entries;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int find(char c) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char first = children[mid].label.charAt(0);
+                if (first < c) {
+                    low = mid + 1;
+                } else if (first > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -low - 1;
+        }
+
+        void insert(int index, Node child) {
+            if (children == null) {
+                children = new Node[2];
+            } else if (childCount == children.length) {
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            children[index] = child;
+            childCount++;
+        }
+
+        void delete(Node child) {
+            int index = find(child.label.charAt(0));
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            children[--childCount] = null;
+        }
+
+        void absorbOnlyChild() {
+            Node child = children[0];
+            label = label + child.label;
+            children = child.children;
+            childCount = child.childCount;
+            entries = child.entries;
+        }
+
+        // Entries sharing a node stay in login order; returns false when the login was there.
+        boolean add(Entry entry) {
+            if (entries == null) {
+                entries = new Entry[]{entry};
+                return true;
+            }
+            int at = 0;
+            while (at < entries.length && entries[at].login.compareTo(entry.login) < 0) {
+                at++;
+            }
+            if (at < entries.length && entries[at].login.equals(entry.login)) {
+                entries[at] = entry;
+                return false;
+            }
+            Entry[] grown = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, grown, 0, at);
+            grown[at] = entry;
+            System.arraycopy(entries, at, grown, at + 1, entries.length - at);
+            entries = grown;
+            return true;
+        }
+
+        boolean remove(String login) {
+            if (entries == null) {
+                return false;
+            }
+            for (int at = 0; at < entries.length; at++) {
+                if (entries[at].login.equals(login)) {
+                    if (entries.length == 1) {
+                        entries = null;
+                    } else {
+                        Entry[] shrunk = new Entry[entries.length - 1];
+                        System.arraycopy(entries, 0, shrunk, 0, at);
+                        System.arraycopy(entries, at + 1, shrunk, at, shrunk.length - at);
+                        entries = shrunk;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
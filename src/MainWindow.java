@@ -3,10 +3,15 @@ package com.bookstore;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.geometry.Side;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.input.InputEvent;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
@@ -15,13 +20,23 @@ import javafx.stage.Stage;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.sql.SQLException;
-import java.text.DecimalFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 
 public class MainWindow {
@@ -30,7 +45,18 @@ public class MainWindow {
     private final Cart cart;
     private final Stage primaryStage;
     private final TabPane tabPane;
-    private static final DecimalFormat RATING_FORMAT = new DecimalFormat("0.0");
+    private final ExecutorService backgroundExecutor;
+    // Category tabs fetch their books the first time they are selected and keep them until
+    // refreshBookTabs() marks them stale after a purchase, rating or catalog edit.
+    private final Map<Tab, Runnable> bookTabLoaders = new HashMap<>();
+    private final Set<Tab> loadedBookTabs = new HashSet<>();
+    private boolean rebuildingTabs;
+    // What is on screen that another process's writes can make stale, besides the book tabs.
+    private Runnable messagesReloader;
+    private Book reviewsBook;
+    private TreeView<String> reviewsTree;
+    private static final LatencyHistogram FIRST_PAINT_LATENCY = Metrics.histogram("ui.firstPaint");
+    private static final int RECIPIENT_SUGGESTIONS = 10;
     private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$");
     private static final Pattern DATE_PATTERN = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}$");
 
@@ -39,20 +65,44 @@ public class MainWindow {
         this.cart = new Cart();
         this.primaryStage = primaryStage;
         this.tabPane = new TabPane();
+        this.backgroundExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "bookstore-background");
+            thread.setDaemon(true);
+            return thread;
+        });
         tabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+        tabPane.getSelectionModel().selectedItemProperty().addListener((obs, oldTab, newTab) -> {
+            if (!rebuildingTabs) {
+                loadBookTab(newTab);
+            }
+        });
 
         primaryStage.setTitle("Book Store");
         primaryStage.setOnCloseRequest(e -> {
+            backgroundExecutor.shutdownNow();
             try {
-                store.getDb().close();
+                store.close();
             } catch (SQLException ex) {
-                System.err.println("Error closing database: " + ex.getMessage());
+                Log.warn("Error closing database: {}", ex.getMessage());
             }
             Platform.exit();
         });
 
+        store.setCatalogListener(() -> Platform.runLater(this::refreshBookTabs));
+        store.setChangeListener(changes -> Platform.runLater(() -> applyChanges(changes)));
         updateTabs();
         Scene scene = new Scene(tabPane, 1200, 800);
+        scene.addEventFilter(InputEvent.ANY, e -> store.markActivity());
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                Platform.runLater(() -> scene.removePostLayoutPulseListener(this));
+                long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+                FIRST_PAINT_LATENCY.record(uptime * 1_000_000);
+                Log.info("First paint {} ms after JVM start, catalog from {}", uptime,
+                        store.isCatalogRestored() ? "catalog file" : store.getCatalogSnapshot() != null ? "live snapshot" : "SQL");
+            }
+        });
         primaryStage.setScene(scene);
         primaryStage.show();
 
@@ -311,17 +361,49 @@ public class MainWindow {
 
     private String uploadFile(File sourceFile, String destinationFolder) throws IOException {
         if (sourceFile == null) return null;
-        File destDir = new File(destinationFolder);
+        File destDir = store.getMediaDir(destinationFolder);
         if (!destDir.exists()) {
             destDir.mkdirs();
         }
-        File destFile = new File(destinationFolder + "/" + sourceFile.getName());
+        File destFile = new File(destDir, sourceFile.getName());
         Files.copy(sourceFile.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
         return destFile.getPath();
     }
 
+    private void loadBookTab(Tab tab) {
+        Runnable loader = bookTabLoaders.get(tab);
+        if (loader != null && loadedBookTabs.add(tab)) {
+            loader.run();
+        }
+    }
+
+    private void refreshBookTabs() {
+        loadedBookTabs.clear();
+        loadBookTab(tabPane.getSelectionModel().getSelectedItem());
+    }
+
+    // Another instance wrote to the shared database: redraw only what shows the changed rows.
+    private void applyChanges(ChangeSet changes) {
+        if (changes.isFull() || changes.isCategoriesChanged()) {
+            updateTabs();
+        } else if (!changes.getBookIds().isEmpty()) {
+            refreshBookTabs();
+        }
+        if (messagesReloader != null && (changes.isFull() || changes.getMessageLogins().contains(currentUser.getLogin()))) {
+            messagesReloader.run();
+        }
+        if (reviewsBook != null && (changes.isFull() || changes.getReviewBookIds().contains(reviewsBook.getId()))) {
+            updateReviewTree(reviewsTree, reviewsBook);
+        }
+    }
+
     private void updateTabs() {
+        Tab previous = tabPane.getSelectionModel().getSelectedItem();
+        String previousTitle = previous != null ? previous.getText() : null;
+        rebuildingTabs = true;
         tabPane.getTabs().clear();
+        bookTabLoaders.clear();
+        loadedBookTabs.clear();
         List<Category> categories = store.readCategories();
 
         for (Category category : categories) {
@@ -332,15 +414,15 @@ public class MainWindow {
 
             ComboBox<String> filterCombo = new ComboBox<>(FXCollections.observableArrayList(
                     "Default", "Price (Ascending)", "Price (Descending)", "Popularity (Descending)",
-                    "Rating (Descending)", "Reviews (Descending)"
+                    "Rating (Descending)", "Reviews (Descending)", "Trending"
             ));
             filterCombo.setValue("Default");
 
-            TableView<Book> table = new TableView<>();
+            TableView<BookRow> table = new TableView<>();
             table.setRowFactory(tv -> {
-                TableRow<Book> row = new TableRow<>();
+                TableRow<BookRow> row = new TableRow<>();
                 row.itemProperty().addListener((obs, oldBook, newBook) -> {
-                    if (newBook != null && newBook.getStock() == 0) {
+                    if (newBook != null && newBook.isSoldOut()) {
                         row.setStyle("-fx-background-color: #d3d3d3;");
                     } else {
                         row.setStyle("");
@@ -349,32 +431,34 @@ public class MainWindow {
                 return row;
             });
 
-            TableColumn<Book, String> nameColumn = new TableColumn<>("Name");
-            nameColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getName()));
+            // Cells show what BookRow formatted when the tab loaded; nothing is built per render.
+            TableColumn<BookRow, String> nameColumn = new TableColumn<>("Name");
+            nameColumn.setCellValueFactory(cellData -> cellData.getValue().nameProperty());
 
-            TableColumn<Book, String> priceColumn = new TableColumn<>("Price");
-            priceColumn.setCellValueFactory(cellData -> new SimpleStringProperty("$" + cellData.getValue().getPrice()));
+            TableColumn<BookRow, String> priceColumn = new TableColumn<>("Price");
+            priceColumn.setCellValueFactory(cellData -> cellData.getValue().priceProperty());
 
-            TableColumn<Book, String> ratingColumn = new TableColumn<>("Rating");
-            ratingColumn.setCellValueFactory(cellData -> {
-                try {
-                    double avgRating = store.getDb().getBookAverageRating(cellData.getValue().getId());
-                    int voteCount = store.getDb().getBookRatingCount(cellData.getValue().getId());
-                    return new SimpleStringProperty(RATING_FORMAT.format(avgRating) + " (" + voteCount + " votes)");
-                } catch (SQLException e) {
-                    return new SimpleStringProperty("N/A");
-                }
-            });
+            TableColumn<BookRow, String> ratingColumn = new TableColumn<>("Rating");
+            ratingColumn.setCellValueFactory(cellData -> cellData.getValue().ratingProperty());
 
-            TableColumn<Book, String> stockColumn = new TableColumn<>("Stock");
-            stockColumn.setCellValueFactory(cellData -> {
-                int stock = cellData.getValue().getStock();
-                return new SimpleStringProperty(stock > 0 ? String.valueOf(stock) : "Sold Out");
-            });
+            TableColumn<BookRow, String> stockColumn = new TableColumn<>("Stock");
+            stockColumn.setCellValueFactory(cellData -> cellData.getValue().stockProperty());
 
             table.getColumns().addAll(nameColumn, priceColumn, ratingColumn, stockColumn);
             table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
+            Label recommendationsLabel = new Label();
+            recommendationsLabel.setWrapText(true);
+            table.getSelectionModel().selectedItemProperty().addListener((obs, oldRow, newRow) -> {
+                if (newRow == null) {
+                    recommendationsLabel.setText("");
+                    return;
+                }
+                List<Book> recommendations = store.getRecommendations(newRow.getBook().getId(), 5);
+                recommendationsLabel.setText(recommendations.isEmpty() ? "" :
+                        "Customers also bought: " + String.join(", ", recommendations.stream().map(Book::getName).toList()));
+            });
+
             HBox buttons = new HBox(10);
             Button addToCartButton = new Button("Add to Cart");
             Button rateButton = new Button("Rate Book");
@@ -395,7 +479,7 @@ public class MainWindow {
 
                 addBookButton.setOnAction(e -> showAddBookDialog(category));
                 editBookButton.setOnAction(e -> {
-                    Book selected = table.getSelectionModel().getSelectedItem();
+                    Book selected = selectedBook(table);
                     if (selected != null) {
                         showEditBookDialog(selected);
                     } else {
@@ -403,11 +487,11 @@ public class MainWindow {
                     }
                 });
                 deleteBookButton.setOnAction(e -> {
-                    Book selected = table.getSelectionModel().getSelectedItem();
+                    Book selected = selectedBook(table);
                     if (selected != null) {
                         try {
-                            store.getDb().deleteBook(selected.getId());
-                            updateTabs();
+                            store.deleteBook(selected.getId());
+                            refreshBookTabs();
                         } catch (SQLException ex) {
                             showAlert(Alert.AlertType.ERROR, "Error", "Failed to delete book: " + ex.getMessage());
                         }
@@ -418,14 +502,18 @@ public class MainWindow {
             }
 
             addToCartButton.setOnAction(e -> {
-                Book selected = table.getSelectionModel().getSelectedItem();
+                Book selected = selectedBook(table);
                 if (selected != null) {
                     if (cart.addBook(selected)) {
                         try {
-                            store.getDb().decreaseStock(selected.getId());
-                            store.getDb().savePurchase(currentUser.getLogin(), selected.getId());
-                            updateTabs();
-                            showAlert(Alert.AlertType.INFORMATION, "Success", "Book added to cart!");
+                            if (store.purchaseBook(currentUser.getLogin(), selected.getId())) {
+                                showAlert(Alert.AlertType.INFORMATION, "Success", "Book added to cart!");
+                            } else {
+                                // Sold out, or deleted, since the table was loaded.
+                                cart.removeBook(cart.getBooks().size() - 1);
+                                showAlert(Alert.AlertType.WARNING, "Out of Stock", "This book is sold out.");
+                            }
+                            refreshBookTabs();
                         } catch (SQLException ex) {
                             showAlert(Alert.AlertType.ERROR, "Error", "Failed to add to cart: " + ex.getMessage());
                         }
@@ -438,7 +526,7 @@ public class MainWindow {
             });
 
             rateButton.setOnAction(e -> {
-                Book selected = table.getSelectionModel().getSelectedItem();
+                Book selected = selectedBook(table);
                 if (selected != null) {
                     showRateBookDialog(selected);
                 } else {
@@ -447,7 +535,7 @@ public class MainWindow {
             });
 
             reviewButton.setOnAction(e -> {
-                Book selected = table.getSelectionModel().getSelectedItem();
+                Book selected = selectedBook(table);
                 if (selected != null) {
                     showReviewsDialog(selected);
                 } else {
@@ -455,40 +543,39 @@ public class MainWindow {
                 }
             });
 
-            filterCombo.setOnAction(e -> {
+            Runnable loadBooks = () -> {
                 try {
-                    table.setItems(FXCollections.observableArrayList(
-                            store.getFilteredBooks(category.getName(), filterCombo.getValue())
-                    ));
+                    table.setItems(toRows(store.getFilteredBooks(category.getName(), filterCombo.getValue())));
                 } catch (SQLException ex) {
-                    showAlert(Alert.AlertType.ERROR, "Error", "Failed to filter books: " + ex.getMessage());
+                    showAlert(Alert.AlertType.ERROR, "Error", "Failed to load books: " + ex.getMessage());
                 }
-            });
-
-            try {
-                table.setItems(FXCollections.observableArrayList(
-                        store.getFilteredBooks(category.getName(), "Default")
-                ));
-            } catch (SQLException ex) {
-                showAlert(Alert.AlertType.ERROR, "Error", "Failed to load books: " + ex.getMessage());
-            }
+            };
+            filterCombo.setOnAction(e -> loadBooks.run());
+            bookTabLoaders.put(tab, loadBooks);
 
-            content.getChildren().addAll(filterCombo, table, buttons);
+            content.getChildren().addAll(filterCombo, table, recommendationsLabel, buttons);
             tab.setContent(content);
             tabPane.getTabs().add(tab);
         }
 
+        tabPane.getTabs().add(createSearchTab(categories));
+
         Tab cartTab = new Tab("Cart");
         VBox cartContent = new VBox(10);
         cartContent.setPadding(new Insets(10));
-        TableView<Book> cartTable = new TableView<>();
-        TableColumn<Book, String> cartNameColumn = new TableColumn<>("Name");
-        cartNameColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getName()));
-        TableColumn<Book, String> cartPriceColumn = new TableColumn<>("Price");
-        cartPriceColumn.setCellValueFactory(cellData -> new SimpleStringProperty("$" + cellData.getValue().getPrice()));
+        TableView<BookRow> cartTable = new TableView<>();
+        TableColumn<BookRow, String> cartNameColumn = new TableColumn<>("Name");
+        cartNameColumn.setCellValueFactory(cellData -> cellData.getValue().nameProperty());
+        TableColumn<BookRow, String> cartPriceColumn = new TableColumn<>("Price");
+        cartPriceColumn.setCellValueFactory(cellData -> cellData.getValue().priceProperty());
         cartTable.getColumns().addAll(cartNameColumn, cartPriceColumn);
         cartTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
-        cartTable.setItems(FXCollections.observableArrayList(cart.getBooks()));
+        cartTable.setItems(cartRows());
+        cartTab.setOnSelectionChanged(e -> {
+            if (cartTab.isSelected()) {
+                cartTable.setItems(cartRows());
+            }
+        });
 
         Button removeFromCartButton = new Button("Remove from Cart");
         Button clearCartButton = new Button("Clear Cart");
@@ -496,11 +583,11 @@ public class MainWindow {
         styleButton(clearCartButton);
 
         removeFromCartButton.setOnAction(e -> {
-            Book selected = cartTable.getSelectionModel().getSelectedItem();
+            BookRow selected = cartTable.getSelectionModel().getSelectedItem();
             if (selected != null) {
                 int index = cartTable.getSelectionModel().getSelectedIndex();
                 cart.removeBook(index);
-                cartTable.setItems(FXCollections.observableArrayList(cart.getBooks()));
+                cartTable.setItems(cartRows());
             } else {
                 showAlert(Alert.AlertType.WARNING, "No Selection", "Please select a book to remove.");
             }
@@ -508,13 +595,14 @@ public class MainWindow {
 
         clearCartButton.setOnAction(e -> {
             cart.clear();
-            cartTable.setItems(FXCollections.observableArrayList(cart.getBooks()));
+            cartTable.setItems(cartRows());
         });
 
         cartContent.getChildren().addAll(cartTable, removeFromCartButton, clearCartButton);
         cartTab.setContent(cartContent);
         tabPane.getTabs().add(cartTab);
 
+        messagesReloader = null;
         Tab messagesTab = new Tab("Messages");
         VBox messagesContent = new VBox(10);
         messagesContent.setPadding(new Insets(10));
@@ -526,49 +614,51 @@ public class MainWindow {
         } else {
             // Пользователь вошел, загружаем сообщения
             ListView<String> messagesList = new ListView<>();
-            ComboBox<String> recipientCombo = new ComboBox<>();
+            TextField recipientField = createRecipientField();
             TextArea messageArea = new TextArea();
             messageArea.setPromptText("Type your message...");
             Button sendMessageButton = new Button("Send Message");
             styleButton(sendMessageButton);
 
-
-                List<User> users = store.getAllUsers();
-                recipientCombo.setItems(FXCollections.observableArrayList(
-                        users.stream().map(User::getLogin).filter(login -> !login.equals(currentUser.getLogin())).toList()
-                ));
-                List<Message> messages = store.getMessages(currentUser.getLogin());
-                messagesList.setItems(FXCollections.observableArrayList(
-                        messages.stream().map(msg -> String.format(
-                                "[%s] %s -> %s: %s",
-                                msg.getTimestamp(), msg.getSenderLogin(), msg.getReceiverLogin(), msg.getText()
-                        )).toList()
-                ));
+                int archivedCount = store.getArchivedMessageCount(currentUser.getLogin());
+                CheckBox historyCheck = new CheckBox("Show " + archivedCount + " archived messages");
+                historyCheck.setVisible(archivedCount > 0);
+                historyCheck.setManaged(archivedCount > 0);
+                Runnable loadMessages = () -> {
+                    List<Message> messages = store.getMessages(currentUser.getLogin(), historyCheck.isSelected());
+                    messagesList.setItems(FXCollections.observableArrayList(
+                            messages.stream().map(msg -> String.format(
+                                    "[%s] %s -> %s: %s",
+                                    msg.getTimestamp(), msg.getSenderLogin(), msg.getReceiverLogin(), msg.getText()
+                            )).toList()
+                    ));
+                };
+                historyCheck.setOnAction(e -> loadMessages.run());
+                loadMessages.run();
+                messagesReloader = loadMessages;
 
 
             sendMessageButton.setOnAction(e -> {
-                String recipient = recipientCombo.getValue();
+                String recipient = recipientField.getText().trim();
                 String text = messageArea.getText().trim();
-                if (recipient == null || text.isEmpty()) {
+                if (recipient.isEmpty() || text.isEmpty()) {
                     showAlert(Alert.AlertType.WARNING, "Invalid Input", "Please select a recipient and enter a message.");
                     return;
                 }
+                if (recipient.equals(currentUser.getLogin()) || store.findUser(recipient) == null) {
+                    showAlert(Alert.AlertType.WARNING, "Invalid Input", "No other user has the login " + recipient + ".");
+                    return;
+                }
                 try {
                     store.sendMessage(currentUser.getLogin(), recipient, text);
-                    List<Message> newMessages = store.getMessages(currentUser.getLogin());
-                    messagesList.setItems(FXCollections.observableArrayList(
-                            newMessages.stream().map(msg -> String.format(
-                                    "[%s] %s -> %s: %s",
-                                    msg.getTimestamp(), msg.getSenderLogin(), msg.getReceiverLogin(), msg.getText()
-                            )).toList()
-                    ));
+                    loadMessages.run();
                     messageArea.clear();
                 } catch (SQLException ex) {
                     showAlert(Alert.AlertType.ERROR, "Error", "Failed to send message: " + ex.getMessage());
                 }
             });
 
-            messagesContent.getChildren().addAll(recipientCombo, messageArea, sendMessageButton, messagesList);
+            messagesContent.getChildren().addAll(recipientField, messageArea, sendMessageButton, historyCheck, messagesList);
         }
 
         messagesTab.setContent(messagesContent);
@@ -597,10 +687,504 @@ public class MainWindow {
             Button manageUsersButton = new Button("Manage Users");
             styleButton(manageUsersButton);
             manageUsersButton.setOnAction(e -> showManageUsersDialog());
-            accountContent.getChildren().add(manageUsersButton);
+            Button manageCategoriesButton = new Button("Manage Categories");
+            styleButton(manageCategoriesButton);
+            manageCategoriesButton.setOnAction(e -> showManageCategoriesDialog());
+            accountContent.getChildren().addAll(manageUsersButton, manageCategoriesButton);
         }
         accountTab.setContent(accountContent);
         tabPane.getTabs().add(accountTab);
+
+        if (currentUser != null && currentUser.getRole().equals("Admin")) {
+            tabPane.getTabs().add(createAnalyticsTab());
+            tabPane.getTabs().add(createPerformanceTab());
+        }
+
+        rebuildingTabs = false;
+        tabPane.getTabs().stream()
+                .filter(tab -> tab.getText().equals(previousTitle))
+                .findFirst()
+                .ifPresent(tab -> tabPane.getSelectionModel().select(tab));
+        loadBookTab(tabPane.getSelectionModel().getSelectedItem());
+    }
+
+    // Type-ahead recipient: each keystroke asks the store's login trie for a handful of
+    // completions instead of filling a list with every user up front.
+    private ObservableList<BookRow> toRows(List<Book> books) throws SQLException {
+        List<CatalogSnapshot.Entry> entries = store.getCatalogEntries(books);
+        ObservableList<BookRow> rows = FXCollections.observableArrayList();
+        for (int i = 0; i < books.size(); i++) {
+            rows.add(new BookRow(books.get(i), entries.get(i)));
+        }
+        return rows;
+    }
+
+    private ObservableList<BookRow> cartRows() {
+        ObservableList<BookRow> rows = FXCollections.observableArrayList();
+        for (Book book : cart.getBooks()) {
+            rows.add(new BookRow(book, null));
+        }
+        return rows;
+    }
+
+    private static Book selectedBook(TableView<BookRow> table) {
+        BookRow selected = table.getSelectionModel().getSelectedItem();
+        return selected != null ? selected.getBook() : null;
+    }
+
+    private TextField createRecipientField() {
+        TextField field = new TextField();
+        field.setPromptText("Recipient login...");
+        ContextMenu suggestions = new ContextMenu();
+        field.textProperty().addListener((obs, oldText, newText) -> {
+            String prefix = newText.trim();
+            List<LoginTrie.Entry> matches = new ArrayList<>();
+            if (!prefix.isEmpty() && field.isFocused()) {
+                for (LoginTrie.Entry entry : store.completeLogins(prefix, RECIPIENT_SUGGESTIONS + 1)) {
+                    if (!entry.getLogin().equals(currentUser.getLogin()) && matches.size() < RECIPIENT_SUGGESTIONS) {
+                        matches.add(entry);
+                    }
+                }
+            }
+            // Nothing left to choose once the field holds the only match.
+            if (matches.isEmpty() || (matches.size() == 1 && matches.get(0).getLogin().equals(prefix))) {
+                suggestions.hide();
+                return;
+            }
+            List<MenuItem> items = new ArrayList<>();
+            for (LoginTrie.Entry entry : matches) {
+                MenuItem item = new MenuItem(entry.toString());
+                item.setMnemonicParsing(false);
+                item.setOnAction(e -> {
+                    field.setText(entry.getLogin());
+                    field.end();
+                });
+                items.add(item);
+            }
+            suggestions.getItems().setAll(items);
+            if (!suggestions.isShowing()) {
+                suggestions.show(field, Side.BOTTOM, 0, 0);
+            }
+        });
+        field.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) {
+                suggestions.hide();
+            }
+        });
+        return field;
+    }
+
+    private Tab createSearchTab(List<Category> categories) {
+        Tab searchTab = new Tab("Search");
+        VBox searchContent = new VBox(10);
+        searchContent.setPadding(new Insets(10));
+
+        MenuButton categoryMenu = new MenuButton("All Categories");
+        List<CheckMenuItem> categoryItems = categories.stream().map(c -> new CheckMenuItem(c.getName())).toList();
+        categoryMenu.getItems().addAll(categoryItems);
+        for (CheckMenuItem item : categoryItems) {
+            item.setOnAction(e -> {
+                List<String> selected = categoryItems.stream().filter(CheckMenuItem::isSelected).map(MenuItem::getText).toList();
+                categoryMenu.setText(selected.isEmpty() ? "All Categories" : String.join(", ", selected));
+            });
+        }
+        TextField minPriceField = new TextField();
+        minPriceField.setPromptText("Min price");
+        minPriceField.setPrefWidth(80);
+        TextField maxPriceField = new TextField();
+        maxPriceField.setPromptText("Max price");
+        maxPriceField.setPrefWidth(80);
+        ComboBox<String> ratingCombo = new ComboBox<>(FXCollections.observableArrayList("Any rating", "1+", "2+", "3+", "4+"));
+        ratingCombo.setValue("Any rating");
+        CheckBox inStockCheck = new CheckBox("In stock only");
+        ComboBox<String> sortCombo = new ComboBox<>(FXCollections.observableArrayList(BookFilter.SORTS));
+        sortCombo.setValue("Default");
+        Button searchButton = new Button("Search");
+        styleButton(searchButton);
+        HBox filterBar = new HBox(10, categoryMenu, minPriceField, maxPriceField, ratingCombo, inStockCheck, sortCombo, searchButton);
+        filterBar.setAlignment(Pos.CENTER_LEFT);
+
+        TableView<Book> resultsTable = new TableView<>();
+        TableColumn<Book, String> nameColumn = new TableColumn<>("Name");
+        nameColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getName()));
+        TableColumn<Book, String> categoryColumn = new TableColumn<>("Category");
+        categoryColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getCategory().getName()));
+        TableColumn<Book, String> priceColumn = new TableColumn<>("Price");
+        priceColumn.setCellValueFactory(cellData -> new SimpleStringProperty("$" + cellData.getValue().getPrice()));
+        TableColumn<Book, String> stockColumn = new TableColumn<>("Stock");
+        stockColumn.setCellValueFactory(cellData -> {
+            int stock = cellData.getValue().getStock();
+            return new SimpleStringProperty(stock > 0 ? String.valueOf(stock) : "Sold Out");
+        });
+        resultsTable.getColumns().addAll(nameColumn, categoryColumn, priceColumn, stockColumn);
+        resultsTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+
+        int pageSize = 50;
+        int[] offset = {0};
+        Label resultsLabel = new Label();
+        Button previousButton = new Button("Previous");
+        Button nextButton = new Button("Next");
+        styleButton(previousButton);
+        styleButton(nextButton);
+        previousButton.setDisable(true);
+        nextButton.setDisable(true);
+        HBox pager = new HBox(10, previousButton, nextButton, resultsLabel);
+        pager.setAlignment(Pos.CENTER_LEFT);
+
+        VBox facetsBox = new VBox(4);
+        facetsBox.setPadding(new Insets(0, 10, 0, 0));
+        facetsBox.setPrefWidth(180);
+
+        Runnable runSearch = () -> {
+            BookFilter filter = new BookFilter();
+            try {
+                for (CheckMenuItem item : categoryItems) {
+                    if (item.isSelected()) {
+                        filter.category(item.getText());
+                    }
+                }
+                String minPrice = minPriceField.getText().trim();
+                String maxPrice = maxPriceField.getText().trim();
+                filter.minPrice(minPrice.isEmpty() ? null : Double.parseDouble(minPrice));
+                filter.maxPrice(maxPrice.isEmpty() ? null : Double.parseDouble(maxPrice));
+            } catch (NumberFormatException ex) {
+                showAlert(Alert.AlertType.ERROR, "Invalid Input", "Prices must be numbers.");
+                return;
+            }
+            String rating = ratingCombo.getValue();
+            filter.minRating(rating.equals("Any rating") ? null : Double.parseDouble(rating.substring(0, 1)));
+            filter.inStockOnly(inStockCheck.isSelected()).sort(sortCombo.getValue()).page(offset[0], pageSize);
+
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return store.getFacets(filter);
+                } catch (SQLException ex) {
+                    throw new IllegalStateException(ex.getMessage(), ex);
+                }
+            }, backgroundExecutor).whenComplete((facets, ex) -> Platform.runLater(() -> {
+                facetsBox.getChildren().clear();
+                if (ex != null) {
+                    facetsBox.getChildren().add(new Label("Facets unavailable"));
+                    return;
+                }
+                addFacetGroup(facetsBox, "Category", facets.getCategoryCounts());
+                addFacetGroup(facetsBox, "Price", facets.getPriceBuckets());
+                addFacetGroup(facetsBox, "Rating", facets.getRatingBands());
+                Map<String, Integer> stock = new LinkedHashMap<>();
+                stock.put("In stock", facets.getInStockCount());
+                stock.put("Sold out", facets.getSoldOutCount());
+                addFacetGroup(facetsBox, "Availability", stock);
+            }));
+
+            searchButton.setDisable(true);
+            resultsLabel.setText("Searching...");
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return store.findBooks(filter);
+                } catch (SQLException ex) {
+                    throw new IllegalStateException(ex.getMessage(), ex);
+                }
+            }, backgroundExecutor).whenComplete((page, ex) -> Platform.runLater(() -> {
+                searchButton.setDisable(false);
+                if (ex != null) {
+                    resultsLabel.setText("Search failed: " + ex.getMessage());
+                    return;
+                }
+                resultsTable.setItems(FXCollections.observableArrayList(page.getBooks()));
+                int shown = page.getBooks().size();
+                resultsLabel.setText(page.getTotalCount() == 0 ? "No books match." :
+                        String.format("Showing %d-%d of %d", offset[0] + 1, offset[0] + shown, page.getTotalCount()));
+                previousButton.setDisable(offset[0] == 0);
+                nextButton.setDisable(offset[0] + shown >= page.getTotalCount());
+            }));
+        };
+
+        searchButton.setOnAction(e -> {
+            offset[0] = 0;
+            runSearch.run();
+        });
+        previousButton.setOnAction(e -> {
+            offset[0] = Math.max(0, offset[0] - pageSize);
+            runSearch.run();
+        });
+        nextButton.setOnAction(e -> {
+            offset[0] += pageSize;
+            runSearch.run();
+        });
+
+        VBox resultsBox = new VBox(10, resultsTable, pager);
+        HBox.setHgrow(resultsBox, Priority.ALWAYS);
+        searchContent.getChildren().addAll(filterBar, new HBox(resultsBox.getSpacing(), facetsBox, resultsBox));
+        searchTab.setContent(searchContent);
+        searchTab.setOnSelectionChanged(e -> {
+            if (searchTab.isSelected() && resultsTable.getItems().isEmpty()) {
+                searchButton.fire();
+            }
+        });
+        return searchTab;
+    }
+
+    private void addFacetGroup(VBox facetsBox, String title, Map<String, Integer> counts) {
+        Label titleLabel = new Label(title);
+        titleLabel.setStyle("-fx-font-weight: bold;");
+        facetsBox.getChildren().add(titleLabel);
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            Label countLabel = new Label("  " + entry.getKey() + " (" + entry.getValue() + ")");
+            countLabel.setDisable(entry.getValue() == 0);
+            facetsBox.getChildren().add(countLabel);
+        }
+    }
+
+    private Tab createPerformanceTab() {
+        Tab performanceTab = new Tab("Performance");
+        VBox performanceContent = new VBox(10);
+        performanceContent.setPadding(new Insets(10));
+
+        TableView<LatencyHistogram.Snapshot> metricsTable = new TableView<>();
+        TableColumn<LatencyHistogram.Snapshot, String> operationColumn = new TableColumn<>("Operation");
+        operationColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getName()));
+        TableColumn<LatencyHistogram.Snapshot, String> countColumn = new TableColumn<>("Count");
+        countColumn.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().getCount())));
+        TableColumn<LatencyHistogram.Snapshot, String> errorsColumn = new TableColumn<>("Errors");
+        errorsColumn.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().getErrors())));
+        TableColumn<LatencyHistogram.Snapshot, String> meanColumn = new TableColumn<>("Mean (ms)");
+        meanColumn.setCellValueFactory(cellData -> new SimpleStringProperty(formatMillis(cellData.getValue().getMeanNanos())));
+        TableColumn<LatencyHistogram.Snapshot, String> p50Column = new TableColumn<>("p50 (ms)");
+        p50Column.setCellValueFactory(cellData -> new SimpleStringProperty(formatMillis(cellData.getValue().getP50Nanos())));
+        TableColumn<LatencyHistogram.Snapshot, String> p99Column = new TableColumn<>("p99 (ms)");
+        p99Column.setCellValueFactory(cellData -> new SimpleStringProperty(formatMillis(cellData.getValue().getP99Nanos())));
+        TableColumn<LatencyHistogram.Snapshot, String> p999Column = new TableColumn<>("p999 (ms)");
+        p999Column.setCellValueFactory(cellData -> new SimpleStringProperty(formatMillis(cellData.getValue().getP999Nanos())));
+        TableColumn<LatencyHistogram.Snapshot, String> maxColumn = new TableColumn<>("Max (ms)");
+        maxColumn.setCellValueFactory(cellData -> new SimpleStringProperty(formatMillis(cellData.getValue().getMaxNanos())));
+        metricsTable.getColumns().addAll(operationColumn, countColumn, errorsColumn, meanColumn, p50Column, p99Column, p999Column, maxColumn);
+        metricsTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+
+        Runnable refresh = () -> metricsTable.setItems(FXCollections.observableArrayList(
+                Metrics.snapshot().stream().filter(snapshot -> snapshot.getCount() > 0 || snapshot.getErrors() > 0).toList()
+        ));
+
+        HBox buttons = new HBox(10);
+        Button refreshButton = new Button("Refresh");
+        Button resetButton = new Button("Reset");
+        Button dumpButton = new Button("Dump to File");
+        styleButton(refreshButton);
+        styleButton(resetButton);
+        styleButton(dumpButton);
+        buttons.getChildren().addAll(refreshButton, resetButton, dumpButton);
+
+        resetButton.setOnAction(e -> {
+            Metrics.reset();
+            refresh.run();
+        });
+        dumpButton.setOnAction(e -> {
+            try {
+                File file = Metrics.dump(new File("metrics").toPath()).toFile();
+                showAlert(Alert.AlertType.INFORMATION, "Metrics Saved", "Metrics written to " + file.getPath());
+            } catch (IOException ex) {
+                showAlert(Alert.AlertType.ERROR, "Error", "Failed to write metrics: " + ex.getMessage());
+            }
+        });
+        performanceTab.setOnSelectionChanged(e -> {
+            if (performanceTab.isSelected()) {
+                refreshButton.fire();
+            }
+        });
+
+        Label slowQueriesLabel = new Label("Slow queries");
+        TextField thresholdField = new TextField(String.valueOf(SlowQueryLog.getThresholdMillis()));
+        thresholdField.setPrefColumnCount(6);
+        Button applyThresholdButton = new Button("Set Threshold (ms, -1 = off)");
+        Button summaryButton = new Button("Write Summary");
+        styleButton(applyThresholdButton);
+        styleButton(summaryButton);
+        HBox slowQueryControls = new HBox(10, thresholdField, applyThresholdButton, summaryButton);
+
+        TableView<SlowQueryLog.Fingerprint> slowQueryTable = new TableView<>();
+        TableColumn<SlowQueryLog.Fingerprint, String> sqlColumn = new TableColumn<>("SQL");
+        sqlColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getSql()));
+        TableColumn<SlowQueryLog.Fingerprint, String> slowCountColumn = new TableColumn<>("Count");
+        slowCountColumn.setCellValueFactory(cellData -> new SimpleStringProperty(String.valueOf(cellData.getValue().getCount())));
+        TableColumn<SlowQueryLog.Fingerprint, String> totalColumn = new TableColumn<>("Total (ms)");
+        totalColumn.setCellValueFactory(cellData -> new SimpleStringProperty(formatMillis(cellData.getValue().getTotalNanos())));
+        TableColumn<SlowQueryLog.Fingerprint, String> slowMaxColumn = new TableColumn<>("Max (ms)");
+        slowMaxColumn.setCellValueFactory(cellData -> new SimpleStringProperty(formatMillis(cellData.getValue().getMaxNanos())));
+        TableColumn<SlowQueryLog.Fingerprint, String> planColumn = new TableColumn<>("Plan");
+        planColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getPlan()));
+        slowQueryTable.getColumns().addAll(sqlColumn, slowCountColumn, totalColumn, slowMaxColumn, planColumn);
+        slowQueryTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+
+        Label storageLabel = new Label();
+        Label maintenanceLabel = new Label();
+        Button maintenanceButton = new Button("Run Maintenance Now");
+        styleButton(maintenanceButton);
+        Runnable refreshStorage = () -> {
+            StorageStats stats = store.getStorageStats();
+            storageLabel.setText(stats == null ? "Database: unavailable" : String.format(
+                    "Database: %.1f MB (%d pages of %d bytes), %d free pages (%.1f MB), WAL %.1f MB, journal %s, auto-vacuum %s",
+                    stats.getFileBytes() / 1048576.0, stats.getPageCount(), stats.getPageSize(), stats.getFreePages(),
+                    stats.getFreePages() * stats.getPageSize() / 1048576.0, stats.getWalBytes() / 1048576.0,
+                    stats.getJournalMode(), stats.getAutoVacuum()));
+            maintenanceLabel.setText("Last maintenance: " + store.getMaintenanceReport());
+        };
+        maintenanceButton.setOnAction(e -> {
+            maintenanceButton.setDisable(true);
+            maintenanceLabel.setText("Running maintenance...");
+            CompletableFuture.runAsync(store::runMaintenance, backgroundExecutor).whenComplete((ignored, ex) -> Platform.runLater(() -> {
+                maintenanceButton.setDisable(false);
+                refreshStorage.run();
+            }));
+        });
+        HBox maintenanceControls = new HBox(10, maintenanceButton, maintenanceLabel);
+
+        refreshButton.setOnAction(e -> {
+            refresh.run();
+            refreshStorage.run();
+            slowQueryTable.setItems(FXCollections.observableArrayList(SlowQueryLog.summary()));
+        });
+        applyThresholdButton.setOnAction(e -> {
+            try {
+                SlowQueryLog.setThresholdMillis(Long.parseLong(thresholdField.getText().trim()));
+            } catch (NumberFormatException ex) {
+                showAlert(Alert.AlertType.ERROR, "Invalid Input", "Threshold must be a whole number of milliseconds.");
+            }
+        });
+        summaryButton.setOnAction(e -> {
+            try {
+                File file = SlowQueryLog.writeSummary().toFile();
+                showAlert(Alert.AlertType.INFORMATION, "Summary Saved", "Slow query summary written to " + file.getPath());
+            } catch (IOException ex) {
+                showAlert(Alert.AlertType.ERROR, "Error", "Failed to write summary: " + ex.getMessage());
+            }
+        });
+
+
+        performanceContent.getChildren().addAll(buttons, metricsTable, storageLabel, maintenanceControls,
+                slowQueriesLabel, slowQueryControls, slowQueryTable);
+        performanceTab.setContent(performanceContent);
+        return performanceTab;
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    private Tab createAnalyticsTab() {
+        Tab analyticsTab = new Tab("Analytics");
+        VBox analyticsContent = new VBox(10);
+        analyticsContent.setPadding(new Insets(10));
+
+        Label statusLabel = new Label("Open this tab to load statistics.");
+        ImageView salesChart = new ImageView();
+        ImageView reviewsChart = new ImageView();
+        ImageView ratingChart = new ImageView();
+        FlowPane charts = new FlowPane(10, 10, salesChart, reviewsChart, ratingChart);
+        Button refreshButton = new Button("Refresh");
+        styleButton(refreshButton);
+
+        Runnable refresh = () -> {
+            refreshButton.setDisable(true);
+            statusLabel.setText("Loading statistics...");
+            CompletableFuture.supplyAsync(() -> {
+                List<CategoryStats> stats = store.getCategoryStats();
+                try {
+                    return new Image[]{
+                            ChartRenderer.renderCategoryBarChart("Sales per Category", "Purchases", stats,
+                                    CategoryStats::getPurchaseCount, 380, 300),
+                            ChartRenderer.renderCategoryBarChart("Reviews per Category", "Reviews", stats,
+                                    CategoryStats::getReviewCount, 380, 300),
+                            ChartRenderer.renderCategoryBarChart("Average Rating per Category", "Rating", stats,
+                                    CategoryStats::getAverageRating, 380, 300)
+                    };
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, backgroundExecutor).whenComplete((images, ex) -> Platform.runLater(() -> {
+                refreshButton.setDisable(false);
+                if (ex != null) {
+                    statusLabel.setText("Failed to load statistics: " + ex.getMessage());
+                    return;
+                }
+                salesChart.setImage(images[0]);
+                reviewsChart.setImage(images[1]);
+                ratingChart.setImage(images[2]);
+                statusLabel.setText("Statistics updated.");
+            }));
+        };
+
+        refreshButton.setOnAction(e -> refresh.run());
+        analyticsTab.setOnSelectionChanged(e -> {
+            if (analyticsTab.isSelected()) {
+                refresh.run();
+            }
+        });
+
+        Label salesLabel = new Label("Sales over time");
+        ComboBox<String> salesCategoryCombo = new ComboBox<>(FXCollections.observableArrayList("All Categories"));
+        salesCategoryCombo.getItems().addAll(store.readCategories().stream().map(Category::getName).toList());
+        salesCategoryCombo.setValue("All Categories");
+        DatePicker fromPicker = new DatePicker(LocalDate.now().minusDays(30));
+        DatePicker toPicker = new DatePicker(LocalDate.now());
+        ComboBox<String> granularityCombo = new ComboBox<>(FXCollections.observableArrayList("Daily", "Hourly"));
+        granularityCombo.setValue("Daily");
+        Button showSalesButton = new Button("Show Sales");
+        Button rebuildRollupsButton = new Button("Rebuild Rollups");
+        styleButton(showSalesButton);
+        styleButton(rebuildRollupsButton);
+        HBox salesControls = new HBox(10, salesCategoryCombo, fromPicker, toPicker, granularityCombo, showSalesButton, rebuildRollupsButton);
+        Label salesStatusLabel = new Label();
+        ImageView salesOverTimeChart = new ImageView();
+
+        showSalesButton.setOnAction(e -> {
+            if (fromPicker.getValue() == null || toPicker.getValue() == null || fromPicker.getValue().isAfter(toPicker.getValue())) {
+                showAlert(Alert.AlertType.WARNING, "Invalid Range", "Please select a valid date range.");
+                return;
+            }
+            String categoryName = salesCategoryCombo.getValue().equals("All Categories") ? null : salesCategoryCombo.getValue();
+            String fromDate = fromPicker.getValue().toString();
+            String toDate = toPicker.getValue().toString();
+            boolean hourly = granularityCombo.getValue().equals("Hourly");
+            showSalesButton.setDisable(true);
+            salesStatusLabel.setText("Loading sales...");
+            CompletableFuture.supplyAsync(() -> {
+                List<SalesBucket> buckets = store.getCategorySales(categoryName, fromDate, toDate, hourly);
+                try {
+                    return ChartRenderer.renderSalesChart(
+                            (categoryName != null ? categoryName : "All Categories") + ", " + fromDate + " to " + toDate,
+                            buckets, 780, 320);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }, backgroundExecutor).whenComplete((image, ex) -> Platform.runLater(() -> {
+                showSalesButton.setDisable(false);
+                if (ex != null) {
+                    salesStatusLabel.setText("Failed to load sales: " + ex.getMessage());
+                    return;
+                }
+                salesOverTimeChart.setImage(image);
+                salesStatusLabel.setText("");
+            }));
+        });
+
+        rebuildRollupsButton.setOnAction(e -> {
+            rebuildRollupsButton.setDisable(true);
+            salesStatusLabel.setText("Rebuilding sales rollups from purchase history...");
+            CompletableFuture.runAsync(() -> {
+                try {
+                    store.rebuildSalesRollups();
+                } catch (SQLException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }, backgroundExecutor).whenComplete((ignored, ex) -> Platform.runLater(() -> {
+                rebuildRollupsButton.setDisable(false);
+                salesStatusLabel.setText(ex != null ? "Failed to rebuild rollups: " + ex.getMessage() : "Sales rollups rebuilt.");
+            }));
+        });
+
+        analyticsContent.getChildren().addAll(refreshButton, statusLabel, charts,
+                salesLabel, salesControls, salesStatusLabel, salesOverTimeChart);
+        analyticsTab.setContent(new ScrollPane(analyticsContent));
+        return analyticsTab;
     }
 
     private void showAddBookDialog(Category category) {
@@ -667,8 +1251,8 @@ public class MainWindow {
                 int stock = Integer.parseInt(stockText);
                 String coverPath = selectedFile[0] != null ? uploadFile(selectedFile[0], "covers") : null;
                 Book book = new Book(0, name, price, description, category, coverPath, stock);
-                store.getDb().saveBook(book);
-                updateTabs();
+                store.addBook(book);
+                refreshBookTabs();
                 dialog.close();
             } catch (SQLException | IOException ex) {
                 showAlert(Alert.AlertType.ERROR, "Error", "Failed to add book: " + ex.getMessage());
@@ -748,8 +1332,8 @@ public class MainWindow {
                 double price = Double.parseDouble(priceText);
                 int stock = Integer.parseInt(stockText);
                 String coverPath = selectedFile[0] != null ? uploadFile(selectedFile[0], "covers") : book.getCoverPath();
-                store.getDb().updateBook(book.getId(), name, price, description, coverPath, stock);
-                updateTabs();
+                store.updateBook(book.getId(), name, price, description, coverPath, stock);
+                refreshBookTabs();
                 dialog.close();
             } catch (SQLException | IOException ex) {
                 showAlert(Alert.AlertType.ERROR, "Error", "Failed to update book: " + ex.getMessage());
@@ -782,7 +1366,7 @@ public class MainWindow {
         styleButton(submitButton);
 
         try {
-            Integer currentRating = store.getDb().getUserBookRating(currentUser.getLogin(), book.getId());
+            Integer currentRating = store.getUserBookRating(currentUser.getLogin(), book.getId());
             if (currentRating != null) {
                 ratingCombo.setValue(currentRating);
             }
@@ -797,8 +1381,8 @@ public class MainWindow {
                 return;
             }
             try {
-                store.getDb().saveBookRating(currentUser.getLogin(), book.getId(), rating);
-                updateTabs();
+                store.rateBook(currentUser.getLogin(), book.getId(), rating);
+                refreshBookTabs();
                 dialog.close();
             } catch (SQLException ex) {
                 showAlert(Alert.AlertType.ERROR, "Error", "Failed to save rating: " + ex.getMessage());
@@ -859,7 +1443,11 @@ public class MainWindow {
         vbox.getChildren().addAll(reviewTree, newReviewArea, addReviewButton);
         Scene scene = new Scene(vbox, 600, 400);
         dialog.setScene(scene);
+        reviewsBook = book;
+        reviewsTree = reviewTree;
         dialog.showAndWait();
+        reviewsBook = null;
+        reviewsTree = null;
     }
 
     private void updateReviewTree(TreeView<String> reviewTree, Book book) {
@@ -894,6 +1482,72 @@ public class MainWindow {
         }
     }
 
+    private void showManageCategoriesDialog() {
+        Stage dialog = new Stage();
+        dialog.initModality(Modality.APPLICATION_MODAL);
+        dialog.initOwner(primaryStage);
+        dialog.setTitle("Manage Categories");
+
+        VBox vbox = new VBox(10);
+        vbox.setPadding(new Insets(20));
+
+        ListView<String> categoryList = new ListView<>(FXCollections.observableArrayList(
+                store.readCategories().stream().map(Category::getName).toList()));
+        TextField nameField = new TextField();
+        nameField.setPromptText("New category name");
+        Button addButton = new Button("Add Category");
+        Button removeButton = new Button("Remove Category");
+        styleButton(addButton);
+        styleButton(removeButton);
+        boolean[] changed = {false};
+
+        addButton.setOnAction(e -> {
+            String name = nameField.getText().trim();
+            if (name.isEmpty() || name.length() > 50) {
+                showAlert(Alert.AlertType.ERROR, "Invalid input", "Category name must be 1-50 characters.");
+                return;
+            }
+            if (categoryList.getItems().stream().anyMatch(existing -> existing.equalsIgnoreCase(name))) {
+                showAlert(Alert.AlertType.ERROR, "Error", "Category already exists");
+                return;
+            }
+            try {
+                store.addCategory(name);
+                categoryList.getItems().add(name);
+                nameField.clear();
+                changed[0] = true;
+            } catch (SQLException ex) {
+                showAlert(Alert.AlertType.ERROR, "Error", "Failed to add category: " + ex.getMessage());
+            }
+        });
+
+        removeButton.setOnAction(e -> {
+            String selected = categoryList.getSelectionModel().getSelectedItem();
+            if (selected == null) {
+                showAlert(Alert.AlertType.WARNING, "No Selection", "Please select a category.");
+                return;
+            }
+            try {
+                if (store.removeCategory(selected)) {
+                    categoryList.getItems().remove(selected);
+                    changed[0] = true;
+                } else {
+                    showAlert(Alert.AlertType.WARNING, "Restricted", "Category still has books. Move or delete them first.");
+                }
+            } catch (SQLException ex) {
+                showAlert(Alert.AlertType.ERROR, "Error", "Failed to remove category: " + ex.getMessage());
+            }
+        });
+
+        vbox.getChildren().addAll(categoryList, new HBox(10, nameField, addButton), removeButton);
+        Scene scene = new Scene(vbox, 400, 400);
+        dialog.setScene(scene);
+        dialog.showAndWait();
+        if (changed[0]) {
+            updateTabs();
+        }
+    }
+
     private void showManageUsersDialog() {
         Stage dialog = new Stage();
         dialog.initModality(Modality.APPLICATION_MODAL);
@@ -931,7 +1585,7 @@ public class MainWindow {
                 }
                 String newRole = selected.getRole().equals("Admin") ? "Client" : "Admin";
                 try {
-                    store.getDb().updateUserRole(selected.getLogin(), newRole);
+                    store.updateUserRole(selected.getLogin(), newRole);
                     userTable.setItems(FXCollections.observableArrayList(store.getAllUsers()));
                 } catch (SQLException ex) {
                     showAlert(Alert.AlertType.ERROR, "Error", "Failed to change role: " + ex.getMessage());
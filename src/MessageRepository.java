@@ -0,0 +1,15 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+import java.util.List;
+
+public interface MessageRepository {
+    void saveMessage(String senderLogin, String receiverLogin, String text) throws SQLException;
+
+    // Messages the user sent or received, oldest first.
+    List<Message> getMessages(String userLogin) throws SQLException;
+
+    List<Message> getMessages(String userLogin, boolean includeArchived) throws SQLException;
+
+    int getArchivedMessageCount(String userLogin) throws SQLException;
+}
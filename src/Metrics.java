@@ -0,0 +1,56 @@
+package com.bookstore;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class Metrics {
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    public static List<LatencyHistogram.Snapshot> snapshot() {
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            snapshots.add(histogram.snapshot());
+        }
+        return snapshots;
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+    }
+
+    public static Path dump(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path file = directory.resolve("metrics-" + timestamp + ".txt");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.printf("%-36s %10s %8s %12s %12s %12s %12s %12s%n",
+                    "operation", "count", "errors", "mean us", "p50 us", "p99 us", "p999 us", "max us");
+            for (LatencyHistogram.Snapshot s : snapshot()) {
+                if (s.getCount() == 0 && s.getErrors() == 0) {
+                    continue;
+                }
+                out.printf("%-36s %10d %8d %12.1f %12.1f %12.1f %12.1f %12.1f%n",
+                        s.getName(), s.getCount(), s.getErrors(), s.getMeanNanos() / 1e3, s.getP50Nanos() / 1e3,
+                        s.getP99Nanos() / 1e3, s.getP999Nanos() / 1e3, s.getMaxNanos() / 1e3);
+            }
+        }
+        return file;
+    }
+}
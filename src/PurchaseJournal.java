@@ -0,0 +1,223 @@
+package com.bookstore;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Append-only log of purchases, memory-mapped so an append is a few stores into the page
+// cache instead of a SQLite transaction. Records are applied to SQLite in large batches and
+// the last applied sequence is committed in the same transaction, which makes replay after
+// a crash exactly-once: on open, every intact record past that sequence is pending again.
+// Appends survive a process crash as soon as they return; they are forced to disk before
+// each batch is applied.
+//
+// Layout (big-endian): magic, version, then records of: total length, sequence, epoch
+// millis, book id, login length, login UTF-8 bytes, CRC32 of everything from the sequence
+// on. Once every record is applied the log restarts at the front; leftovers further in the
+// file carry older sequences, so a scan stops at the first record that does not continue
+// the sequence or fails its checksum.
+public class PurchaseJournal {
+    private static final int MAGIC = 0x424B504A;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    // length, sequence, millis, book id, login length, crc
+    private static final int FIXED_RECORD_BYTES = 4 + 8 + 8 + 4 + 2 + 4;
+    private static final int MAX_LOGIN_BYTES = 1024;
+    private static final int DEFAULT_CAPACITY = 16 << 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+    private int readOffset = HEADER_BYTES;
+    private int writeOffset = HEADER_BYTES;
+    private long nextSequence;
+    private long appliedSequence;
+    private int pendingCount;
+
+    private PurchaseJournal(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    public static Path pathFor(String dbPath) {
+        return Path.of(dbPath + ".journal");
+    }
+
+    // appliedSequence is the last sequence the database has committed; records up to it are
+    // skipped and new records continue after whichever is higher, it or the log's last one.
+    public static PurchaseJournal open(Path path, long appliedSequence) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = Math.max(channel.size(), DEFAULT_CAPACITY);
+            PurchaseJournal journal = new PurchaseJournal(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            journal.recover(appliedSequence);
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void recover(long applied) {
+        appliedSequence = applied;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            buffer.putInt(0, MAGIC).putInt(4, VERSION);
+            buffer.putInt(HEADER_BYTES, 0);
+            nextSequence = applied + 1;
+            return;
+        }
+        long last = -1;
+        int offset = HEADER_BYTES;
+        while (true) {
+            Record record = readAt(offset);
+            if (record == null || (last >= 0 && record.sequence != last + 1)) {
+                break;
+            }
+            if (record.sequence <= applied) {
+                readOffset = offset + record.length;
+            } else {
+                pendingCount++;
+            }
+            last = record.sequence;
+            offset += record.length;
+        }
+        writeOffset = offset;
+        nextSequence = Math.max(last, applied) + 1;
+    }
+
+    // Returns false when the log is full; the caller then writes the purchase directly.
+    public synchronized boolean append(String userLogin, int bookId) {
+        byte[] login = userLogin.getBytes(StandardCharsets.UTF_8);
+        if (login.length > MAX_LOGIN_BYTES) {
+            throw new IllegalArgumentException("Login too long for the purchase journal");
+        }
+        int length = FIXED_RECORD_BYTES + login.length;
+        // Leave room for the zero length that marks the end of the log.
+        if (writeOffset + length + 4 > buffer.capacity()) {
+            return false;
+        }
+        int start = writeOffset;
+        buffer.position(start + 4);
+        buffer.putLong(nextSequence).putLong(System.currentTimeMillis()).putInt(bookId).putShort((short) login.length).put(login);
+        buffer.putInt(checksum(start + 4, length - 8));
+        buffer.putInt(start + length, 0);
+        // The length goes in last, so a torn append is never mistaken for a record.
+        buffer.putInt(start, length);
+        writeOffset = start + length;
+        nextSequence++;
+        pendingCount++;
+        return true;
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    public synchronized long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    // The oldest unapplied records, up to max of them.
+    public synchronized List<Record> pending(int max) {
+        List<Record> records = new ArrayList<>(Math.min(max, pendingCount));
+        int offset = readOffset;
+        while (records.size() < max && offset < writeOffset) {
+            Record record = readAt(offset);
+            if (record == null) {
+                break;
+            }
+            records.add(record);
+            offset += record.length;
+        }
+        return records;
+    }
+
+    public void force() {
+        buffer.force();
+    }
+
+    // Called once the database has committed everything up to and including sequence.
+    public synchronized void markApplied(long sequence) {
+        while (readOffset < writeOffset) {
+            Record record = readAt(readOffset);
+            if (record == null || record.sequence > sequence) {
+                break;
+            }
+            readOffset += record.length;
+            pendingCount--;
+        }
+        appliedSequence = Math.max(appliedSequence, sequence);
+        if (readOffset == writeOffset) {
+            readOffset = HEADER_BYTES;
+            writeOffset = HEADER_BYTES;
+            buffer.putInt(HEADER_BYTES, 0);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private Record readAt(int offset) {
+        if (offset + FIXED_RECORD_BYTES > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length < FIXED_RECORD_BYTES || length > FIXED_RECORD_BYTES + MAX_LOGIN_BYTES || offset + length > buffer.capacity()) {
+            return null;
+        }
+        int loginLength = buffer.getShort(offset + 24);
+        if (loginLength != length - FIXED_RECORD_BYTES || buffer.getInt(offset + length - 4) != checksum(offset + 4, length - 8)) {
+            return null;
+        }
+        byte[] login = new byte[loginLength];
+        buffer.get(offset + 26, login);
+        return new Record(length, buffer.getLong(offset + 4), buffer.getLong(offset + 12), buffer.getInt(offset + 20),
+                new String(login, StandardCharsets.UTF_8));
+    }
+
+    private int checksum(int offset, int length) {
+        crc.reset();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    public static final class Record {
+        private final int length;
+        private final long sequence;
+        private final long timestampMillis;
+        private final int bookId;
+        private final String userLogin;
+
+        Record(int length, long sequence, long timestampMillis, int bookId, String userLogin) {
+            this.length = length;
+            this.sequence = sequence;
+            this.timestampMillis = timestampMillis;
+            this.bookId = bookId;
+            this.userLogin = userLogin;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        public int getBookId() {
+            return bookId;
+        }
+
+        public String getUserLogin() {
+            return userLogin;
+        }
+    }
+}
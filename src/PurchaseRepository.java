@@ -0,0 +1,16 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+
+public interface PurchaseRepository {
+    // Records the purchase and counts it on the book. The caller feeds the co-purchase index
+    // once the purchase is committed, so a rolled-back write never shows up in it.
+    void savePurchase(String userLogin, int bookId) throws SQLException;
+
+    int getPurchaseCount(String categoryName) throws SQLException;
+
+    // Rebuilds the co-purchase index from every stored purchase.
+    void loadCoPurchaseIndex() throws SQLException;
+
+    CoPurchaseIndex getCoPurchaseIndex();
+}
@@ -0,0 +1,21 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+
+// Likes and dislikes on reviews, and the 1-5 star ratings users give books.
+public interface ReactionRepository {
+    // Adds the reaction and recounts the review's "Like" and "Dislike" totals.
+    void saveReaction(String userLogin, int reviewId, String reaction) throws SQLException;
+
+    // The user's first reaction to the review, or null.
+    String getUserReaction(String userLogin, int reviewId) throws SQLException;
+
+    // One rating per user and book; a second one, or one outside 1-5, is a constraint error.
+    void saveBookRating(String userLogin, int bookId, int rating) throws SQLException;
+
+    Integer getUserBookRating(String userLogin, int bookId) throws SQLException;
+
+    double getBookAverageRating(int bookId) throws SQLException;
+
+    int getBookRatingCount(int bookId) throws SQLException;
+}
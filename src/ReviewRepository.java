@@ -0,0 +1,14 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+import java.util.List;
+
+public interface ReviewRepository {
+    void saveReview(int bookId, String userLogin, String text, Integer parentId) throws SQLException;
+
+    // Flat list in id order; replies carry their parentId and are nested by the caller.
+    List<Review> getReviews(int bookId);
+
+    // Null if there is no review with that id.
+    Review findReview(int reviewId) throws SQLException;
+}
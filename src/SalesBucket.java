@@ -0,0 +1,25 @@
+package com.bookstore;
+
+public class SalesBucket {
+    private String bucket;
+    private int purchaseCount;
+    private double revenue;
+
+    public SalesBucket(String bucket, int purchaseCount, double revenue) {
+        this.bucket = bucket;
+        this.purchaseCount = purchaseCount;
+        this.revenue = revenue;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public int getPurchaseCount() {
+        return purchaseCount;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+}
@@ -0,0 +1,255 @@
+package com.bookstore;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+// Statements are timed from their first execute call until close(), so row iteration is
+// included; TimedStatement and TimedPreparedStatement do the timing by plain delegation.
+// Offending statements are written by a background thread to a rotating file together
+// with their EXPLAIN QUERY PLAN; the plan is captured once per fingerprint.
+public class SlowQueryLog {
+    private static final Path LOG_DIR = Path.of("logs");
+    private static final String LOG_NAME = "slow-queries.log";
+    private static final long MAX_FILE_BYTES = 5L * 1024 * 1024;
+    private static final int MAX_FILES = 5;
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}$");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("in \\(\\?(?:, \\?)+\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static volatile long thresholdNanos = Long.getLong("bookstore.slowQueryMillis", 250) * 1_000_000;
+    private static final BlockingQueue<String> QUEUE = new ArrayBlockingQueue<>(1024);
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final Map<String, Fingerprint> FINGERPRINTS = new ConcurrentHashMap<>();
+    private static final Thread WRITER = new Thread(SlowQueryLog::writeLoop, "slow-query-log");
+
+    static {
+        WRITER.setDaemon(true);
+        WRITER.start();
+    }
+
+    private SlowQueryLog() {
+    }
+
+    public static boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    public static long getThresholdMillis() {
+        return thresholdNanos < 0 ? -1 : thresholdNanos / 1_000_000;
+    }
+
+    public static void setThresholdMillis(long millis) {
+        thresholdNanos = millis < 0 ? -1 : millis * 1_000_000;
+    }
+
+    public static PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        if (!isEnabled()) {
+            return stmt;
+        }
+        return new TimedPreparedStatement(conn, stmt, sql);
+    }
+
+    public static Statement statement(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        if (!isEnabled()) {
+            return stmt;
+        }
+        return new TimedStatement(conn, stmt, null);
+    }
+
+    static boolean isSlow(long elapsedNanos) {
+        long threshold = thresholdNanos;
+        return threshold >= 0 && elapsedNanos >= threshold;
+    }
+
+    public static List<Fingerprint> summary() {
+        List<Fingerprint> fingerprints = new ArrayList<>(FINGERPRINTS.values());
+        fingerprints.sort(Comparator.comparingLong(Fingerprint::getTotalNanos).reversed());
+        return fingerprints;
+    }
+
+    public static Path writeSummary() throws IOException {
+        Files.createDirectories(LOG_DIR);
+        Path file = LOG_DIR.resolve("slow-queries-summary.txt");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.printf("Slow query summary at %s (threshold %d ms, %d entries dropped)%n%n",
+                    LocalDateTime.now(), getThresholdMillis(), DROPPED.get());
+            for (Fingerprint f : summary()) {
+                out.printf("[%s] count=%d total=%.1f ms max=%.1f ms%n%s%nplan:%n%s%n%n",
+                        f.getId(), f.getCount(), f.getTotalNanos() / 1e6, f.getMaxNanos() / 1e6, f.getSql(), f.getPlan());
+            }
+        }
+        return file;
+    }
+
+    static String fingerprint(String sql) {
+        String normalized = WHITESPACE.matcher(sql.trim()).replaceAll(" ").toLowerCase();
+        normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        return IN_LIST.matcher(normalized).replaceAll("in (?...)");
+    }
+
+    private static String redact(Object value) {
+        if (value instanceof String text && BCRYPT_HASH.matcher(text).matches()) {
+            return "<redacted>";
+        }
+        if (value instanceof String text) {
+            return "'" + text + "'";
+        }
+        return String.valueOf(value);
+    }
+
+    static void report(Connection conn, String sql, Object[] params, long elapsedNanos) {
+        String normalized = fingerprint(sql);
+        Fingerprint fingerprint = FINGERPRINTS.computeIfAbsent(normalized,
+                key -> new Fingerprint(Integer.toHexString(key.hashCode()), WHITESPACE.matcher(sql.trim()).replaceAll(" "),
+                        explain(conn, sql, params)));
+        fingerprint.add(elapsedNanos);
+
+        StringBuilder entry = new StringBuilder();
+        entry.append(LocalDateTime.now()).append(" [").append(fingerprint.getId()).append("] ")
+                .append(String.format("%.1f ms", elapsedNanos / 1e6)).append(System.lineSeparator())
+                .append("  sql: ").append(WHITESPACE.matcher(sql.trim()).replaceAll(" ")).append(System.lineSeparator())
+                .append("  params: [");
+        for (int i = 1; i < params.length; i++) {
+            if (i > 1) {
+                entry.append(", ");
+            }
+            entry.append(redact(params[i]));
+        }
+        entry.append(']').append(System.lineSeparator())
+                .append("  plan: ").append(fingerprint.getPlan().replace("\n", System.lineSeparator() + "        "))
+                .append(System.lineSeparator());
+        if (!QUEUE.offer(entry.toString())) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    private static String explain(Connection conn, String sql, Object[] params) {
+        String trimmed = sql.trim().toLowerCase();
+        if (!(trimmed.startsWith("select") || trimmed.startsWith("with") || trimmed.startsWith("insert")
+                || trimmed.startsWith("update") || trimmed.startsWith("delete"))) {
+            return "(not explainable)";
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 1; i < params.length; i++) {
+                stmt.setObject(i, params[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (plan.length() > 0) {
+                        plan.append('\n');
+                    }
+                    plan.append(rs.getString("detail"));
+                }
+            }
+            return plan.length() == 0 ? "(empty plan)" : plan.toString();
+        } catch (SQLException e) {
+            return "(plan unavailable: " + e.getMessage() + ")";
+        }
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            try {
+                String entry = QUEUE.take();
+                Files.createDirectories(LOG_DIR);
+                Path file = LOG_DIR.resolve(LOG_NAME);
+                if (Files.exists(file) && Files.size(file) + entry.length() > MAX_FILE_BYTES) {
+                    rotate();
+                }
+                try (Writer out = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    out.write(entry);
+                    String next;
+                    while ((next = QUEUE.poll()) != null) {
+                        out.write(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                Log.warn("Error writing slow query log: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static void rotate() throws IOException {
+        Files.deleteIfExists(LOG_DIR.resolve(LOG_NAME + "." + (MAX_FILES - 1)));
+        for (int i = MAX_FILES - 2; i >= 1; i--) {
+            Path from = LOG_DIR.resolve(LOG_NAME + "." + i);
+            if (Files.exists(from)) {
+                Files.move(from, LOG_DIR.resolve(LOG_NAME + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(LOG_DIR.resolve(LOG_NAME), LOG_DIR.resolve(LOG_NAME + ".1"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static class Fingerprint {
+        private final String id;
+        private final String sql;
+        private final String plan;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        Fingerprint(String id, String sql, String plan) {
+            this.id = id;
+            this.sql = sql;
+            this.plan = plan;
+        }
+
+        void add(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getPlan() {
+            return plan;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+}
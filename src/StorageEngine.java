@@ -0,0 +1,12 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+
+// Everything BookStore reads and writes about categories, books, users, reviews, reactions,
+// messages and purchases. DatabaseManager is the SQLite engine; InMemoryStorage keeps the
+// same data in process for tests, benchmarks and throwaway demo stores. Both report
+// constraint violations as SQLException with SQLite's SQLITE_CONSTRAINT error codes.
+public interface StorageEngine extends CategoryRepository, BookRepository, UserRepository, ReviewRepository,
+        ReactionRepository, MessageRepository, PurchaseRepository {
+    void close() throws SQLException;
+}
@@ -0,0 +1,50 @@
+package com.bookstore;
+
+public class StorageStats {
+    private final long pageSize;
+    private final long pageCount;
+    private final long freePages;
+    private final long fileBytes;
+    private final long walBytes;
+    private final String journalMode;
+    private final String autoVacuum;
+
+    public StorageStats(long pageSize, long pageCount, long freePages, long fileBytes, long walBytes,
+                        String journalMode, String autoVacuum) {
+        this.pageSize = pageSize;
+        this.pageCount = pageCount;
+        this.freePages = freePages;
+        this.fileBytes = fileBytes;
+        this.walBytes = walBytes;
+        this.journalMode = journalMode;
+        this.autoVacuum = autoVacuum;
+    }
+
+    public long getPageSize() {
+        return pageSize;
+    }
+
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    public long getFreePages() {
+        return freePages;
+    }
+
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    public long getWalBytes() {
+        return walBytes;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public String getAutoVacuum() {
+        return autoVacuum;
+    }
+}
\ No newline at end of file
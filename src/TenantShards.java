@@ -0,0 +1,161 @@
+package com.bookstore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// One BookStore per storefront. Each tenant lives in <baseDir>/<tenant>/ with its own SQLite
+// file, connection, scheduler and covers/avatars folders, so writes to different tenants never
+// queue behind the same SQLite write lock. Requests are routed by tenant id; admin reports fan
+// out to every tenant in parallel and merge the per-shard results.
+public class TenantShards {
+    private static final Pattern TENANT_ID = Pattern.compile("[a-z0-9][a-z0-9_-]{0,31}");
+    private static final String DB_FILE = "bookstore.db";
+    private static final LatencyHistogram FAN_OUT_LATENCY = Metrics.histogram("shards.fanOut");
+
+    private final Path baseDir;
+    private final Map<String, BookStore> shards = new ConcurrentHashMap<>();
+    private final ExecutorService reportExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public TenantShards(Path baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    public static boolean isValidTenantId(String tenantId) {
+        return tenantId != null && TENANT_ID.matcher(tenantId).matches();
+    }
+
+    public Path dbPathFor(String tenantId) {
+        return baseDir.resolve(tenantId).resolve(DB_FILE);
+    }
+
+    // Returns null for a tenant that has not been created; an unknown id never creates a shard.
+    public BookStore forTenant(String tenantId) {
+        requireValid(tenantId);
+        BookStore store = shards.get(tenantId);
+        if (store != null || !Files.isRegularFile(dbPathFor(tenantId))) {
+            return store;
+        }
+        return shards.computeIfAbsent(tenantId, this::open);
+    }
+
+    public BookStore createTenant(String tenantId) throws IOException {
+        requireValid(tenantId);
+        Files.createDirectories(dbPathFor(tenantId).getParent());
+        return shards.computeIfAbsent(tenantId, this::open);
+    }
+
+    // Every tenant with a database under baseDir, whether or not it has been opened yet.
+    public List<String> getTenantIds() {
+        if (!Files.isDirectory(baseDir)) {
+            return List.of();
+        }
+        try (Stream<Path> dirs = Files.list(baseDir)) {
+            return dirs.map(dir -> dir.getFileName().toString())
+                    .filter(id -> isValidTenantId(id) && Files.isRegularFile(dbPathFor(id)))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            Log.warn("Error listing tenants in {}: {}", baseDir, e.getMessage());
+            return shards.keySet().stream().sorted().toList();
+        }
+    }
+
+    public void openAll() {
+        for (String tenantId : getTenantIds()) {
+            forTenant(tenantId).awaitStartup();
+        }
+    }
+
+    // Runs query against every tenant at once and returns the answers keyed by tenant id, in
+    // tenant order. BookStore reads already turn SQL errors into empty results, so one broken
+    // shard shows up as a gap in the report rather than failing it.
+    public <T> Map<String, T> fanOut(Function<BookStore, T> query) {
+        long start = System.nanoTime();
+        try {
+            Map<String, CompletableFuture<T>> pending = new LinkedHashMap<>();
+            for (String tenantId : getTenantIds()) {
+                BookStore store = forTenant(tenantId);
+                pending.put(tenantId, CompletableFuture.supplyAsync(() -> query.apply(store), reportExecutor));
+            }
+            Map<String, T> results = new LinkedHashMap<>();
+            pending.forEach((tenantId, future) -> results.put(tenantId, future.join()));
+            return results;
+        } catch (RuntimeException e) {
+            FAN_OUT_LATENCY.recordError();
+            throw e;
+        } finally {
+            FAN_OUT_LATENCY.recordSince(start);
+        }
+    }
+
+    // Category totals across all tenants; the average rating is weighted by each shard's
+    // rating count so it matches what a single database holding every rating would report.
+    public List<CategoryStats> getCategoryStats() {
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        Map<String, Double> ratingSums = new LinkedHashMap<>();
+        for (List<CategoryStats> stats : fanOut(BookStore::getCategoryStats).values()) {
+            for (CategoryStats stat : stats) {
+                long[] total = totals.computeIfAbsent(stat.getCategoryName(), k -> new long[3]);
+                total[0] += stat.getPurchaseCount();
+                total[1] += stat.getReviewCount();
+                total[2] += stat.getRatingCount();
+                ratingSums.merge(stat.getCategoryName(), stat.getAverageRating() * stat.getRatingCount(), Double::sum);
+            }
+        }
+        List<CategoryStats> merged = new ArrayList<>(totals.size());
+        totals.forEach((name, total) -> merged.add(new CategoryStats(name, (int) total[0], (int) total[1],
+                total[2] == 0 ? 0 : ratingSums.get(name) / total[2], (int) total[2])));
+        return merged;
+    }
+
+    public List<SalesBucket> getCategorySales(String categoryName, String fromDate, String toDate, boolean hourly) {
+        Map<String, double[]> buckets = new TreeMap<>();
+        for (List<SalesBucket> sales : fanOut(store -> store.getCategorySales(categoryName, fromDate, toDate, hourly)).values()) {
+            for (SalesBucket bucket : sales) {
+                double[] total = buckets.computeIfAbsent(bucket.getBucket(), k -> new double[2]);
+                total[0] += bucket.getPurchaseCount();
+                total[1] += bucket.getRevenue();
+            }
+        }
+        List<SalesBucket> merged = new ArrayList<>(buckets.size());
+        buckets.forEach((bucket, total) -> merged.add(new SalesBucket(bucket, (int) total[0], total[1])));
+        return merged;
+    }
+
+    public void close() {
+        reportExecutor.close();
+        shards.forEach((tenantId, store) -> {
+            try {
+                store.close();
+            } catch (SQLException e) {
+                Log.warn("Error closing tenant {}: {}", tenantId, e.getMessage());
+            }
+        });
+        shards.clear();
+    }
+
+    private BookStore open(String tenantId) {
+        Log.info("Opening tenant {}", tenantId);
+        return new BookStore(dbPathFor(tenantId).toString());
+    }
+
+    private static void requireValid(String tenantId) {
+        if (!isValidTenantId(tenantId)) {
+            throw new IllegalArgumentException("Invalid tenant id '" + tenantId + "'");
+        }
+    }
+}
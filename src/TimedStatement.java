@@ -0,0 +1,281 @@
+package com.bookstore;
+
+import java.sql.*;
+
+// A Statement that reports itself to SlowQueryLog; every call goes straight to the driver's
+// statement. It is timed from its first execute call until close(), so row iteration is
+// included. A plain Statement runs a new SQL string per execute, so each one is timed
+// separately.
+class TimedStatement implements Statement {
+    private static final Object[] NO_PARAMETERS = new Object[1];
+
+    private final Connection conn;
+    private final Statement target;
+    private String sql;
+    private long startNanos;
+
+    TimedStatement(Connection conn, Statement target, String sql) {
+        this.conn = conn;
+        this.target = target;
+        this.sql = sql;
+    }
+
+    // Called before each execute; nextSql, when given, ends the timing of the previous one.
+    final void starting(String nextSql) {
+        if (nextSql != null) {
+            finish(System.nanoTime());
+            sql = nextSql;
+        }
+        if (startNanos == 0) {
+            startNanos = System.nanoTime();
+        }
+    }
+
+    private void finish(long endNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        long elapsed = endNanos - startNanos;
+        startNanos = 0;
+        if (sql != null && SlowQueryLog.isSlow(elapsed)) {
+            SlowQueryLog.report(conn, sql, parameters(), elapsed);
+        }
+    }
+
+    // Bound parameter values by index; slot 0 is unused.
+    Object[] parameters() {
+        return NO_PARAMETERS;
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        starting(sql);
+        return target.execute(sql);
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        starting(sql);
+        return target.execute(sql, columnNames);
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        starting(sql);
+        return target.execute(sql, columnIndexes);
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        starting(sql);
+        return target.execute(sql, autoGeneratedKeys);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        long end = System.nanoTime();
+        target.close();
+        finish(end);
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        starting(sql);
+        return target.executeQuery(sql);
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        starting(sql);
+        return target.executeUpdate(sql, columnNames);
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        starting(sql);
+        return target.executeUpdate(sql, autoGeneratedKeys);
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        starting(sql);
+        return target.executeUpdate(sql);
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        starting(sql);
+        return target.executeUpdate(sql, columnIndexes);
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        starting(null);
+        return target.executeBatch();
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        target.setMaxFieldSize(max);
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        target.setMaxRows(max);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        target.setEscapeProcessing(enable);
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        target.setQueryTimeout(seconds);
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        target.setCursorName(name);
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        target.setFetchDirection(direction);
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        target.setFetchSize(rows);
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        target.setPoolable(poolable);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        target.cancel();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return target.getMaxFieldSize();
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return target.getMaxRows();
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return target.getQueryTimeout();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return target.getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        target.clearWarnings();
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return target.getResultSet();
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return target.getUpdateCount();
+    }
+
+    @Override
+    public boolean getMoreResults(int current) throws SQLException {
+        return target.getMoreResults(current);
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return target.getMoreResults();
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return target.getFetchDirection();
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return target.getFetchSize();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return target.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return target.getResultSetType();
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        target.addBatch(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        target.clearBatch();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return target.getConnection();
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return target.getGeneratedKeys();
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return target.getResultSetHoldability();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return target.isClosed();
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return target.isPoolable();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        target.closeOnCompletion();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return target.isCloseOnCompletion();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,19 @@
+package com.bookstore;
+
+import java.sql.SQLException;
+import java.util.List;
+
+public interface UserRepository {
+    User findUser(String login) throws SQLException;
+
+    // Both store a BCrypt hash of password; a login that is already taken is a constraint error.
+    void registerUser(String login, String firstName, String lastName, String email, String birthDate, String password, String avatarPath) throws SQLException;
+
+    void registerAdmin(String login, String firstName, String lastName, String email, String birthDate, String password, String avatarPath) throws SQLException;
+
+    void updateUserRole(String login, String role) throws SQLException;
+
+    List<User> getAllUsers() throws SQLException;
+
+    void removeUser(String login) throws SQLException;
+}